@@ -0,0 +1,85 @@
+package com.tacticalenterprisesltd;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * The AbstractDialect implements a Dialect with standard SQL, so that a Dialect for a particular database management
+ * system only needs to override the parts that differ. Records are paged with OFFSET and FETCH, the database generates the
+ * primary key of a new record, and the counts for server side processing are obtained with separate queries.
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public abstract class AbstractDialect implements Dialect
+{
+	public String getLimitClause(boolean offset, boolean limit)
+	{
+		if(limit == false)
+			return (offset ? " OFFSET ? ROWS" : "");
+		if(offset == false)
+			return " FETCH FIRST ? ROWS ONLY";
+		return " OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+	}
+	
+	public boolean isLimitBoundFirst()
+	{
+		return false;
+	}
+	
+	public boolean isNullSortedHigh()
+	{
+		return false;
+	}
+	
+	public String getInsertIdValue(String table)
+	{
+		return null;
+	}
+	
+	public PreparedStatement prepareInsert(Connection connection, String sql, String primaryKey) throws SQLException
+	{
+		return connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
+	}
+	
+	public boolean supportsBatchGeneratedKeys()
+	{
+		return false;
+	}
+	
+	public String getReturningInsert(String table, String columns, String values, String[] returnColumns)
+	{
+		return null;
+	}
+	
+	public String getReturningUpdate(String table, String set, String where, String[] returnColumns)
+	{
+		return null;
+	}
+	
+	public int getMaxInListSize()
+	{
+		return 1000;
+	}
+	
+	public Database.CountStrategy getDefaultCountStrategy()
+	{
+		return Database.CountStrategy.SEPARATE_QUERIES;
+	}
+	
+	/**
+	 * Get the columns to return, delimited by commas, each preceded by the prefix.
+	 * @param prefix
+	 * @param returnColumns
+	 * @return String
+	 */
+	protected static String joinColumns(String prefix, String[] returnColumns)
+	{
+		String temp = "";
+		for(int i = 0; i < returnColumns.length; i++)
+		{
+			temp += (i > 0 ? ", " : "") + prefix + returnColumns[i];
+		}
+		return temp;
+	}
+}
@@ -0,0 +1,402 @@
+package com.tacticalenterprisesltd;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.apache.log4j.Logger;
+
+/**
+ * A BlobHandle gives access to the binary data of a file held in a single field of a database record, as
+ * obtained from Database.openFileSelect(String pKey, int id, Field field). The Connection, statement and
+ * ResultSet used to read the record remain open until the handle is closed, so the content can be read
+ * directly from the database by the JDBC driver, in chunks, rather than being buffered on the heap.<br><br>
+ * When the field isn't of type BLOB, the JDBC driver can only read the content once, so the handle allows a single read,
+ * by any of the methods, and throws an SQLException if the content is read again.<br><br>
+ * <b>Always close the handle</b> once the content has been consumed, so the connection is returned to the pool.
+ * The handle may be used in a try-with-resources statement.<br><br>
+ * <b>Usage Example:</b><br><br>
+ * <code>
+ * BlobHandle handle = db.openFileSelect("id", 123, field);<br>
+ * if(handle != null)<br>
+ * {<br>
+ * &nbsp;&nbsp;try<br>
+ * &nbsp;&nbsp;{<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;handle.transferTo(response.getOutputStream());<br>
+ * &nbsp;&nbsp;}<br>
+ * &nbsp;&nbsp;finally<br>
+ * &nbsp;&nbsp;{<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;handle.close();<br>
+ * &nbsp;&nbsp;}<br>
+ * }<br>
+ * </code>
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public class BlobHandle implements Closeable
+{
+	/** The default number of bytes read from the database and written out at a time: 64 KB */
+	public static final int DEFAULT_CHUNK_SIZE = 65536;
+
+	private Connection connection;
+	private PreparedStatement statement;
+	private ResultSet resultSet;
+	private int column;
+	private Blob blob = null;
+	private boolean isBlob = false;
+	private boolean closed = false;
+	private boolean streamed = false;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private Logger logger;
+
+	//Created by Database.openFileSelect(...) with the ResultSet positioned on the record
+	BlobHandle(Connection conn, PreparedStatement stment, ResultSet rs, int columnIndex, boolean blobColumn) throws SQLException
+	{
+		connection = conn;
+		statement = stment;
+		resultSet = rs;
+		column = columnIndex;
+		logger = Logger.getLogger(BlobHandle.class);
+		isBlob = blobColumn;
+		if(isBlob)
+		{
+			blob = resultSet.getBlob(column);
+		}
+	}
+
+	/**
+	 * Set the number of bytes read from the database and written out at a time by the transferTo methods.
+	 * The default is DEFAULT_CHUNK_SIZE.
+	 * @param bytes
+	 */
+	public void setChunkSize(int bytes)
+	{
+		if(bytes < 1)
+		{
+			throw new IllegalArgumentException("The chunk size must be at least 1 byte.");
+		}
+		chunkSize = bytes;
+	}
+	/**
+	 * Get the number of bytes read from the database and written out at a time by the transferTo methods.
+	 * @return int
+	 */
+	public int getChunkSize()
+	{
+		return chunkSize;
+	}
+	/**
+	 * Get the length of the content in bytes. This is only known when the field is of type BLOB,
+	 * otherwise -1 is returned.
+	 * @return long
+	 * @throws SQLException
+	 */
+	public long length() throws SQLException
+	{
+		checkOpen();
+		if(blob != null)
+			return blob.length();
+		return (isBlob ? 0 : -1);
+	}
+	/**
+	 * Get an InputStream reading the entire content. Closing the InputStream also closes this handle.
+	 * @return InputStream
+	 * @throws SQLException
+	 */
+	public InputStream getInputStream() throws SQLException
+	{
+		checkOpen();
+		InputStream is = openStream();
+		return new FilterInputStream(is){
+			public void close() throws IOException
+			{
+				try
+				{
+					super.close();
+				}
+				finally
+				{
+					BlobHandle.this.close();
+				}
+			}
+		};
+	}
+	/**
+	 * Get an InputStream reading part of the content. Closing the InputStream does not close this handle,
+	 * so several parts may be read with the same handle when the field is of type BLOB. Otherwise the content
+	 * can only be read once.
+	 * @param offset The position of the first byte to read, starting at 0
+	 * @param length The number of bytes to read
+	 * @return InputStream
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public InputStream getInputStream(long offset, long length) throws SQLException, IOException
+	{
+		checkOpen();
+		if(offset < 0 || length < 0)
+		{
+			throw new IllegalArgumentException("The offset and length must not be negative.");
+		}
+		if(blob != null)
+		{
+			//Blob positions start at 1, and the driver reads from the database only the part requested
+			long available = Math.max(blob.length() - offset, 0);
+			if(available == 0 || length == 0)
+				return new ByteArrayInputStream(new byte[0]);
+			return blob.getBinaryStream(offset + 1, Math.min(length, available));
+		}
+		InputStream is = openStream();
+		skipFully(is, offset);
+		return new BoundedInputStream(is, length);
+	}
+	/**
+	 * Write the entire content to an OutputStream, one chunk at a time. The OutputStream is not closed.
+	 * @param out
+	 * @return The number of bytes written
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public long transferTo(OutputStream out) throws SQLException, IOException
+	{
+		checkOpen();
+		InputStream is = openStream();
+		try
+		{
+			return copy(is, out, Long.MAX_VALUE);
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+	/**
+	 * Write part of the content to an OutputStream, one chunk at a time. The OutputStream is not closed.
+	 * This can be used to answer an HTTP range request.
+	 * @param out
+	 * @param offset The position of the first byte to write, starting at 0
+	 * @param length The number of bytes to write
+	 * @return The number of bytes written
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public long transferTo(OutputStream out, long offset, long length) throws SQLException, IOException
+	{
+		InputStream is = getInputStream(offset, length);
+		try
+		{
+			return copy(is, out, length);
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+	/**
+	 * Write the entire content to a WritableByteChannel, one chunk at a time. The channel is not closed.
+	 * @param channel
+	 * @return The number of bytes written
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public long transferTo(WritableByteChannel channel) throws SQLException, IOException
+	{
+		checkOpen();
+		InputStream is = openStream();
+		try
+		{
+			return copy(is, channel, Long.MAX_VALUE);
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+	/**
+	 * Write part of the content to a WritableByteChannel, one chunk at a time. The channel is not closed.
+	 * @param channel
+	 * @param offset The position of the first byte to write, starting at 0
+	 * @param length The number of bytes to write
+	 * @return The number of bytes written
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public long transferTo(WritableByteChannel channel, long offset, long length) throws SQLException, IOException
+	{
+		InputStream is = getInputStream(offset, length);
+		try
+		{
+			return copy(is, channel, length);
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+	/**
+	 * Inquire if this handle has been closed.
+	 * @return true or false
+	 */
+	public boolean isClosed()
+	{
+		return closed;
+	}
+	/**
+	 * Close the ResultSet and statement, and return the Connection to the pool.
+	 * Calling this method more than once has no further effect.
+	 */
+	public void close()
+	{
+		if(closed)
+			return;
+		closed = true;
+		if(blob != null)
+		{
+			try { blob.free(); } catch (SQLException e) { ; } catch (AbstractMethodError e) { ; }
+			blob = null;
+		}
+		try { resultSet.close(); } catch (SQLException e) { ; }
+		try { statement.close(); } catch (SQLException e) { ; }
+		try
+		{
+			connection.commit();
+		}
+		catch(SQLException sqle)
+		{
+			if(Editor.isLoggingEnabled())
+				logger.error("BlobHandle.close: " + Editor.getFullStackTrace(sqle));
+		}
+		try { connection.close(); } catch (SQLException e) { ; }
+	}
+
+	//Open a stream on the entire content, which is empty if the field is null
+	private InputStream openStream() throws SQLException
+	{
+		if(blob == null)
+		{
+			//The column is read from the forward only ResultSet, which most drivers only allow once
+			if(streamed)
+			{
+				throw new SQLException("The content of a field that isn't of type BLOB can only be read once with the same BlobHandle.");
+			}
+			streamed = true;
+		}
+		InputStream is = (blob != null ? blob.getBinaryStream() : resultSet.getBinaryStream(column));
+		return (is != null ? is : new ByteArrayInputStream(new byte[0]));
+	}
+
+	private void checkOpen() throws SQLException
+	{
+		if(closed)
+		{
+			throw new SQLException("The BlobHandle has already been closed.");
+		}
+	}
+
+	private long copy(InputStream is, OutputStream out, long length) throws IOException
+	{
+		byte[] buffer = new byte[(int)Math.min(chunkSize, Math.max(length, 1))];
+		long total = 0;
+		int read = 0;
+		while(total < length && (read = is.read(buffer, 0, (int)Math.min(buffer.length, length - total))) != -1)
+		{
+			out.write(buffer, 0, read);
+			total += read;
+		}
+		return total;
+	}
+
+	private long copy(InputStream is, WritableByteChannel channel, long length) throws IOException
+	{
+		byte[] buffer = new byte[(int)Math.min(chunkSize, Math.max(length, 1))];
+		ByteBuffer bb = ByteBuffer.wrap(buffer);
+		long total = 0;
+		int read = 0;
+		while(total < length && (read = is.read(buffer, 0, (int)Math.min(buffer.length, length - total))) != -1)
+		{
+			bb.clear();
+			bb.limit(read);
+			while(bb.hasRemaining())
+			{
+				channel.write(bb);
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	private static void skipFully(InputStream is, long bytes) throws IOException
+	{
+		long remaining = bytes;
+		while(remaining > 0)
+		{
+			long skipped = is.skip(remaining);
+			if(skipped <= 0)
+			{
+				//Some streams only skip what has been buffered, so read a byte to find out if the end has been reached
+				if(is.read() == -1)
+					return;
+				skipped = 1;
+			}
+			remaining -= skipped;
+		}
+	}
+
+	//Limits the number of bytes that can be read from the underlying stream
+	private static class BoundedInputStream extends FilterInputStream
+	{
+		private long remaining;
+
+		private BoundedInputStream(InputStream is, long length)
+		{
+			super(is);
+			remaining = length;
+		}
+
+		public int read() throws IOException
+		{
+			if(remaining <= 0)
+				return -1;
+			int b = super.read();
+			if(b != -1)
+				remaining--;
+			return b;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			if(remaining <= 0)
+				return -1;
+			int read = super.read(b, off, (int)Math.min(len, remaining));
+			if(read > 0)
+				remaining -= read;
+			return read;
+		}
+
+		public long skip(long n) throws IOException
+		{
+			long skipped = super.skip(Math.min(n, remaining));
+			remaining -= skipped;
+			return skipped;
+		}
+
+		public int available() throws IOException
+		{
+			return (int)Math.min(super.available(), remaining);
+		}
+
+		public boolean markSupported()
+		{
+			return false;
+		}
+	}
+}
@@ -0,0 +1,603 @@
+package com.tacticalenterprisesltd;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The ColumnarResult holds the result of a SELECT query column by column, preserving the type of each column,
+ * rather than as a 2D String[][] array. Columns of whole numbers are kept in int[] or long[] arrays, floating point
+ * columns in double[] arrays, DATE and TIMESTAMP columns as numbers of days or seconds, and the text of other columns
+ * is dictionary encoded, so that a value repeated in many rows is only held once. Null values are recorded in a bitmap
+ * for each column.<br><br>
+ * The column types are determined from the ResultSetMetaData:
+ * <ul>
+ * <li>INT - TINYINT, SMALLINT, INTEGER, and DECIMAL or NUMERIC with a scale of 0 and a precision of up to 9 digits</li>
+ * <li>LONG - BIGINT, and DECIMAL or NUMERIC with a scale of 0 and a precision of up to 18 digits</li>
+ * <li>DOUBLE - REAL, FLOAT and DOUBLE</li>
+ * <li>DATE and TIMESTAMP</li>
+ * <li>BINARY - BINARY, VARBINARY, LONGVARBINARY, BLOB, CLOB and NCLOB. No value is held for these columns.</li>
+ * <li>STRING - every other column, including DECIMAL and NUMERIC columns with a scale, so their exact value is preserved.</li>
+ * </ul>
+ * Obtain an instance from Database.executeSelectColumnar() or Database.executeSelectColumnar(String strQuery).
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public class ColumnarResult
+{
+	public static enum ColumnType {INT,LONG,DOUBLE,DATE,TIMESTAMP,BINARY,STRING};
+
+	private static final int INITIAL_CAPACITY = 64;
+	private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");//Adheres to DATE_ISO_8601 + TIME
+
+	private Column[] columns = new Column[0];
+	private int rowCount = 0;
+	private int capacity = 0;
+
+	/**
+	 * Get the number of rows
+	 * @return int
+	 */
+	public int getRowCount()
+	{
+		return rowCount;
+	}
+	/**
+	 * Get the number of columns
+	 * @return int
+	 */
+	public int getColumnCount()
+	{
+		return columns.length;
+	}
+	/**
+	 * Get the type in which the values of a column are held
+	 * @param column Index of the column, starting at 0
+	 * @return ColumnType
+	 */
+	public ColumnType getColumnType(int column)
+	{
+		return columns[column].type;
+	}
+	/**
+	 * Get the label of a column, as given in the SELECT query
+	 * @param column Index of the column, starting at 0
+	 * @return String
+	 */
+	public String getColumnLabel(int column)
+	{
+		return columns[column].label;
+	}
+	/**
+	 * Determine if the value of a column is null. Columns of type BINARY are never null.
+	 * @param row Index of the row, starting at 0
+	 * @param column Index of the column, starting at 0
+	 * @return boolean
+	 */
+	public boolean isNull(int row, int column)
+	{
+		checkRow(row);
+		return columns[column].isNull(row);
+	}
+	/**
+	 * Get the value of a column of type INT. Returns 0 if the value is null.
+	 * @param row Index of the row, starting at 0
+	 * @param column Index of the column, starting at 0
+	 * @return int
+	 * @throws IllegalArgumentException if the column is not of type INT
+	 */
+	public int getInt(int row, int column)throws IllegalArgumentException
+	{
+		checkRow(row);
+		Column col = columns[column];
+		if(col.type != ColumnType.INT)
+		{
+			throw new IllegalArgumentException("Column " + col.label + " is of type " + col.type.toString() + ", not INT.");
+		}
+		return ((IntColumn)col).values[row];
+	}
+	/**
+	 * Get the value of a column of type INT or LONG. Returns 0 if the value is null.
+	 * @param row Index of the row, starting at 0
+	 * @param column Index of the column, starting at 0
+	 * @return long
+	 * @throws IllegalArgumentException if the column is not of type INT or LONG
+	 */
+	public long getLong(int row, int column)throws IllegalArgumentException
+	{
+		checkRow(row);
+		Column col = columns[column];
+		if(col.type == ColumnType.INT)
+		{
+			return ((IntColumn)col).values[row];
+		}
+		if(col.type != ColumnType.LONG)
+		{
+			throw new IllegalArgumentException("Column " + col.label + " is of type " + col.type.toString() + ", not LONG.");
+		}
+		return ((LongColumn)col).values[row];
+	}
+	/**
+	 * Get the value of a column of type INT, LONG or DOUBLE. Returns 0 if the value is null.
+	 * @param row Index of the row, starting at 0
+	 * @param column Index of the column, starting at 0
+	 * @return double
+	 * @throws IllegalArgumentException if the column is not of type INT, LONG or DOUBLE
+	 */
+	public double getDouble(int row, int column)throws IllegalArgumentException
+	{
+		checkRow(row);
+		Column col = columns[column];
+		if(col.type == ColumnType.INT)
+		{
+			return ((IntColumn)col).values[row];
+		}
+		if(col.type == ColumnType.LONG)
+		{
+			return ((LongColumn)col).values[row];
+		}
+		if(col.type != ColumnType.DOUBLE)
+		{
+			throw new IllegalArgumentException("Column " + col.label + " is of type " + col.type.toString() + ", not DOUBLE.");
+		}
+		return ((DoubleColumn)col).values[row];
+	}
+	/**
+	 * Get the value of a column of type DATE. Returns null if the value is null.
+	 * @param row Index of the row, starting at 0
+	 * @param column Index of the column, starting at 0
+	 * @return LocalDate
+	 * @throws IllegalArgumentException if the column is not of type DATE
+	 */
+	public LocalDate getDate(int row, int column)throws IllegalArgumentException
+	{
+		checkRow(row);
+		Column col = columns[column];
+		if(col.type != ColumnType.DATE)
+		{
+			throw new IllegalArgumentException("Column " + col.label + " is of type " + col.type.toString() + ", not DATE.");
+		}
+		return ((DateColumn)col).getDate(row);
+	}
+	/**
+	 * Get the value of a column of type TIMESTAMP, to the second. Returns null if the value is null.
+	 * @param row Index of the row, starting at 0
+	 * @param column Index of the column, starting at 0
+	 * @return LocalDateTime
+	 * @throws IllegalArgumentException if the column is not of type TIMESTAMP
+	 */
+	public LocalDateTime getTimestamp(int row, int column)throws IllegalArgumentException
+	{
+		checkRow(row);
+		Column col = columns[column];
+		if(col.type != ColumnType.TIMESTAMP)
+		{
+			throw new IllegalArgumentException("Column " + col.label + " is of type " + col.type.toString() + ", not TIMESTAMP.");
+		}
+		return ((TimestampColumn)col).getTimestamp(row);
+	}
+	/**
+	 * Get the value of any column as a String, following the same rules as Database.executeSelect().
+	 * A null value is returned as an empty String, and the value of a BINARY column as &quot;***Binary Data Field***&quot;.
+	 * @param row Index of the row, starting at 0
+	 * @param column Index of the column, starting at 0
+	 * @return String
+	 */
+	public String getString(int row, int column)
+	{
+		checkRow(row);
+		Column col = columns[column];
+		if(col.isNull(row))
+		{
+			return "";
+		}
+		return col.getString(row);
+	}
+	/**
+	 * Get the value of any column as an Object suitable for output to the client side: an Integer, Long or Double for
+	 * the numeric columns, and a String for every other column, formatted in the same manner as getString(int row, int column).
+	 * Returns null if the value is null.
+	 * @param row Index of the row, starting at 0
+	 * @param column Index of the column, starting at 0
+	 * @return Object
+	 */
+	public Object getValue(int row, int column)
+	{
+		checkRow(row);
+		Column col = columns[column];
+		if(col.isNull(row))
+		{
+			return null;
+		}
+		return col.getValue(row);
+	}
+	/**
+	 * Get a row with every value as a String, as it would be obtained from Database.executeSelect().
+	 * @param row Index of the row, starting at 0
+	 * @return String[]
+	 */
+	public String[] getRow(int row)
+	{
+		String[] values = new String[columns.length];
+		for(int j = 0; j < columns.length; j++)
+		{
+			values[j] = getString(row, j);
+		}
+		return values;
+	}
+
+	//Prepare a column for each column of the ResultSet. Called by the Database class before the first row is read.
+	void start(ResultSetMetaData rsmd, int columnCount) throws SQLException
+	{
+		columns = new Column[columnCount];
+		for(int j = 0; j < columnCount; j++)
+		{
+			columns[j] = createColumn(rsmd, j + 1);
+		}
+		rowCount = 0;
+		capacity = 0;
+	}
+
+	//Append the current row of the ResultSet. Called by the Database class for each row.
+	void read(ResultSet resultSet) throws SQLException
+	{
+		if(rowCount == capacity)
+		{
+			capacity = (capacity == 0 ? INITIAL_CAPACITY : capacity * 2);
+			for(int j = 0; j < columns.length; j++)
+			{
+				columns[j].grow(capacity);
+			}
+		}
+		for(int j = 0; j < columns.length; j++)
+		{
+			columns[j].read(resultSet, j + 1, rowCount);
+		}
+		rowCount++;
+	}
+
+	private void checkRow(int row)
+	{
+		if(row < 0 || row >= rowCount)
+		{
+			throw new IndexOutOfBoundsException("Row " + row + " is out of range, there are " + rowCount + " rows.");
+		}
+	}
+
+	private static Column createColumn(ResultSetMetaData rsmd, int index) throws SQLException
+	{
+		String label = rsmd.getColumnLabel(index);
+		switch (rsmd.getColumnType(index))
+		{
+		  case Types.TINYINT:
+		  case Types.SMALLINT:
+		  case Types.INTEGER:
+			  return new IntColumn(label);
+		  case Types.BIGINT:
+			  return new LongColumn(label);
+		  case Types.DECIMAL:
+		  case Types.NUMERIC:
+			  //Only whole numbers are held as such, so the exact value of any other number is preserved as text
+			  int precision = rsmd.getPrecision(index);
+			  if(rsmd.getScale(index) == 0 && precision > 0)
+			  {
+				  if(precision <= 9)
+					  return new IntColumn(label);
+				  if(precision <= 18)
+					  return new LongColumn(label);
+			  }
+			  return new StringColumn(label);
+		  case Types.REAL:
+			  //REAL is single precision, whereas JDBC FLOAT, like DOUBLE, is double precision
+			  return new DoubleColumn(label, true);
+		  case Types.FLOAT:
+		  case Types.DOUBLE:
+			  return new DoubleColumn(label, false);
+		  case Types.DATE:
+			  return new DateColumn(label);
+		  case Types.TIMESTAMP:
+			  return new TimestampColumn(label);
+		  case Types.BINARY:
+		  case Types.VARBINARY:
+		  case Types.LONGVARBINARY:
+		  case Types.BLOB:
+		  case Types.CLOB:
+		  case Types.NCLOB:
+			  return new BinaryColumn(label);
+		  default:
+			  return new StringColumn(label);
+		}
+	}
+
+	//The values of one column, with a bitmap of the rows holding a null value
+	private static abstract class Column
+	{
+		private ColumnType type;
+		private String label;
+		private long[] nulls = new long[0];
+
+		private Column(ColumnType t, String lbl)
+		{
+			type = t;
+			label = lbl;
+		}
+
+		void grow(int capacity)
+		{
+			nulls = Arrays.copyOf(nulls, (capacity + 63) >>> 6);
+		}
+
+		void setNull(int row)
+		{
+			nulls[row >>> 6] |= 1L << row;
+		}
+
+		boolean isNull(int row)
+		{
+			return (nulls[row >>> 6] & (1L << row)) != 0;
+		}
+
+		abstract void read(ResultSet resultSet, int index, int row) throws SQLException;
+
+		abstract String getString(int row);
+
+		Object getValue(int row)
+		{
+			return getString(row);
+		}
+	}
+
+	private static class IntColumn extends Column
+	{
+		private int[] values = new int[0];
+
+		private IntColumn(String label)
+		{
+			super(ColumnType.INT, label);
+		}
+
+		void grow(int capacity)
+		{
+			super.grow(capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		void read(ResultSet resultSet, int index, int row) throws SQLException
+		{
+			values[row] = resultSet.getInt(index);
+			if(resultSet.wasNull())
+				setNull(row);
+		}
+
+		String getString(int row)
+		{
+			return Integer.toString(values[row]);
+		}
+
+		Object getValue(int row)
+		{
+			return Integer.valueOf(values[row]);
+		}
+	}
+
+	private static class LongColumn extends Column
+	{
+		private long[] values = new long[0];
+
+		private LongColumn(String label)
+		{
+			super(ColumnType.LONG, label);
+		}
+
+		void grow(int capacity)
+		{
+			super.grow(capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		void read(ResultSet resultSet, int index, int row) throws SQLException
+		{
+			values[row] = resultSet.getLong(index);
+			if(resultSet.wasNull())
+				setNull(row);
+		}
+
+		String getString(int row)
+		{
+			return Long.toString(values[row]);
+		}
+
+		Object getValue(int row)
+		{
+			return Long.valueOf(values[row]);
+		}
+	}
+
+	//A single precision column is formatted as a float, so 0.1 isn't output as 0.10000000149011612
+	private static class DoubleColumn extends Column
+	{
+		private double[] values = new double[0];
+		private boolean single;
+
+		private DoubleColumn(String label, boolean singlePrecision)
+		{
+			super(ColumnType.DOUBLE, label);
+			single = singlePrecision;
+		}
+
+		void grow(int capacity)
+		{
+			super.grow(capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		void read(ResultSet resultSet, int index, int row) throws SQLException
+		{
+			values[row] = resultSet.getDouble(index);
+			if(resultSet.wasNull())
+				setNull(row);
+		}
+
+		String getString(int row)
+		{
+			//Plain notation, as the drivers return the value with getString(), rather than 1.0E7
+			String value = (single ? Float.toString((float)values[row]) : Double.toString(values[row]));
+			if(Double.isNaN(values[row]) || Double.isInfinite(values[row]))
+				return value;
+			return new BigDecimal(value).stripTrailingZeros().toPlainString();
+		}
+
+		Object getValue(int row)
+		{
+			if(single)
+				return Float.valueOf((float)values[row]);
+			return Double.valueOf(values[row]);
+		}
+	}
+
+	//Held as the number of days since 1970-01-01
+	private static class DateColumn extends Column
+	{
+		private long[] values = new long[0];
+
+		private DateColumn(String label)
+		{
+			super(ColumnType.DATE, label);
+		}
+
+		void grow(int capacity)
+		{
+			super.grow(capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		void read(ResultSet resultSet, int index, int row) throws SQLException
+		{
+			java.sql.Date dte = resultSet.getDate(index);
+			if(dte == null)
+				setNull(row);
+			else
+				values[row] = dte.toLocalDate().toEpochDay();
+		}
+
+		LocalDate getDate(int row)
+		{
+			if(isNull(row))
+				return null;
+			return LocalDate.ofEpochDay(values[row]);
+		}
+
+		String getString(int row)
+		{
+			//Adheres to DATE_ISO_8601
+			return LocalDate.ofEpochDay(values[row]).toString();
+		}
+	}
+
+	//Held as the number of seconds since 1970-01-01 00:00:00, in local time
+	private static class TimestampColumn extends Column
+	{
+		private long[] values = new long[0];
+
+		private TimestampColumn(String label)
+		{
+			super(ColumnType.TIMESTAMP, label);
+		}
+
+		void grow(int capacity)
+		{
+			super.grow(capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		void read(ResultSet resultSet, int index, int row) throws SQLException
+		{
+			java.sql.Timestamp tstamp = resultSet.getTimestamp(index);
+			if(tstamp == null)
+				setNull(row);
+			else
+				values[row] = tstamp.toLocalDateTime().toEpochSecond(ZoneOffset.UTC);
+		}
+
+		LocalDateTime getTimestamp(int row)
+		{
+			if(isNull(row))
+				return null;
+			return LocalDateTime.ofEpochSecond(values[row], 0, ZoneOffset.UTC);
+		}
+
+		String getString(int row)
+		{
+			return TIMESTAMP_FORMAT.format(LocalDateTime.ofEpochSecond(values[row], 0, ZoneOffset.UTC));
+		}
+	}
+
+	private static class BinaryColumn extends Column
+	{
+		private BinaryColumn(String label)
+		{
+			super(ColumnType.BINARY, label);
+		}
+
+		void read(ResultSet resultSet, int index, int row) throws SQLException
+		{
+			//The content is never read, just as with Database.executeSelect()
+		}
+
+		String getString(int row)
+		{
+			return Constants.BINARYDATA;
+		}
+	}
+
+	//Each distinct value is held once in the dictionary, and each row holds the index of its value
+	private static class StringColumn extends Column
+	{
+		private int[] codes = new int[0];
+		private ArrayList<String> dictionary = new ArrayList<String>();
+		private HashMap<String,Integer> lookup = new HashMap<String,Integer>();
+
+		private StringColumn(String label)
+		{
+			super(ColumnType.STRING, label);
+		}
+
+		void grow(int capacity)
+		{
+			super.grow(capacity);
+			codes = Arrays.copyOf(codes, capacity);
+		}
+
+		void read(ResultSet resultSet, int index, int row) throws SQLException
+		{
+			String value = resultSet.getString(index);
+			if(value == null)
+			{
+				setNull(row);
+				return;
+			}
+			Integer code = lookup.get(value);
+			if(code == null)
+			{
+				code = Integer.valueOf(dictionary.size());
+				dictionary.add(value);
+				lookup.put(value, code);
+			}
+			codes[row] = code.intValue();
+		}
+
+		String getString(int row)
+		{
+			return dictionary.get(codes[row]);
+		}
+	}
+}
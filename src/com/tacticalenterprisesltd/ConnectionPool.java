@@ -0,0 +1,644 @@
+package com.tacticalenterprisesltd;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Timer;
+import java.util.TimerTask;
+import javax.sql.DataSource;
+import org.apache.log4j.Logger;
+
+/**
+ * A small connection pool for use where the servlet container does not provide one, such as in batch jobs and tests,
+ * and for the connections obtained by Database.getConnection(RDBMS type, String classForName, ...).
+ * Physical connections are obtained from the DriverManager as they are needed, up to the maximum size of the pool.
+ * Closing a Connection obtained from the pool returns it to the pool rather than closing it.<br><br>
+ * Connections that have been idle for longer than the maximum idle time are closed by a background task. A connection
+ * that has been idle for longer than the validation interval is validated with Connection.isValid(int) before
+ * it is handed out again, and replaced if it is no longer valid. When all the connections are in use, a request for a
+ * connection waits up to the maximum wait time for one to be returned before an SQLException is thrown.<br><br>
+ * Each connection keeps up to DEFAULT_STATEMENT_CACHE_SIZE PreparedStatements open in a StatementCache, so the SQL
+ * generated by the Query class for a given Editor is only parsed once per connection.<br><br>
+ * Register an instance with the DataSourceRegistry so that it is used by the Database class. When the DataSource
+ * is provided by the servlet container instead, statement caching is a matter for its configuration or for the JDBC driver,
+ * for example <i>cachePrepStmts=true</i> for MySQL or <i>statementPoolingCacheSize</i> for SQL Server.
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public class ConnectionPool implements DataSource
+{
+	/** The default maximum number of physical connections: 10 */
+	public static final int DEFAULT_MAX_SIZE = 10;
+	/** The default number of milliseconds a connection may remain idle before it is closed: 5 minutes */
+	public static final long DEFAULT_MAX_IDLE_TIME = 300000;
+	/** The default number of milliseconds to wait for a connection when all are in use: 10 seconds */
+	public static final long DEFAULT_MAX_WAIT = 10000;
+	/** The default number of milliseconds a connection may remain idle before it is validated: 30 seconds */
+	public static final long DEFAULT_VALIDATION_INTERVAL = 30000;
+	/** The default number of seconds to wait for a connection to be validated: 2 seconds */
+	public static final int DEFAULT_VALIDATION_TIMEOUT = 2;
+	/** The default number of PreparedStatements kept open for each connection: 50 */
+	public static final int DEFAULT_STATEMENT_CACHE_SIZE = 50;
+	
+	private static HashMap<String,ConnectionPool> pools = new HashMap<String,ConnectionPool>();
+	private static Timer evictor = null;
+	
+	private String url = "";
+	private String userName = null;
+	private String password = null;
+	private int maxSize = DEFAULT_MAX_SIZE;
+	private long maxIdleTime = DEFAULT_MAX_IDLE_TIME;
+	private long maxWait = DEFAULT_MAX_WAIT;
+	private long validationInterval = DEFAULT_VALIDATION_INTERVAL;
+	private int validationTimeout = DEFAULT_VALIDATION_TIMEOUT;
+	private int statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+	private long statementCacheHits = 0;
+	private long statementCacheMisses = 0;
+	private LinkedList<IdleConnection> idle = new LinkedList<IdleConnection>();
+	private int size = 0;
+	private boolean closed = false;
+	private TimerTask evictionTask = null;
+	private PrintWriter logWriter = null;
+	private Logger logger;
+	
+	/**
+	 * Constructor
+	 * @param connectionURL The JDBC URL, example: jdbc:mysql://localhost:3306/fcs_db
+	 * @param user
+	 * @param pass
+	 */
+	public ConnectionPool(String connectionURL, String user, String pass)
+	{
+		url = connectionURL;
+		userName = user;
+		password = pass;
+		logger = Logger.getLogger(ConnectionPool.class);
+		scheduleEviction();
+	}
+	
+	/**
+	 * Get the pool shared by the whole application for the JDBC URL, user and password, creating it the first time.
+	 * The JDBC driver class is loaded once, when the pool is created. A different password, such as a new one after the
+	 * password has been changed, gets its own pool, so connections are never handed out to a caller that didn't
+	 * authenticate them.
+	 * @param classForName The JDBC driver class, or null if the driver registers itself.
+	 * @param connectionURL
+	 * @param user
+	 * @param pass
+	 * @return ConnectionPool
+	 * @throws ClassNotFoundException
+	 */
+	public static synchronized ConnectionPool getPool(String classForName, String connectionURL, String user, String pass) throws ClassNotFoundException
+	{
+		String key = connectionURL + "|" + user + "|" + digest(pass);
+		ConnectionPool pool = pools.get(key);
+		if(pool == null || pool.isClosed())
+		{
+			if(classForName != null && !classForName.isEmpty())
+			{
+				Class.forName(classForName);
+			}
+			pool = new ConnectionPool(connectionURL, user, pass);
+			pools.put(key, pool);
+		}
+		return pool;
+	}
+	
+	//The password is only held in the key as a SHA-256 digest
+	private static String digest(String pass)
+	{
+		if(pass == null)
+			return "";
+		try
+		{
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(pass.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder();
+			for(int i = 0; i < hash.length; i++)
+			{
+				sb.append(String.format("%02x", hash[i]));
+			}
+			return sb.toString();
+		}
+		catch(NoSuchAlgorithmException nsae)
+		{
+			//Every Java platform is required to support SHA-256
+			throw new IllegalStateException(nsae);
+		}
+	}
+	
+	/**
+	 * Set the maximum number of physical connections. The default is DEFAULT_MAX_SIZE.
+	 * @param value
+	 */
+	public synchronized void setMaxSize(int value)
+	{
+		maxSize = value;
+		notifyAll();
+	}
+	/**
+	 * Get the maximum number of physical connections.
+	 * @return int
+	 */
+	public synchronized int getMaxSize()
+	{
+		return maxSize;
+	}
+	/**
+	 * Set the number of milliseconds a connection may remain idle before it is closed.
+	 * The default is DEFAULT_MAX_IDLE_TIME.
+	 * @param milliseconds
+	 */
+	public synchronized void setMaxIdleTime(long milliseconds)
+	{
+		maxIdleTime = milliseconds;
+		scheduleEviction();
+	}
+	/**
+	 * Get the number of milliseconds a connection may remain idle before it is closed.
+	 * @return long
+	 */
+	public synchronized long getMaxIdleTime()
+	{
+		return maxIdleTime;
+	}
+	/**
+	 * Set the number of milliseconds to wait for a connection when all are in use.
+	 * The default is DEFAULT_MAX_WAIT.
+	 * @param milliseconds
+	 */
+	public synchronized void setMaxWait(long milliseconds)
+	{
+		maxWait = milliseconds;
+	}
+	/**
+	 * Get the number of milliseconds to wait for a connection when all are in use.
+	 * @return long
+	 */
+	public synchronized long getMaxWait()
+	{
+		return maxWait;
+	}
+	/**
+	 * Set the number of milliseconds a connection may remain idle before it is validated
+	 * when handed out again. Use 0 to validate every time. The default is DEFAULT_VALIDATION_INTERVAL.
+	 * @param milliseconds
+	 */
+	public synchronized void setValidationInterval(long milliseconds)
+	{
+		validationInterval = milliseconds;
+	}
+	/**
+	 * Get the number of milliseconds a connection may remain idle before it is validated.
+	 * @return long
+	 */
+	public synchronized long getValidationInterval()
+	{
+		return validationInterval;
+	}
+	/**
+	 * Set the number of seconds to wait for a connection to be validated.
+	 * The default is DEFAULT_VALIDATION_TIMEOUT.
+	 * @param seconds
+	 */
+	public synchronized void setValidationTimeout(int seconds)
+	{
+		validationTimeout = seconds;
+	}
+	/**
+	 * Get the number of seconds to wait for a connection to be validated.
+	 * @return int
+	 */
+	public synchronized int getValidationTimeout()
+	{
+		return validationTimeout;
+	}
+	/**
+	 * Set the maximum number of PreparedStatements kept open for each connection. Use 0 to disable
+	 * statement caching. This applies to connections made after it is set. The default is DEFAULT_STATEMENT_CACHE_SIZE.
+	 * @param value
+	 */
+	public synchronized void setStatementCacheSize(int value)
+	{
+		statementCacheSize = value;
+	}
+	/**
+	 * Get the maximum number of PreparedStatements kept open for each connection.
+	 * @return int
+	 */
+	public synchronized int getStatementCacheSize()
+	{
+		return statementCacheSize;
+	}
+	/**
+	 * Get the number of times a PreparedStatement was found in the StatementCache of a connection.
+	 * @return long
+	 */
+	public synchronized long getStatementCacheHits()
+	{
+		return statementCacheHits;
+	}
+	/**
+	 * Get the number of times a PreparedStatement had to be prepared by the driver.
+	 * @return long
+	 */
+	public synchronized long getStatementCacheMisses()
+	{
+		return statementCacheMisses;
+	}
+	
+	//Called by the StatementCache of each connection
+	synchronized void recordStatementCache(boolean hit)
+	{
+		if(hit)
+			statementCacheHits++;
+		else
+			statementCacheMisses++;
+	}
+	/**
+	 * Get the number of physical connections currently open, whether in use or idle.
+	 * @return int
+	 */
+	public synchronized int getSize()
+	{
+		return size;
+	}
+	/**
+	 * Get the number of idle connections.
+	 * @return int
+	 */
+	public synchronized int getIdleCount()
+	{
+		return idle.size();
+	}
+	/**
+	 * Get the number of connections in use.
+	 * @return int
+	 */
+	public synchronized int getActiveCount()
+	{
+		return size - idle.size();
+	}
+	/**
+	 * Inquire if the pool has been closed.
+	 * @return true or false
+	 */
+	public synchronized boolean isClosed()
+	{
+		return closed;
+	}
+	
+	/**
+	 * Obtain a Connection from the pool. Closing the Connection returns it to the pool.
+	 * @return Connection
+	 * @throws SQLException if the pool is closed, no connection became available within the maximum wait time,
+	 * or a new physical connection could not be made.
+	 */
+	public Connection getConnection() throws SQLException
+	{
+		long deadline = System.currentTimeMillis() + maxWait;
+		while(true)
+		{
+			IdleConnection candidate = null;
+			synchronized(this)
+			{
+				while(candidate == null)
+				{
+					if(closed)
+					{
+						throw new SQLException("The connection pool has been closed.");
+					}
+					if(!idle.isEmpty())
+					{
+						//The most recently used connection is the least likely to have gone stale
+						candidate = idle.removeLast();
+					}
+					else if(size < maxSize)
+					{
+						size++;
+						break;
+					}
+					else
+					{
+						long wait = deadline - System.currentTimeMillis();
+						if(wait <= 0)
+						{
+							throw new SQLException("Timed out waiting for a connection from the pool. All " + maxSize + " connections are in use.");
+						}
+						try
+						{
+							wait(wait);
+						}
+						catch(InterruptedException ie)
+						{
+							Thread.currentThread().interrupt();
+							throw new SQLException("Interrupted while waiting for a connection from the pool.");
+						}
+					}
+				}
+			}
+			
+			if(candidate == null)
+			{
+				//Room has been reserved for a new physical connection
+				try
+				{
+					Connection physical = DriverManager.getConnection(url, userName, password);
+					return wrap(new IdleConnection(physical, new StatementCache(physical, this, getStatementCacheSize()), 0));
+				}
+				catch(SQLException sqle)
+				{
+					discarded();
+					throw sqle;
+				}
+			}
+			
+			if(System.currentTimeMillis() - candidate.since < validationInterval || isValid(candidate.connection))
+			{
+				return wrap(candidate);
+			}
+			if(Editor.isLoggingEnabled())
+			{
+				logger.debug("ConnectionPool.getConnection - discarding a connection that is no longer valid: " + url);
+			}
+			closeQuietly(candidate);
+			discarded();
+		}
+	}
+	
+	/**
+	 * This method is not supported, as every connection in the pool uses the same user.
+	 * @throws SQLException
+	 */
+	public Connection getConnection(String user, String pass) throws SQLException
+	{
+		throw new SQLFeatureNotSupportedException("ConnectionPool does not support connections for other users.");
+	}
+	
+	/**
+	 * Close every idle connection, and every connection in use as it is returned to the pool.
+	 * Once closed, no further connections can be obtained from the pool.
+	 */
+	public void close()
+	{
+		ArrayList<IdleConnection> toClose = new ArrayList<IdleConnection>();
+		synchronized(this)
+		{
+			closed = true;
+			if(evictionTask != null)
+			{
+				evictionTask.cancel();
+				evictionTask = null;
+			}
+			toClose.addAll(idle);
+			size -= idle.size();
+			idle.clear();
+			notifyAll();
+		}
+		for(IdleConnection ic : toClose)
+		{
+			closeQuietly(ic);
+		}
+	}
+	
+	/**
+	 * Close the connections that have been idle for longer than the maximum idle time.
+	 * This is performed periodically by a background task, but may be called at any time.
+	 */
+	public void evictIdleConnections()
+	{
+		ArrayList<IdleConnection> toClose = new ArrayList<IdleConnection>();
+		synchronized(this)
+		{
+			long now = System.currentTimeMillis();
+			Iterator<IdleConnection> it = idle.iterator();
+			while(it.hasNext())
+			{
+				IdleConnection ic = it.next();
+				if(now - ic.since > maxIdleTime)
+				{
+					it.remove();
+					toClose.add(ic);
+					size--;
+				}
+			}
+			if(!toClose.isEmpty())
+				notifyAll();
+		}
+		for(IdleConnection ic : toClose)
+		{
+			closeQuietly(ic);
+		}
+	}
+	
+	//Return a physical connection to the pool once its handle is closed
+	private void release(IdleConnection entry)
+	{
+		Connection physical = entry.connection;
+		boolean discard = false;
+		try
+		{
+			//Don't let an unfinished transaction leak into the next use of the connection
+			if(physical.isClosed())
+			{
+				discard = true;
+			}
+			else if(physical.getAutoCommit() == false)
+			{
+				physical.rollback();
+				physical.setAutoCommit(true);
+			}
+			//Statements the caller did not close become available again
+			entry.statements.reclaim();
+		}
+		catch(SQLException sqle)
+		{
+			discard = true;
+		}
+		synchronized(this)
+		{
+			if(discard == false && closed == false)
+			{
+				entry.since = System.currentTimeMillis();
+				idle.addLast(entry);
+				notifyAll();
+				return;
+			}
+		}
+		closeQuietly(entry);
+		discarded();
+	}
+	
+	//A physical connection has been closed, or could not be made
+	private synchronized void discarded()
+	{
+		size--;
+		notifyAll();
+	}
+	
+	private boolean isValid(Connection conn)
+	{
+		try
+		{
+			return conn.isValid(validationTimeout);
+		}
+		catch(SQLException sqle)
+		{
+			return false;
+		}
+	}
+	
+	private void closeQuietly(IdleConnection entry)
+	{
+		entry.statements.closeAll();
+		try { entry.connection.close(); } catch (SQLException e) { ; }
+	}
+	
+	private synchronized void scheduleEviction()
+	{
+		if(evictionTask != null)
+		{
+			evictionTask.cancel();
+		}
+		if(closed || maxIdleTime <= 0)
+		{
+			evictionTask = null;
+			return;
+		}
+		synchronized(ConnectionPool.class)
+		{
+			if(evictor == null)
+			{
+				evictor = new Timer("JED ConnectionPool evictor", true);
+			}
+		}
+		evictionTask = new TimerTask(){
+			public void run()
+			{
+				evictIdleConnections();
+			}
+		};
+		long period = Math.max(1000, maxIdleTime / 2);
+		evictor.schedule(evictionTask, period, period);
+	}
+	
+	//Hand out a physical connection through a proxy, so that closing it returns it to the pool
+	//and the statements it prepares are taken from its StatementCache
+	private Connection wrap(final IdleConnection entry)
+	{
+		final Connection physical = entry.connection;
+		return (Connection)Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler(){
+			private boolean handleClosed = false;
+			
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+			{
+				String methodName = method.getName();
+				if(methodName.equals("close"))
+				{
+					if(handleClosed == false)
+					{
+						handleClosed = true;
+						release(entry);
+					}
+					return null;
+				}
+				if(methodName.equals("isClosed"))
+				{
+					return Boolean.valueOf(handleClosed || physical.isClosed());
+				}
+				if(methodName.equals("equals"))
+				{
+					return Boolean.valueOf(proxy == args[0]);
+				}
+				if(methodName.equals("hashCode"))
+				{
+					return Integer.valueOf(System.identityHashCode(proxy));
+				}
+				if(methodName.equals("toString"))
+				{
+					return "Pooled " + physical.toString();
+				}
+				if(handleClosed)
+				{
+					throw new SQLException("The connection has already been returned to the pool.");
+				}
+				if(methodName.equals("prepareStatement"))
+				{
+					return entry.statements.prepare(method, args);
+				}
+				try
+				{
+					return method.invoke(physical, args);
+				}
+				catch(InvocationTargetException ite)
+				{
+					throw ite.getCause();
+				}
+			}
+		});
+	}
+	
+	public PrintWriter getLogWriter() throws SQLException
+	{
+		return logWriter;
+	}
+	
+	public void setLogWriter(PrintWriter out) throws SQLException
+	{
+		logWriter = out;
+	}
+	
+	public void setLoginTimeout(int seconds) throws SQLException
+	{
+		DriverManager.setLoginTimeout(seconds);
+	}
+	
+	public int getLoginTimeout() throws SQLException
+	{
+		return DriverManager.getLoginTimeout();
+	}
+	
+	public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException
+	{
+		throw new SQLFeatureNotSupportedException("ConnectionPool does not use java.util.logging.");
+	}
+	
+	public <T> T unwrap(Class<T> iface) throws SQLException
+	{
+		if(iface.isInstance(this))
+			return iface.cast(this);
+		throw new SQLException("ConnectionPool is not a wrapper for " + iface.getName());
+	}
+	
+	public boolean isWrapperFor(Class<?> iface) throws SQLException
+	{
+		return iface.isInstance(this);
+	}
+	
+	//A physical connection, its statements, and when it was last returned to the pool
+	private static class IdleConnection
+	{
+		private Connection connection;
+		private StatementCache statements;
+		private long since;
+		
+		private IdleConnection(Connection conn, StatementCache cache, long time)
+		{
+			connection = conn;
+			statements = cache;
+			since = time;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.tacticalenterprisesltd;
+
+import java.util.HashMap;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+/**
+ * The DataSourceRegistry holds the DataSource for each database name used by the Database class, and is
+ * shared by the whole application. Creating a new instance of Database no longer requires a new InitialContext
+ * and JNDI lookup each time: the first lookup of a name is performed against <i>java:comp/env/jdbc/</i> and
+ * the DataSource obtained is remembered.<br><br>
+ * Outside of a servlet container, such as in batch jobs or tests, there is no JNDI environment. In that case
+ * register a DataSource under the database name before creating any instance of Database. The ConnectionPool
+ * class provides a small pool for this purpose.<br><br>
+ * <b>Usage Example:</b><br><br>
+ * <code>
+ * DataSourceRegistry.register("fcs_db", new ConnectionPool("jdbc:mysql://localhost:3306/fcs_db", "webapp", "secret"));<br>
+ * Database db = new Database("fcs_db");<br>
+ * </code>
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public class DataSourceRegistry
+{
+	/** The JNDI context in which the DataSources of the servlet container are looked up */
+	public static final String JNDI_PREFIX = "java:comp/env/jdbc/";
+	
+	private static HashMap<String,DataSource> sources = new HashMap<String,DataSource>();
+	private static Context context = null;
+	
+	private DataSourceRegistry()
+	{
+		
+	}
+	
+	/**
+	 * Register a DataSource under the name of a database. Any DataSource previously registered
+	 * or looked up under the name is replaced.
+	 * @param dbName
+	 * @param dataSource
+	 */
+	public static synchronized void register(String dbName, DataSource dataSource)
+	{
+		sources.put(dbName, dataSource);
+	}
+	
+	/**
+	 * Remove the DataSource registered under the name of a database.
+	 * @param dbName
+	 * @return The DataSource removed, or null if there wasn't one.
+	 */
+	public static synchronized DataSource unregister(String dbName)
+	{
+		return sources.remove(dbName);
+	}
+	
+	/**
+	 * Inquire if a DataSource is registered under the name of a database.
+	 * @param dbName
+	 * @return true or false
+	 */
+	public static synchronized boolean isRegistered(String dbName)
+	{
+		return sources.containsKey(dbName);
+	}
+	
+	/**
+	 * Get the DataSource for the name of a database. If none has been registered,
+	 * it is looked up in the JNDI context java:comp/env/jdbc/ and remembered.
+	 * @param dbName
+	 * @return DataSource
+	 * @throws NamingException if the DataSource is not registered and cannot be looked up.
+	 */
+	public static synchronized DataSource getDataSource(String dbName) throws NamingException
+	{
+		DataSource ds = sources.get(dbName);
+		if(ds == null)
+		{
+			if(context == null)
+			{
+				context = new InitialContext();
+			}
+			ds = (DataSource)context.lookup(JNDI_PREFIX + dbName);
+			sources.put(dbName, ds);
+		}
+		return ds;
+	}
+	
+	/**
+	 * Remove all registered DataSources. Any ConnectionPool that was registered is not closed.
+	 */
+	public static synchronized void clear()
+	{
+		sources.clear();
+	}
+}
@@ -2,20 +2,27 @@ package com.tacticalenterprisesltd;
 
 import java.io.InputStream;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import javax.annotation.Resource;
-import javax.naming.Context;
-import javax.naming.InitialContext;
 import javax.sql.DataSource;
 import org.apache.log4j.Logger;
 import java.sql.*;
-import java.text.SimpleDateFormat;
-import java.util.StringTokenizer;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * The Database class performs all the necessary functions required to SELECT, UPDATE, INSERT, and DELETE records.<br>
@@ -24,7 +31,10 @@ import java.util.StringTokenizer;
  * <li>MySql (default) v5.0 or higher</li>
  * <li>Oracle v12c or higher</li>
  * <li>SQL Server v2012 or higher</li>
+ * <li>PostgreSQL v9.5 or higher</li>
+ * <li>H2 v1.4.200 or higher</li>
  * </ul>
+ * The SQL that differs between them is produced by the Dialect of each, which may be replaced by calling setDialect(Dialect dialect).
  * <p>The JED library of classes support DataTables on the server side for full CRUD (Create,Read,Update and Delete) operations, and are expected to be used in a Java environment
  * using a servlet container such as Tomcat, or Glassfish.</p>
  * <h2>Setup:</h2>
@@ -85,6 +95,8 @@ import java.util.StringTokenizer;
  * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;|_ gson-2.2.4.jar<br>
  * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;|_ log4j-1.2.8.jar<br>
  * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;|_ mysql-connector-java-5.1.18.jar<br><br>
+ * Outside of a servlet container, such as in batch jobs or tests, register a DataSource under the database name with the
+ * DataSourceRegistry before creating an instance of this class. The ConnectionPool class can serve as that DataSource.<br><br>
  * <b>Usage Example:</b><br><br>
  * <code>
  * String dbName = "fcs_db";<br>
@@ -106,13 +118,46 @@ public class Database
 	public String name = "";
 	public Query query = null;
 	private Editor reference = null;
+	private Object writer = null;
 	private Logger logger;
-	private Context ctx = null;    
 	private DataSource ds = null;
-	public static enum RDBMS {MYSQL,ORACLE,SQLSERVER};	
+	public static enum RDBMS {MYSQL,ORACLE,SQLSERVER,POSTGRESQL,H2};	
 	protected RDBMS dbtype = RDBMS.MYSQL;
+	private Dialect dialect = new MySQLDialect();
+	/**
+	 * The strategies available for obtaining the recordsFiltered and recordsTotal values during server side processing.
+	 * <ul>
+	 * <li>SEPARATE_QUERIES (default) - a SELECT COUNT(*) query is issued after the page of records has been obtained,
+	 * plus another for the total when there are WHERE conditions. This works with every supported database.</li>
+	 * <li>WINDOW_FUNCTION - the window function COUNT(*) OVER() is added to the query for the page of records, so the
+	 * counts are returned together with the records in a single statement. This requires MySQL v8.0, Oracle v12c or
+	 * SQL Server v2012 or higher. If the page contains no records, the counts are obtained with SEPARATE_QUERIES.</li>
+	 * </ul>
+	 */
+	public static enum CountStrategy {SEPARATE_QUERIES,WINDOW_FUNCTION};
+	private CountStrategy countStrategy = CountStrategy.SEPARATE_QUERIES;
+	private long totalCountTTL = TotalCountCache.DEFAULT_TIME_TO_LIVE;
+	private long resultCacheTTL = 0;
+	private boolean selectCompleted = false;
 	private boolean datasourceException = false;
 	private boolean connectionException = false;
+	/** The default number of rows the JDBC driver is asked to fetch per round trip when streaming a SELECT. */
+	public static final int DEFAULT_FETCH_SIZE = 500;
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+	/** The default maximum number of statements sent to the database in a single JDBC batch. */
+	public static final int DEFAULT_BATCH_SIZE = 500;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private int queryTimeout = 0;
+	private int requestQueryTimeout = -1;
+	private String drawKey = null;
+	private int drawNumber = -1;
+	private boolean drawCancelled = false;
+	/** The default number of threads of the executor running the asynchronous methods. */
+	public static final int DEFAULT_ASYNC_THREADS = 10;
+	/** The default number of tasks the executor running the asynchronous methods queues before the caller runs them itself. */
+	public static final int DEFAULT_ASYNC_QUEUE_SIZE = 1000;
+	private static Executor asyncExecutor = null;
+	private UnitOfWork unitOfWork = null;
 	
 	/**
 	 * The default RDBMS type is MYSQL. If you want to specify some other RDBMS,
@@ -124,8 +169,7 @@ public class Database
 		try{
 		name = dbName;
 		logger = Logger.getLogger(Database.class);
-		ctx = new InitialContext();
-		setDataSource(ctx);
+		setDataSource();
 		}
 		catch(Exception e)
 	    {
@@ -149,9 +193,10 @@ public class Database
 		try{
 		name = dbName;
 		dbtype = type;
+		dialect = createDialect(type);
+		countStrategy = dialect.getDefaultCountStrategy();
 		logger = Logger.getLogger(Database.class);
-		ctx = new InitialContext();
-		setDataSource(ctx);
+		setDataSource();
 		}
 		catch(Exception e)
 	    {
@@ -166,11 +211,13 @@ public class Database
 	    }
 	}
 	
+	//The DataSource is obtained from the DataSourceRegistry, which only performs
+	//a JNDI lookup the first time a database name is used.
 	@Resource
-	private void setDataSource(Context context)
+	private void setDataSource()
 	{
 		try{
-			ds = (DataSource)ctx.lookup("java:comp/env/jdbc/" + name); 
+			ds = DataSourceRegistry.getDataSource(name); 
 		}
 		catch(Exception e)
 	    {
@@ -186,6 +233,69 @@ public class Database
 	    }
 	}
 	
+	/**
+	 * Create the Dialect supplied for a type of RDBMS
+	 * @param type
+	 * @return Dialect
+	 */
+	public static Dialect createDialect(RDBMS type)
+	{
+		switch (type)
+		{
+		  case ORACLE:
+			  return new OracleDialect();
+		  case SQLSERVER:
+			  return new SQLServerDialect();
+		  case POSTGRESQL:
+			  return new PostgreSQLDialect();
+		  case H2:
+			  return new H2Dialect();
+		  default:
+			  return new MySQLDialect();
+		}
+	}
+	/**
+	 * Replace the Dialect chosen for the RDBMS type of this instance, such as with an OracleDialect using identity columns,
+	 * or a Dialect of your own for some other database management system. The count strategy is set to the default of the Dialect.
+	 * @param value
+	 */
+	public void setDialect(Dialect value)
+	{
+		dialect = value;
+		countStrategy = dialect.getDefaultCountStrategy();
+	}
+	/**
+	 * Get the Dialect producing the SQL that differs between database management systems.
+	 * @return Dialect
+	 */
+	public Dialect getDialect()
+	{
+		return dialect;
+	}
+	/**
+	 * Split an array of ids into comma separated lists for the IN (...) condition of a query, each holding
+	 * no more ids than the Dialect allows in a single IN list. The ids keep their order.
+	 * @param ids
+	 * @return String[]
+	 */
+	protected String[] getInLists(int[] ids)
+	{
+		int max = Math.max(dialect.getMaxInListSize(), 1);
+		String[] lists = new String[(ids.length + max - 1) / max];
+		for(int i = 0; i < lists.length; i++)
+		{
+			StringBuilder sb = new StringBuilder();
+			for(int j = i * max; j < Math.min((i + 1) * max, ids.length); j++)
+			{
+				if(sb.length() > 0)
+					sb.append(",");
+				sb.append(ids[j]);
+			}
+			lists[i] = sb.toString();
+		}
+		return lists;
+	}
+	
 	/**
 	 * Set a reference to an instance of the Editor class
 	 * @param ref
@@ -194,6 +304,163 @@ public class Database
 	{
 		reference = ref;			
 	}
+	/**
+	 * Set the number of rows the JDBC driver should fetch from the database per round trip
+	 * when executing a SELECT. A value of 0 leaves the driver's own default in place.
+	 * Note that the MySQL driver only streams rows one at a time when the fetch size is set
+	 * to Integer.MIN_VALUE, or fetches them in blocks when the connection URL includes useCursorFetch=true.
+	 * The default is DEFAULT_FETCH_SIZE.
+	 * @param rows
+	 */
+	public void setFetchSize(int rows)
+	{
+		fetchSize = rows;
+	}
+	/**
+	 * Get the number of rows the JDBC driver is asked to fetch per round trip when executing a SELECT.
+	 * @return int
+	 */
+	public int getFetchSize()
+	{
+		return fetchSize;
+	}
+	/**
+	 * Set the number of seconds the JDBC driver waits for a statement to execute before it is cancelled and
+	 * an SQLException is thrown. A Query may override this with Query.setQueryTimeout(int seconds).
+	 * A value of 0, the default, means there is no limit.
+	 * @param seconds
+	 */
+	public void setQueryTimeout(int seconds)
+	{
+		if(seconds < 0)
+		{
+			throw new IllegalArgumentException("The query timeout must not be negative.");
+		}
+		queryTimeout = seconds;
+	}
+	/**
+	 * Get the number of seconds the JDBC driver waits for a statement to execute.
+	 * @return int
+	 */
+	public int getQueryTimeout()
+	{
+		return queryTimeout;
+	}
+	
+	//Set by the Editor for the statements of the request it is processing, leaving the timeout set with
+	//setQueryTimeout(int seconds) unchanged for every other use of this Database. Use -1 to clear it.
+	void setRequestQueryTimeout(int seconds)
+	{
+		requestQueryTimeout = seconds;
+	}
+	
+	//The timeout of the statements of the request in progress, if set, otherwise that of this Database
+	int getStatementTimeout()
+	{
+		return (requestQueryTimeout > -1 ? requestQueryTimeout : queryTimeout);
+	}
+	/**
+	 * Identify the server side processing draw the next execution of a SELECT Query belongs to, so that it is
+	 * cancelled if a newer draw arrives for the same key while it is still executing.
+	 * @param key Identifies the session and table, or null to stop tracking draws
+	 * @param draw The draw counter sent by the client side
+	 * @see DrawRegistry
+	 */
+	protected void setDraw(String key, int draw)
+	{
+		drawKey = key;
+		drawNumber = draw;
+	}
+	/**
+	 * Inquire if the last execution of a SELECT Query was cancelled because a newer draw arrived.
+	 * @return true or false
+	 */
+	protected boolean isDrawCancelled()
+	{
+		return drawCancelled;
+	}
+	/**
+	 * Set the maximum number of statements sent to the database in a single JDBC batch by
+	 * executeBatch(Query[] queries). Larger arrays of queries are sent in several batches within the same transaction.
+	 * The default is DEFAULT_BATCH_SIZE.
+	 * @param size
+	 */
+	public void setBatchSize(int size)
+	{
+		if(size < 1)
+		{
+			throw new IllegalArgumentException("The batch size must be at least 1.");
+		}
+		batchSize = size;
+	}
+	/**
+	 * Get the maximum number of statements sent to the database in a single JDBC batch.
+	 * @return int
+	 */
+	public int getBatchSize()
+	{
+		return batchSize;
+	}
+	/**
+	 * Set the strategy used to obtain the recordsFiltered and recordsTotal values during server side processing.
+	 * The default is the count strategy of the Dialect, which is CountStrategy.SEPARATE_QUERIES for MySQL, Oracle and SQL Server.
+	 * @param strategy
+	 */
+	public void setCountStrategy(CountStrategy strategy)
+	{
+		countStrategy = strategy;
+	}
+	/**
+	 * Get the strategy used to obtain the recordsFiltered and recordsTotal values during server side processing.
+	 * @return CountStrategy
+	 */
+	public CountStrategy getCountStrategy()
+	{
+		return countStrategy;
+	}
+	/**
+	 * Set the number of milliseconds the total number of records in a table, the recordsTotal value
+	 * used by server side processing, is held in the TotalCountCache before the table is counted again.
+	 * Inserts and deletes performed through this class adjust the cached total, so the time to live only
+	 * needs to account for records written by other applications. Use 0 to count the table on every draw.
+	 * The default is TotalCountCache.DEFAULT_TIME_TO_LIVE.
+	 * @param milliseconds
+	 */
+	public void setTotalCountCacheTTL(long milliseconds)
+	{
+		totalCountTTL = milliseconds;
+		if(milliseconds <= 0 && query != null)
+		{
+			TotalCountCache.invalidate(name, query.getParentTable());
+		}
+	}
+	/**
+	 * Get the number of milliseconds the total number of records in a table is held in the TotalCountCache.
+	 * @return long
+	 */
+	public long getTotalCountCacheTTL()
+	{
+		return totalCountTTL;
+	}
+	/**
+	 * Set the number of milliseconds the rows returned by executeSelect() are held in the ResultCache, so the
+	 * same SELECT with the same values is answered from memory. Writes performed through this class discard the results
+	 * selected from the table written to, so the time to live only needs to account for records written by other applications.
+	 * The default is 0, meaning results are not cached.
+	 * @param milliseconds
+	 */
+	public void setResultCacheTTL(long milliseconds)
+	{
+		resultCacheTTL = milliseconds;
+	}
+	/**
+	 * Get the number of milliseconds the rows returned by executeSelect() are held in the ResultCache.
+	 * @return long
+	 */
+	public long getResultCacheTTL()
+	{
+		return resultCacheTTL;
+	}
 	/**
 	 * Set a reference to an instance of the Query class
 	 * @param q
@@ -204,16 +471,20 @@ public class Database
 		query.setDatabase(this);
 	}
 	/**
-	 * This form of the getConnection method is made available for convenience and does <b>NOT</b> attempt to derive a Connection from a connection pool.
-	 * Instead, it obtains a Connection by accessing a JDBC Driver directly so that you may connect to a different database other than the one that the
-	 * servlet container has pooled.<br><br>
+	 * This form of the getConnection method is made available for convenience and does <b>NOT</b> attempt to derive a Connection from the connection pool
+	 * of the servlet container. Instead, it obtains a Connection through a JDBC Driver directly so that you may connect to a different database other than the one that the
+	 * servlet container has pooled. The connections are kept in a ConnectionPool shared by the whole application for each URL and user, so the
+	 * driver is only loaded once and a physical connection is only made when no idle one is available.<br><br>
 	 * Example for connection to MySQL:<br><br>
 	 * <pre>getConnection(Database.RDBMS.MYSQL,"org.gjt.mm.mysql.Driver","localhost","3306","scott", "tiger")</pre><br>
 	 * Example for connection to Oracle:<br><br>
 	 * <pre>getConnection(Database.RDBMS.ORACLE,"oracle.jdbc.OracleDriver","localhost","1521","scott","tiger")</pre><br><br>
 	 * Example for connection to SQL SERVER:<br><br>
 	 * <pre>getConnection(Database.RDBMS.SQLSERVER,"com.microsoft.sqlserver.jdbc.SQLServerDriver","localhost","1433","scott","tiger")</pre><br><br>
-	 * Don't forget to close the connection when you are done with it. 
+	 * Example for connection to PostgreSQL:<br><br>
+	 * <pre>getConnection(Database.RDBMS.POSTGRESQL,"org.postgresql.Driver","localhost","5432","scott","tiger")</pre><br><br>
+	 * The URL is produced by the Dialect of the RDBMS type.
+	 * Don't forget to close the connection when you are done with it, which returns it to the pool. 
 	 * @param type
 	 * @param classForName
 	 * @param URL
@@ -225,24 +496,11 @@ public class Database
 	public Connection getConnection(RDBMS type,String classForName,String URL,String PORT,String UserName, String Password)
 	{
 		Connection connection = null;
-		String connectionString = "jdbc:";
 		
 		try
 	    {
-	      if(type == RDBMS.MYSQL)
-	      {	    	  
-	    	  connectionString += "mysql://" + URL + ":" + PORT + "/" + name;
-	      }
-	      else if(type == RDBMS.ORACLE)
-	      {
-	    	  connectionString += "oracle:thin:@" + URL + ":" + PORT + ":" + name;
-	      }
-	      else if(type == RDBMS.SQLSERVER)
-	      {
-	    	  connectionString += "sqlserver://" + URL + ":" + PORT + "/" + name;
-	      }
-	      Class.forName(classForName).newInstance();
-		  connection = DriverManager.getConnection(connectionString, UserName, Password);
+	      String connectionString = (type == dbtype ? dialect : createDialect(type)).getJdbcUrl(URL, PORT, name);
+		  connection = ConnectionPool.getPool(classForName, connectionString, UserName, Password).getConnection();
 	    }
 		catch(SQLException sqle)
 	    {
@@ -273,17 +531,26 @@ public class Database
 	    return connection;
 	}
 	/**
-	 * Obtain a Connection to perform a query. This method first
-	 * creates a Context and performs a lookup on the system to obtain a DataSource object.
+	 * Obtain a Connection to perform a query. The DataSource is obtained from the DataSourceRegistry
+	 * when this instance is created, which performs a JNDI lookup on the system the first time a database name is used.
 	 * From the DataSource, we return a Connection.  To use this method, it is assumed
-	 * you have created a context.xml file in the META-INF directory. 
+	 * you have created a context.xml file in the META-INF directory, or registered a DataSource
+	 * such as a ConnectionPool with the DataSourceRegistry. 
 	 * <br><br>It is this method that is called directly by the methods:<br><br>
 	 * executeSelect(), executeSelect(String strQuery),<br>
-	 * executeInsertUpdate(),executeDeletes(Query[] queries)
+	 * executeInsertUpdate(),executeDeletes(Query[] queries)<br><br>
+	 * SELECT queries obtain their Connection from a read replica instead, when a ReadReplicaRouter
+	 * has been configured for the name of this database.<br><br>
+	 * While a UnitOfWork is active on this Database, the Connection it shares is returned instead, on which
+	 * commit() and close() have no effect.
 	 * @return Connection
 	 */
 	public Connection getConnection()
 	{
+		if(unitOfWork != null)
+		{
+			return unitOfWork.getConnection();
+		}
 		Connection connection = null;
 		try
 	    {
@@ -323,18 +590,160 @@ public class Database
 	    return connection;
 	}
 	
+	/**
+	 * Begin a UnitOfWork, so that every query this Database executes until it is committed or rolled back
+	 * shares a single Connection and a single transaction.
+	 * @return UnitOfWork, or null if a Connection could not be obtained
+	 * @throws IllegalStateException if a unit of work is already active on this Database
+	 */
+	public UnitOfWork beginUnitOfWork() throws IllegalStateException
+	{
+		if(unitOfWork != null)
+		{
+			throw new IllegalStateException("A unit of work is already active on the database " + name + ".");
+		}
+		Connection connection = getConnection();
+		if(connection == null || connectionException)
+		{
+			return null;
+		}
+		try
+		{
+			unitOfWork = new UnitOfWork(this, connection);
+		}
+		catch(SQLException sqle)
+		{
+			String extra = "SQL Problem: " + sqle.getMessage() + "\n";
+			extra += "SQL State: " + sqle.getSQLState() + "\n";
+			extra += "Vendor Error: " + sqle.getErrorCode() + "\n";
+			if(Editor.isLoggingEnabled())
+				logger.error("Database.beginUnitOfWork: " + extra + Editor.getFullStackTrace(sqle));
+			else
+				System.out.println(extra + Editor.getFullStackTrace(sqle));
+			try { connection.close(); } catch (SQLException e) { ; }
+		}
+		return unitOfWork;
+	}
+	/**
+	 * Get the UnitOfWork active on this Database.
+	 * @return UnitOfWork, or null if none is active
+	 */
+	public UnitOfWork getUnitOfWork()
+	{
+		return unitOfWork;
+	}
+	
+	//Called by the UnitOfWork once it has been committed or rolled back
+	void endUnitOfWork(UnitOfWork unit)
+	{
+		if(unitOfWork == unit)
+		{
+			unitOfWork = null;
+		}
+	}
+	
+	//Inquire if any of the tables has been written within the active unit of work, in which case its records
+	//must neither be read from a cache nor held in one, since they have not been committed
+	boolean isUncommitted(String[] tables)
+	{
+		for(int i = 0; unitOfWork != null && i < tables.length; i++)
+		{
+			if(unitOfWork.hasWritten(tables[i]))
+				return true;
+		}
+		return false;
+	}
+	
+	//Inquire if the last SELECT executed by this instance read every row without an error
+	boolean isSelectCompleted()
+	{
+		return selectCompleted;
+	}
+	
+	//Identifies whoever writes through this Database for the read-your-writes window of the ReadReplicaRouter:
+	//the user session when the Editor has a session key, otherwise this Database, or the one it was copied from
+	Object getWriter()
+	{
+		if(writer != null)
+			return writer;
+		if(reference != null && reference.getSessionKey() != null)
+			return "session|" + reference.getSessionKey();
+		return this;
+	}
+	
+	//Obtain a Connection for a SELECT query, from a read replica when a ReadReplicaRouter has been configured
+	//for this database and its writer has made no write within the read-your-writes window, otherwise from the primary
+	private Connection getReadConnection()
+	{
+		if(unitOfWork != null)
+		{
+			//Only the Connection of the unit of work sees the records it has written
+			return unitOfWork.getConnection();
+		}
+		ReadReplicaRouter router = ReadReplicaRouter.findRouter(name);
+		if(router != null)
+		{
+			Connection connection = router.getConnection(getWriter());
+			if(connection != null)
+			{
+				return connection;
+			}
+		}
+		return getConnection();
+	}
+	
 	/**
 	 * Use this method specifically for getting the binary data of a file contained in a database.
 	 * The database field should be created of type TINYBLOB,BLOB,CLOB,NCLOB,MEDIUMBLOB,OR LONGBLOB. The type names
 	 * may differ on other database systems, but as long as the field can hold large binary data, then you're good to go.
-	 * The pKey and id values are used in a WHERE condition to obtain the specific record.
+	 * The pKey and id values are used in a WHERE condition to obtain the specific record.<br><br>
+	 * The InputStream returned reads the content directly from the database, so <b>it must be closed</b> once it
+	 * has been read, which returns the connection to the pool. This method is a convenience wrapper around
+	 * openFileSelect(String pKey, int id, Field field).
 	 * @param pKey The name of the primary key field for the table in question
 	 * @param id  The actual id value of the primary key field
 	 * @param field  A Field object which should contain the names of the table and the field containing the binary file data
-	 * @return An InputStream object
+	 * @return An InputStream object, or null if there is no such record or the field cannot contain binary data
 	 * @throws InsufficientDataException
 	 */
 	public InputStream executeFileSelect(String pKey, int id, Field field) throws InsufficientDataException
+	{
+		BlobHandle handle = openFileSelect(pKey, id, field);
+		if(handle == null)
+		{
+			return null;
+		}
+		try
+		{
+			return handle.getInputStream();
+		}
+		catch(SQLException sqle)
+		{
+			handle.close();
+			if(Editor.isLoggingEnabled())
+	  		{
+				logger.error("Database.executeFileSelect: " + Editor.getFullStackTrace(sqle));
+	  		}
+			else
+			{
+				System.out.println(Editor.getFullStackTrace(sqle));
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Open a BlobHandle on the binary data of a file contained in a database, so that it can be streamed in chunks
+	 * to an OutputStream or WritableByteChannel, in whole or in part, without being buffered on the heap.
+	 * The database field should be able to hold large binary data, as with executeFileSelect(String pKey, int id, Field field).
+	 * The connection remains open until the BlobHandle is closed, so <b>always close it</b> once the content has been consumed.
+	 * @param pKey The name of the primary key field for the table in question
+	 * @param id  The actual id value of the primary key field
+	 * @param field  A Field object which should contain the names of the table and the field containing the binary file data
+	 * @return A BlobHandle, or null if there is no such record or the field cannot contain binary data
+	 * @throws InsufficientDataException
+	 */
+	public BlobHandle openFileSelect(String pKey, int id, Field field) throws InsufficientDataException
 	{
 		String tableName = field.getTableName();
 		String fieldName = field.getDBFieldName();
@@ -357,67 +766,43 @@ public class Database
 		}
 		
 		Connection connection = null;
-	    Statement statement = null;
+	    PreparedStatement statement = null;
 	    ResultSet resultSet = null;
-	    InputStream data = null;
-	    String strquery = "SELECT " + field.toString() + " FROM " + field.getTableName() + " WHERE " + pKey + " = " + String.valueOf(id);
+	    BlobHandle handle = null;
+	    String strquery = "SELECT " + field.toString() + " FROM " + tableName + " WHERE " + pKey + " = ?";
 	    	    
 	    try{
 	      connection = getConnection();
 	      if(connectionException == false)
 	      {
-	            statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
-                resultSet = statement.executeQuery(strquery);
-                 //move the cursor to the last record to obtain the record number
-                resultSet.last();
-                int recordCount = resultSet.getRow();
-                //return the cursor to the first record
-                resultSet.first();
-                ResultSetMetaData rsmd = resultSet.getMetaData();
-                int type = -1;
-                
-                for(int i = 0; i < recordCount; i++)
+	    	    //Some databases only keep a LOB readable for the duration of the transaction
+	    	    connection.setAutoCommit(false);
+	            statement = connection.prepareStatement(strquery, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+	            statement.setQueryTimeout(getStatementTimeout());
+	            statement.setInt(1, id);
+                resultSet = statement.executeQuery();
+                if(resultSet.next())
                 {
-              	  for(int j = 0; j < 1; j++)
-                  {            		
-            		  type = rsmd.getColumnType(j + 1);
-            		  switch (type)
-            		  {
-            		    case Types.BINARY:
-            		    	data = resultSet.getBinaryStream(j + 1);
-            		    	break;
-            		    case Types.VARBINARY:
-            		    	data = resultSet.getBinaryStream(j + 1);
-            		    	break;            		    	
-            		    case Types.LONGVARBINARY:
-            		    	data = resultSet.getBinaryStream(j + 1);
-            		    	break;
-            		    case Types.BLOB:
-            		    	data = resultSet.getBinaryStream(j + 1);
-            		    	break;
-            		    case Types.CLOB:
-            		    	data = resultSet.getBinaryStream(j + 1);
-            		    	break;
-            		    case Types.NCLOB:
-            		    	data = resultSet.getBinaryStream(j + 1);
-            		    	break;
-            		    default:
-            		    	if(Editor.isLoggingEnabled())
-                  	  	    {
-                  			  logger.debug("Database.executeFileSelect - The database field indicated is not conducive to containing large binary data");
-                  	  	    }            			  
-            		  }            		  
-                  }
-            	  resultSet.next();
-                }            
-                
-                resultSet.close();
-                resultSet = null;
-                statement.close();
-                statement = null;  
-        	    connection.close();
-        	    connection = null;
-             
+                  int type = resultSet.getMetaData().getColumnType(1);
+          		  switch (type)
+          		  {
+          		    case Types.BINARY:
+          		    case Types.VARBINARY:
+          		    case Types.LONGVARBINARY:
+          		    case Types.CLOB:
+          		    case Types.NCLOB:
+          		    	handle = new BlobHandle(connection, statement, resultSet, 1, false);
+          		    	break;
+          		    case Types.BLOB:
+          		    	handle = new BlobHandle(connection, statement, resultSet, 1, true);
+          		    	break;
+          		    default:
+          		    	if(Editor.isLoggingEnabled())
+                	  	{
+                		  logger.debug("Database.openFileSelect - The database field indicated is not conducive to containing large binary data");
+                	  	}
+          		  }
+                }
 	      }
 	    }
 	    catch(SQLException sqle)
@@ -427,7 +812,7 @@ public class Database
 	  		extra += "Vendor Error: " + sqle.getErrorCode() + "\n";	
 	  		if(Editor.isLoggingEnabled())
 	  		{	
-	  			logger.error("Database.executeFileSelect - query: " + strquery);
+	  			logger.error("Database.openFileSelect - query: " + strquery);
 	  		    logger.error(extra + Editor.getFullStackTrace(sqle));	  		    
 	  		}
 	  		else
@@ -439,7 +824,7 @@ public class Database
 	    {
 	      if(Editor.isLoggingEnabled())
 		  {
-	    	logger.error("Database.executeFileSelect - query: " + strquery);	        
+	    	logger.error("Database.openFileSelect - query: " + strquery);	        
 	        logger.error(Editor.getFullStackTrace(e));	        
 		  }
 	      else
@@ -449,26 +834,29 @@ public class Database
 	    }
 	    finally
 	    {
-	      // Always make sure result sets and statements are closed,
+	      // Unless a BlobHandle now owns them, make sure result sets and statements are closed,
 	      // and the connection is returned to the pool
-	      if (resultSet != null)
+	      if(handle == null)
 	      {
-	        try { resultSet.close(); } catch (SQLException e) { ; }
-	        resultSet = null;
-	      }
-	      if (statement != null)
-	      {
-	        try { statement.close(); } catch (SQLException e) { ; }
-	        statement = null;
-	      }	      
-	      if (connection != null)
-	      {
-	        try { connection.close(); } catch (SQLException e) { ; }
-	        connection = null;
+	        if (resultSet != null)
+	        {
+	          try { resultSet.close(); } catch (SQLException e) { ; }
+	          resultSet = null;
+	        }
+	        if (statement != null)
+	        {
+	          try { statement.close(); } catch (SQLException e) { ; }
+	          statement = null;
+	        }	      
+	        if (connection != null)
+	        {
+	          try { connection.close(); } catch (SQLException e) { ; }
+	          connection = null;
+	        }
 	      }
 	    }	    
 	    
-		return data;
+		return handle;
 	}
 	
 	/**
@@ -476,11 +864,71 @@ public class Database
 	 * regardless of each field type. If a field type that holds large
 	 * amounts of binary data such as a BLOB, CLOB, NCLOB, LONGVARBINARY, etc.
 	 * the return value will always be &quot;***Binary Data Field***&quot; regardless of 
-	 * whether the field is null or not.
+	 * whether the field is null or not.<br><br>
+	 * This method is a compatibility wrapper around executeSelect(RowVisitor visitor) which gathers
+	 * every row into memory. For large result sets consider supplying a RowVisitor instead.<br><br>
+	 * When a time to live has been set by setResultCacheTTL(long milliseconds), the rows are held in the ResultCache,
+	 * along with the counts for server side processing, and returned from there the next time the same query is executed.
 	 * @return a 2D String[][] array
 	 * @throws IllegalArgumentException
 	 */
 	public String[][] executeSelect()throws IllegalArgumentException
+	{
+		boolean usingSSP = reference != null && reference.usingSSP;
+		String cacheKey = null;
+		if(resultCacheTTL > 0 && query.getQueryType() == Query.Type.SELECT && isUncommitted(query.getTablesSelected()) == false)
+		{
+			cacheKey = query.getResultCacheKey() + (usingSSP ? "|SSP" : "");
+			ResultCache.Result cached = ResultCache.get(name, cacheKey);
+			if(cached != null)
+			{
+				if(usingSSP)
+				{
+					query.setIFilteredTotal(cached.getFilteredTotal());
+					query.setITotal(cached.getTotal());
+				}
+				return cached.getRows();
+			}
+		}
+		RowCollector collector = new RowCollector();
+		executeSelect(collector);
+		String[][] rows = collector.getRows();
+		if(cacheKey != null && selectCompleted)
+		{
+			ResultCache.put(name, cacheKey, query.getTablesSelected(), rows, usingSSP ? query.getIFilteredTotal() : -1, usingSSP ? query.getITotal() : -1, resultCacheTTL);
+		}
+		return rows;
+	}
+	/**
+	 * Execute the SELECT Query supplied to this class and hand each row to the RowVisitor
+	 * as soon as it has been read from the ResultSet. The statement is forward only and uses
+	 * the fetch size set by setFetchSize(int rows), so the JDBC driver is not required to buffer the
+	 * entire result, and no row is retained by this class once the visitor has returned.
+	 * All data is obtained as a String in the same manner as executeSelect().
+	 * @param visitor
+	 * @return The number of rows handed to the visitor
+	 * @throws IllegalArgumentException
+	 */
+	public int executeSelect(RowVisitor visitor)throws IllegalArgumentException
+	{
+		return executeSelect(new VisitorReader(visitor));
+	}
+	/**
+	 * Execute the SELECT Query supplied to this class and gather the result column by column
+	 * in a ColumnarResult, which keeps numeric values in primitive arrays and dictionary encodes text.
+	 * The statement is forward only and uses the fetch size set by setFetchSize(int rows), and
+	 * server side processing is handled in the same manner as executeSelect().
+	 * @return ColumnarResult
+	 * @throws IllegalArgumentException
+	 */
+	public ColumnarResult executeSelectColumnar()throws IllegalArgumentException
+	{
+		ColumnarResult result = new ColumnarResult();
+		executeSelect(new ColumnarReader(result));
+		return result;
+	}
+	
+	private int executeSelect(RowReader reader)throws IllegalArgumentException
 	{
 		if(query.getQueryType() != Query.Type.SELECT)
 		{
@@ -490,134 +938,113 @@ public class Database
 		Connection connection = null;
 	    PreparedStatement statement = null;
 	    ResultSet resultSet = null;
-	    String[][] data = null;
-	    SimpleDateFormat sdf = null;	    
+	    int rowCount = 0;
+	    boolean usingSSP = reference != null && reference.usingSSP;
+	    int filtered = -1;
+	    int total = -1;
+	    int cachedTotal = -1;
+	    boolean countCacheable = (isUncommitted(new String[]{query.getParentTable()}) == false);
+	    if(usingSSP && totalCountTTL > 0 && countCacheable)
+	    {
+	    	cachedTotal = TotalCountCache.get(name, query.getParentTable());
+	    }
+	    //Register the draw, so it can be cancelled when superseded by a newer one
+	    DrawRegistry.Ticket ticket = null;
+	    drawCancelled = false;
+	    selectCompleted = false;
+	    if(usingSSP && drawKey != null)
+	    {
+	    	ticket = DrawRegistry.begin(drawKey, drawNumber);
+	    }
 	    
 	    try{
-	      connection = getConnection();
+	      connection = getReadConnection();
 	      if(connectionException == false)
 	      {
 	            connection.setAutoCommit(false);
             
-            	//statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+	            //With keyset pagination, seek past the last record of the previous page when it is known
+	            int offset = Math.max(query.getOffset(), 0);
+	            boolean keysetPaging = query.isKeysetPagination() && query.getLimit() > -1;
+	            if(keysetPaging)
+	            {
+	              query.setKeyset(offset > 0 ? KeysetBookmarks.get(name, query, offset) : null);
+	            }
+	            //A window count would only include the records after the one sought past, so the counts are queried separately
+	            query.setWindowCount(usingSSP && countStrategy == CountStrategy.WINDOW_FUNCTION && query.isKeysetSeek() == false, cachedTotal < 0);
             	statement = query.getPreparedStatement(connection);
+            	applyFetchSize(statement);
+            	if(ticket != null)
+            	{
+            	  ticket.setStatement(statement);
+            	}
                 resultSet = statement.executeQuery();
-                Field[] flds = query.getFields();
-                int columns = flds.length;
-                //move the cursor to the last record to obtain the record number
-                resultSet.last();
-                int recordCount = resultSet.getRow();
-                //Dimension the String[][] array
-                data = new String[recordCount][columns];
-                //return the cursor to the first record
-                resultSet.first();
-                String temp = "";
-                ResultSetMetaData rsmd = resultSet.getMetaData();
-                int type = -1;
-                java.sql.Date dte = null;
-                java.sql.Timestamp tstamp = null;
-                for(int i = 0; i < recordCount; i++)
+                int columns = query.getFields().length;
+                int keyColumns = keysetPaging ? query.getKeysetColumns().length : 0;
+                Object[] lastKey = null;
+                reader.start(resultSet.getMetaData(), columns);
+                while(resultSet.next())
                 {
-              	  for(int j = 0; j < columns; j++)
-                  {            		
-            		  type = rsmd.getColumnType(j + 1);
-            		  //System.out.println("select() - Column Type: " + type);
-            		  switch (type)
-            		  {
-            		    case Types.DATE:
-            		    	sdf = new SimpleDateFormat("yyyy-MM-dd");//Adheres to DATE_ISO_8601	
-                  		    dte = resultSet.getDate(j + 1);             		  
-                  		    if(resultSet.wasNull())
-                  		       data[i][j] = "";
-                  		    else
-                  		       data[i][j] = sdf.format(dte);
-                  		    break;
-            		    case Types.TIMESTAMP:
-            		    	sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");//Adheres to DATE_ISO_8601 + TIME	
-                  		    tstamp = resultSet.getTimestamp(j + 1);             		  
-                  		    if(resultSet.wasNull())
-                  		       data[i][j] = "";
-                  		    else
-                  		       data[i][j] = sdf.format(tstamp);
-                  		    break;
-            		    case Types.BINARY:
-            		    	data[i][j] = Constants.BINARYDATA;
-            		    	break;
-            		    case Types.VARBINARY:
-            		    	data[i][j] = Constants.BINARYDATA;
-            		    	break;
-            		    case Types.LONGVARBINARY:
-            		    	data[i][j] = Constants.BINARYDATA;
-            		    	break;
-            		    case Types.BLOB:
-            		    	data[i][j] = Constants.BINARYDATA;
-            		    	break;
-            		    case Types.CLOB:
-            		    	data[i][j] = Constants.BINARYDATA;
-            		    	break;
-            		    case Types.NCLOB:
-            		    	data[i][j] = Constants.BINARYDATA;
-            		    	break;
-            		    default:
-            		    	temp = resultSet.getString(j + 1);
-                  		    if(resultSet.wasNull())
-                  		       data[i][j] = "";
-                  		    else
-                  		       data[i][j] = temp;
-            		  }            		  
-                  }
-            	  resultSet.next();
+                	if(rowCount == 0 && query.isWindowCount())
+                	{
+                		//The window count columns follow the fields and hold the same values on every row
+                		filtered = resultSet.getInt(Query.FILTERED_COUNT);
+                		if(query.isWindowCountWithTotal())
+                		  total = resultSet.getInt(Query.TOTAL_COUNT);
+                		else if(query.haveWhereConditions())
+                		  total = cachedTotal;
+                		else
+                		  total = filtered;
+                	}
+                	if(keyColumns > 0)
+                	{
+                		lastKey = new Object[keyColumns];
+                		for(int k = 0; k < keyColumns; k++)
+                		{
+                			lastKey[k] = resultSet.getObject(Query.KEYSET_COLUMN + k);
+                		}
+                	}
+                	reader.read(resultSet);
+                	rowCount++;
+                }
+                if(lastKey != null)
+                {
+                	KeysetBookmarks.put(name, query, offset + rowCount, lastKey);
+                }
+                //The result must be closed before issuing any further statements on this connection,
+                //as some drivers (MySQL) do not allow it while a streaming result is still open.
+                resultSet.close();
+                resultSet = null;
+                statement.close();
+                statement = null;
+                if(ticket != null)
+                {
+                  ticket.clearStatement();
                 }
             
                 //If reference to the class Editor is null then this Database class isn't being used
                 //in conjunction with the Editor class.  Therefore, we don't need to calculate the number
                 //of records returned from the query.
-                if(reference != null && reference.usingSSP)
+                if(usingSSP)
                 {
-                  //GET THE NUMBER OF RECORDS RETURNED BASED ON THE ORIGINAL QUERY.
-                  boolean flag = false;
-                  int foundrows = 0;
-         
-                  Statement stment = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
-                  String queryStr = "";
-                  if(query.haveWhereConditions())
+                  if(filtered > -1)
                   {
-            	      queryStr = "SELECT COUNT(*) COUNT FROM " + query.getParentTable() + query.prepareWhereWithValues(query.getWhereConditions());            	      
+                	query.setIFilteredTotal(filtered);
+                	query.setITotal(total);
+                	if(total != cachedTotal && countCacheable)
+                	{
+                	  TotalCountCache.put(name, query.getParentTable(), total, totalCountTTL);
+                	}
                   }
                   else
                   {
-            	      queryStr = "SELECT COUNT(*) COUNT FROM " + query.getParentTable();
-                      flag = true;
+                    countRecords(connection, cachedTotal, ticket);
                   }
-     	   
-                  resultSet = stment.executeQuery(queryStr);
-                  resultSet.first();
-                  foundrows = resultSet.getInt("COUNT");
-                  query.setIFilteredTotal(foundrows);
-              
-     	   
-     	          //GET THE TOTAL NUMBER OF RECORDS IN THE TABLE.
-                  if(flag == false)
-                  {
-                	stment = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
-                	queryStr = "SELECT COUNT(*) COUNT FROM " + query.getParentTable();
-     	            resultSet = stment.executeQuery(queryStr);
-                    resultSet.first();
-                    int ttl = resultSet.getInt("COUNT");
-                    query.setITotal(ttl);
-                  }
-                  else
-                  {
-                    query.setITotal(foundrows);
-                  }              
                 }
                 connection.commit();            
-        	    resultSet.close();
-                resultSet = null;
-                statement.close();
-                statement = null;  
         	    connection.close();
         	    connection = null;
+        	    selectCompleted = true;
              
 	      }
 	    }
@@ -626,7 +1053,15 @@ public class Database
 	    	String extra = "SQL Problem: " + sqle.getMessage() + "\n";
 	  		extra += "SQL State: " + sqle.getSQLState() + "\n";
 	  		extra += "Vendor Error: " + sqle.getErrorCode() + "\n";	
-	  		if(Editor.isLoggingEnabled())
+	  		if(ticket != null && ticket.isCancelled())
+	  		{
+	  			//A newer draw arrived, so the client side has no use for this one
+	  			drawCancelled = true;
+	  			if(Editor.isLoggingEnabled())
+	  				logger.debug("Database.executeSelect - draw " + drawNumber + " superseded: " + sqle.getMessage());
+	  			try { connection.rollback(); } catch (SQLException excep) { ; }
+	  		}
+	  		else if(Editor.isLoggingEnabled())
 	  		{	
 	  			logger.error("Database.executeSelect - query: " + query.toString());
 	  		    logger.error(extra + Editor.getFullStackTrace(sqle));
@@ -674,6 +1109,10 @@ public class Database
 	    }
 	    finally
 	    {
+	      if (ticket != null)
+	      {
+	        DrawRegistry.end(ticket);
+	      }
 	      // Always make sure result sets and statements are closed,
 	      // and the connection is returned to the pool
 	      if (resultSet != null)
@@ -692,23 +1131,126 @@ public class Database
 	        connection = null;
 	      }
 	    }	    
-	    if(data == null)
-	    {
-	    	data = new String[0][0];
-	    }
-		return data;
+		return rowCount;
 	}
+	
+	//Helper method to set recordsFiltered and recordsTotal on the Query for server side processing.
+	//A cachedTotal of -1 means the total number of records in the table is not known.
+	private void countRecords(Connection connection, int cachedTotal, DrawRegistry.Ticket ticket) throws SQLException
+	{
+        Statement stment = null;
+        ResultSet resultSet = null;
+        int total = cachedTotal;
+        try{
+          stment = connection.createStatement();
+          stment.setQueryTimeout(query.getEffectiveQueryTimeout());
+          if(ticket != null)
+          {
+        	ticket.setStatement(stment);
+          }
+          String queryStr = "";
+          //GET THE NUMBER OF RECORDS RETURNED BASED ON THE ORIGINAL QUERY.
+          if(query.haveWhereConditions())
+          {
+    	      queryStr = "SELECT COUNT(*) COUNT FROM " + query.getParentTable() + query.prepareWhereWithValues(query.getWhereConditions());
+    	      resultSet = stment.executeQuery(queryStr);
+              resultSet.next();
+              query.setIFilteredTotal(resultSet.getInt("COUNT"));
+              resultSet.close();
+              resultSet = null;
+          }
+	   
+	      //GET THE TOTAL NUMBER OF RECORDS IN THE TABLE, UNLESS IT IS ALREADY KNOWN.
+          if(total < 0)
+          {
+        	queryStr = "SELECT COUNT(*) COUNT FROM " + query.getParentTable();
+	        resultSet = stment.executeQuery(queryStr);
+            resultSet.next();
+            total = resultSet.getInt("COUNT");
+            if(isUncommitted(new String[]{query.getParentTable()}) == false)
+            {
+              TotalCountCache.put(name, query.getParentTable(), total, totalCountTTL);
+            }
+          }
+          query.setITotal(total);
+          if(query.haveWhereConditions() == false)
+          {
+        	query.setIFilteredTotal(total);
+          }
+        }
+        finally
+        {
+          if (resultSet != null)
+	      {
+	        try { resultSet.close(); } catch (SQLException e) { ; }
+	      }
+          if (stment != null)
+	      {
+	        try { stment.close(); } catch (SQLException e) { ; }
+	      }
+          if (ticket != null)
+          {
+        	ticket.clearStatement();
+          }
+        }
+	}
+	
+	//Helper method to apply the fetch size to a statement about to be executed
+	private void applyFetchSize(Statement statement) throws SQLException
+	{
+		if(fetchSize != 0)
+		{
+			statement.setFetchSize(fetchSize);
+		}
+	}
+	
 	/**
 	 * This is a convenience method when a select query string is being supplied
 	 * directly instead of using the Query object. All data returned by this method will be obtained as a String
 	 * regardless of each field type. If a field type that holds large
 	 * amounts of binary data such as a BLOB, CLOB, NCLOB, LONGVARBINARY, etc.
-	 * the return value will always be &quot;***Binary Data Field***&quot; regardless of whether the field is null or not.
+	 * the return value will always be &quot;***Binary Data Field***&quot; regardless of whether the field is null or not.<br><br>
+	 * This method is a compatibility wrapper around executeSelect(String strQuery, RowVisitor visitor).
 	 * @param strQuery	 
 	 * @return A 2D String[][] array
 	 * @throws IllegalArgumentException
 	 */
 	public String[][] executeSelect(String strQuery)throws IllegalArgumentException
+	{
+		RowCollector collector = new RowCollector();
+		executeSelect(strQuery, collector);
+		return collector.getRows();
+	}
+	/**
+	 * This is a convenience method when a select query string is being supplied
+	 * directly instead of using the Query object. Each row is handed to the RowVisitor as soon as
+	 * it has been read from a forward only ResultSet, using the fetch size set by setFetchSize(int rows).
+	 * All data is obtained as a String in the same manner as executeSelect(String strQuery).
+	 * @param strQuery
+	 * @param visitor
+	 * @return The number of rows handed to the visitor
+	 * @throws IllegalArgumentException
+	 */
+	public int executeSelect(String strQuery, RowVisitor visitor)throws IllegalArgumentException
+	{
+		return executeSelect(strQuery, new VisitorReader(visitor));
+	}
+	/**
+	 * This is a convenience method when a select query string is being supplied
+	 * directly instead of using the Query object. The result is gathered column by column
+	 * in a ColumnarResult in the same manner as executeSelectColumnar().
+	 * @param strQuery
+	 * @return ColumnarResult
+	 * @throws IllegalArgumentException
+	 */
+	public ColumnarResult executeSelectColumnar(String strQuery)throws IllegalArgumentException
+	{
+		ColumnarResult result = new ColumnarResult();
+		executeSelect(strQuery, new ColumnarReader(result));
+		return result;
+	}
+	
+	private int executeSelect(String strQuery, RowReader reader)throws IllegalArgumentException
 	{
 		String copy = new String(strQuery);
 		copy = copy.toLowerCase();
@@ -727,83 +1269,24 @@ public class Database
 		Connection connection = null;
 	    Statement statement = null;
 	    ResultSet resultSet = null;
-	    String[][] data = null;
-	    SimpleDateFormat sdf = null;
-	    int columns = determineColumnCount(strQuery);
+	    int rowCount = 0;
+	    selectCompleted = false;
 	    
 	    try{
-	      connection = getConnection();
+	      connection = getReadConnection();
           if(connectionException == false)
           {
-        	statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        	statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        	statement.setQueryTimeout(getStatementTimeout());
+        	applyFetchSize(statement);
         	resultSet = statement.executeQuery(strQuery);
-            
-            //move the cursor to the last record to obtain the record number
-            resultSet.last();
-            int recordCount = resultSet.getRow();
-            //Dimension the String[][] array
-            data = new String[recordCount][columns];
-            //return the cursor to the first record
-            resultSet.first();
-            String temp = "";
             ResultSetMetaData rsmd = resultSet.getMetaData();
-            int type = -1;
-            java.sql.Date dte = null;
-            java.sql.Timestamp tstamp = null;
-            for(int i = 0; i < recordCount; i++)
+            reader.start(rsmd, rsmd.getColumnCount());
+            while(resultSet.next())
             {
-            	for(int j = 0; j < columns; j++)
-                {
-            	  type = rsmd.getColumnType(j + 1);
-            	  //System.out.println("select(String) - Column Type: " + type);
-            	  switch (type)
-          		  {
-          		    case Types.DATE:
-          		    	sdf = new SimpleDateFormat("yyyy-MM-dd");//Adheres to DATE_ISO_8601	
-                		dte = resultSet.getDate(j + 1);             		  
-                		if(resultSet.wasNull())
-                		   data[i][j] = "";
-                		else
-                		   data[i][j] = sdf.format(dte);
-                		break;
-          		    case Types.TIMESTAMP:
-          		    	sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");//Adheres to DATE_ISO_8601 + TIME	
-                		tstamp = resultSet.getTimestamp(j + 1);             		  
-                		if(resultSet.wasNull())
-                		   data[i][j] = "";
-                		else
-                		   data[i][j] = sdf.format(tstamp);
-                		break;
-          		    case Types.BINARY:
-          		    	data[i][j] = Constants.BINARYDATA;
-          		    	break;
-          		    case Types.VARBINARY:
-          		    	data[i][j] = Constants.BINARYDATA;
-          		    	break;
-          		    case Types.LONGVARBINARY:
-          		    	data[i][j] = Constants.BINARYDATA;
-          		    	break;
-          		    case Types.BLOB:
-          		    	data[i][j] = Constants.BINARYDATA;
-          		    	break;
-          		    case Types.CLOB:
-          		    	data[i][j] = Constants.BINARYDATA;
-          		    	break;
-          		    case Types.NCLOB:
-          		    	data[i][j] = Constants.BINARYDATA;
-          		    	break;
-          		    default:
-          		    	temp = resultSet.getString(j + 1);
-                		if(resultSet.wasNull())
-                		   data[i][j] = "";
-                		else
-                		   data[i][j] = temp;
-          		  }        	  
-                }
-            	if(i < recordCount - 1)
-           	       resultSet.next();
+            	reader.read(resultSet);
+            	rowCount++;
             }
-            
                                     
         	resultSet.close();
             resultSet = null;
@@ -811,6 +1294,7 @@ public class Database
             statement = null;  
         	connection.close(); 
         	connection = null;
+        	selectCompleted = true;
           }
 	    }
 	    catch(SQLException sqle)
@@ -862,23 +1346,249 @@ public class Database
 	        connection = null;
 	      }
 	    }	    
-	    if(data == null)
-	    {
-	    	data = new String[0][0];
-	    }
-		return data;
+		return rowCount;
 	}
 	
-	//Helper method 
-	private int determineColumnCount(String query)
+	/**
+	 * Set the Executor that runs the asynchronous methods of every Database, such as executeSelectAsync(Query q).
+	 * Use newVirtualThreadExecutor(int maxConcurrency) to run each task on its own virtual thread on Java 21 or higher.
+	 * If none is set, a bounded pool of DEFAULT_ASYNC_THREADS daemon threads is created when first needed, which
+	 * queues up to DEFAULT_ASYNC_QUEUE_SIZE tasks before the calling thread runs a task itself.
+	 * @param executor
+	 */
+	public static synchronized void setAsyncExecutor(Executor executor)
 	{
-		String copy = new String(query);
-		copy = copy.toLowerCase();
-		String slc = "select";
-		int index = copy.indexOf("from");
-		String sub = copy.substring(slc.length(),index);
-		StringTokenizer tok = new StringTokenizer(sub,",");
-		return tok.countTokens();
+		asyncExecutor = executor;
+	}
+	/**
+	 * Get the Executor that runs the asynchronous methods of every Database.
+	 * @return Executor
+	 */
+	public static synchronized Executor getAsyncExecutor()
+	{
+		if(asyncExecutor == null)
+		{
+			final AtomicInteger count = new AtomicInteger();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(DEFAULT_ASYNC_THREADS, DEFAULT_ASYNC_THREADS, 60, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(DEFAULT_ASYNC_QUEUE_SIZE), new ThreadFactory(){
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "Database-async-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			}, new ThreadPoolExecutor.CallerRunsPolicy());
+			pool.allowCoreThreadTimeOut(true);
+			asyncExecutor = pool;
+		}
+		return asyncExecutor;
+	}
+	/**
+	 * Create an Executor that runs each task on its own virtual thread, with no more than maxConcurrency tasks
+	 * running at once, so that the database and its connection pool are not overwhelmed. The tasks waiting for their turn
+	 * are parked virtual threads, which cost very little. This requires Java 21 or higher.
+	 * @param maxConcurrency
+	 * @return Executor
+	 * @throws UnsupportedOperationException if virtual threads are not available
+	 */
+	public static Executor newVirtualThreadExecutor(int maxConcurrency) throws UnsupportedOperationException
+	{
+		if(maxConcurrency < 1)
+		{
+			throw new IllegalArgumentException("The maximum concurrency must be at least 1.");
+		}
+		final ExecutorService virtualThreads;
+		try
+		{
+			//Looked up by reflection, so this class still runs on Java versions without virtual threads
+			virtualThreads = (ExecutorService)java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch(Exception e)
+		{
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or higher.", e);
+		}
+		final Semaphore permits = new Semaphore(maxConcurrency, true);
+		return new Executor(){
+			public void execute(final Runnable task)
+			{
+				virtualThreads.execute(new Runnable(){
+					public void run()
+					{
+						permits.acquireUninterruptibly();
+						try
+						{
+							task.run();
+						}
+						finally
+						{
+							permits.release();
+						}
+					}
+				});
+			}
+		};
+	}
+	
+	/**
+	 * Execute a SELECT Query on the executor returned by getAsyncExecutor(), so the calling thread is free
+	 * to do other work, such as start other independent queries. The Query is executed on a copy of this Database,
+	 * so several asynchronous queries may be in progress at once. The copy has no reference to an Editor, so
+	 * the Query is executed as it is, without the counts for server side processing.
+	 * @param q
+	 * @return A CompletableFuture completed with the 2D String[][] array that executeSelect() would return
+	 */
+	public CompletableFuture<String[][]> executeSelectAsync(final Query q)
+	{
+		final Database db = copy();
+		return CompletableFuture.supplyAsync(new Supplier<String[][]>(){
+			public String[][] get()
+			{
+				db.setQuery(q);
+				return db.executeSelect();
+			}
+		}, getAsyncExecutor());
+	}
+	/**
+	 * Execute a select query string on the executor returned by getAsyncExecutor().
+	 * @param strQuery
+	 * @return A CompletableFuture completed with the 2D String[][] array that executeSelect(String strQuery) would return
+	 */
+	public CompletableFuture<String[][]> executeSelectAsync(final String strQuery)
+	{
+		final Database db = copy();
+		return CompletableFuture.supplyAsync(new Supplier<String[][]>(){
+			public String[][] get()
+			{
+				return db.executeSelect(strQuery);
+			}
+		}, getAsyncExecutor());
+	}
+	/**
+	 * Execute an INSERT or UPDATE Query on the executor returned by getAsyncExecutor().
+	 * The Query is executed on a copy of this Database.
+	 * @param q
+	 * @return A CompletableFuture completed with the value executeInsertUpdate() would return, or completed
+	 * exceptionally with the SQLException it would throw.
+	 */
+	public CompletableFuture<Boolean> executeInsertUpdateAsync(final Query q)
+	{
+		final Database db = copy();
+		return CompletableFuture.supplyAsync(new Supplier<Boolean>(){
+			public Boolean get()
+			{
+				try
+				{
+					db.setQuery(q);
+					return Boolean.valueOf(db.executeInsertUpdate());
+				}
+				catch(SQLException sqle)
+				{
+					throw new CompletionException(sqle);
+				}
+			}
+		}, getAsyncExecutor());
+	}
+	/**
+	 * Execute an array of DELETE Query objects in a single transaction on the executor returned by getAsyncExecutor().
+	 * @param queries
+	 * @return A CompletableFuture completed once the deletes have been executed
+	 */
+	public CompletableFuture<Void> executeDeletesAsync(final Query[] queries)
+	{
+		final Database db = copy();
+		return CompletableFuture.supplyAsync(new Supplier<Void>(){
+			public Void get()
+			{
+				db.executeDeletes(queries);
+				return null;
+			}
+		}, getAsyncExecutor());
+	}
+	
+	//Helper method creating a Database with the same settings for an asynchronous task, so that the task
+	//neither shares the Query of this Database nor interferes with the state of a query this Database executes.
+	//The Editor also uses this to run independent queries concurrently. The copy doesn't share the UnitOfWork of this Database.
+	Database copy()
+	{
+		Database db = new Database(name, dbtype);
+		db.fetchSize = fetchSize;
+		db.countStrategy = countStrategy;
+		db.dialect = dialect;
+		db.totalCountTTL = totalCountTTL;
+		db.resultCacheTTL = resultCacheTTL;
+		db.batchSize = batchSize;
+		db.queryTimeout = queryTimeout;
+		db.requestQueryTimeout = requestQueryTimeout;
+		db.writer = getWriter();
+		return db;
+	}
+	
+	//The forms of executeSelect read each row of the ResultSet through a RowReader
+	private static interface RowReader
+	{
+		public void start(ResultSetMetaData rsmd, int columns) throws SQLException;
+		
+		public void read(ResultSet resultSet) throws SQLException;
+	}
+	
+	//Helper class reading each row as a String[] for a RowVisitor.
+	//The column plan of the RowMapper is built once, before the first row is read.
+	private static class VisitorReader implements RowReader
+	{
+		private RowVisitor visitor;
+		private RowMapper mapper;
+		
+		private VisitorReader(RowVisitor v)
+		{
+			visitor = v;
+		}
+		
+		public void start(ResultSetMetaData rsmd, int columns) throws SQLException
+		{
+			mapper = new RowMapper(rsmd, columns);
+		}
+		
+		public void read(ResultSet resultSet) throws SQLException
+		{
+			visitor.visitRow(mapper.readRow(resultSet));
+		}
+	}
+	
+	//Helper class appending each row to a ColumnarResult
+	private static class ColumnarReader implements RowReader
+	{
+		private ColumnarResult result;
+		
+		private ColumnarReader(ColumnarResult r)
+		{
+			result = r;
+		}
+		
+		public void start(ResultSetMetaData rsmd, int columns) throws SQLException
+		{
+			result.start(rsmd, columns);
+		}
+		
+		public void read(ResultSet resultSet) throws SQLException
+		{
+			result.read(resultSet);
+		}
+	}
+	
+	//Helper class used by the String[][] forms of executeSelect to gather the rows as they are visited
+	private static class RowCollector implements RowVisitor
+	{
+		private ArrayList<String[]> rows = new ArrayList<String[]>();
+		
+		public void visitRow(String[] row)
+		{
+			rows.add(row);
+		}
+		
+		public String[][] getRows()
+		{
+			return rows.toArray(new String[rows.size()][]);
+		}
 	}
 	
 		
@@ -905,8 +1615,17 @@ public class Database
           {
         	connection.setAutoCommit(false);
         	statement = query.getPreparedStatement(connection);        	
-            statement.executeUpdate();
-            if(query.getQueryType() == Query.Type.INSERT)
+        	query.setReturnedRow(null);
+        	if(query.isReturning())
+        	{
+        	  //The statement returns the record written, along with the id of a new record
+        	  executeReturning(statement, query);
+        	}
+        	else
+        	{
+              statement.executeUpdate();
+        	}
+            if(query.getQueryType() == Query.Type.INSERT && query.isReturning() == false)
             {
             	//Get the id assigned to the new record
             	//If we are dealing with a Link Table then we don't need to retrieve any generated ids.
@@ -934,20 +1653,41 @@ public class Database
             }
         	connection.commit();
             statement.close();
-            statement = null;               
+            statement = null;
+            if(query.getQueryType() == Query.Type.INSERT)
+            {
+              TotalCountCache.adjust(name, query.getTable(), 1);
+            }
+            KeysetBookmarks.invalidate(name, query.getTable());
+            ResultCache.invalidate(name, query.getTable());
+            LookupCache.invalidate(name, query.getTable());
+            if(unitOfWork != null)
+            {
+              unitOfWork.recordWrite(query.getTable());
+            }
+            else
+            {
+              //Within a unit of work, the window opens once the unit is committed
+              ReadReplicaRouter.recordWrite(name, getWriter());
+            }
           }
 	    }
 	    catch(SQLException sqle)
 	    {
 	      success = false;
-	      if(Editor.isLoggingEnabled())
-		  {
-	    	try
-		    {
+	      //Always roll back, which also marks a unit of work in progress as rollback-only
+	      try
+	      {
+	        if(connection != null)
 	          connection.rollback();
-	        } catch(SQLException excep) {
+	      } catch(SQLException excep) {
+	        if(Editor.isLoggingEnabled())
 	          logger.error(Editor.getFullStackTrace(excep));
-	        }  
+	        else
+	          System.out.println(Editor.getFullStackTrace(excep));
+	      }
+	      if(Editor.isLoggingEnabled())
+		  {
 	    	String extra = "Database.executeInsertUpdate - query: " + query.toString() + "\n";  
 		    extra += "SQL Problem: " + sqle.getMessage() + "\n";
 			extra += "SQL State: " + sqle.getSQLState() + "\n";
@@ -1010,11 +1750,43 @@ public class Database
 	    }
 	    return success;
 	}	
+	
+	//Execute an INSERT or UPDATE returning the record written, and hand the values of the record to the Query.
+	//The first value returned by an INSERT is the id of the new record. Returns the number of records written.
+	private int executeReturning(PreparedStatement statement, Query q) throws SQLException
+	{
+		q.setReturnedRow(null);
+		ResultSet resultSet = statement.executeQuery();
+		try
+		{
+			if(resultSet.next() == false)
+			{
+				return 0;
+			}
+			ResultSetMetaData rsmd = resultSet.getMetaData();
+			String[] row = new RowMapper(rsmd, rsmd.getColumnCount()).readRow(resultSet);
+			if(q.getQueryType() == Query.Type.INSERT)
+			{
+				q.setNewRecordID(Integer.parseInt(row[0]));
+				String[] values = new String[row.length - 1];
+				System.arraycopy(row, 1, values, 0, values.length);
+				row = values;
+			}
+			q.setReturnedRow(row);
+			return 1;
+		}
+		finally
+		{
+			try { resultSet.close(); } catch (SQLException e) { ; }
+		}
+	}
 	/**
 	 * Execute a delete based on an array of Query objects.
+	 * The deletes are executed in a single transaction by executeBatch(Query[] queries).
 	 * @param queries
+	 * @return The update count of each query, or null if the transaction failed.
 	 */
-	public void executeDeletes(Query[] queries)throws IllegalArgumentException
+	public int[] executeDeletes(Query[] queries)throws IllegalArgumentException
 	{
 		
 		for(int i =0; i < queries.length; i++)
@@ -1024,33 +1796,176 @@ public class Database
 				throw new IllegalArgumentException("You are trying to execute a query of type " + queries[i].getQueryType().toString() + " using method executeDeletes.");
 			}
 		}
+		return executeBatch(queries);
+	}
+	
+	/**
+	 * Execute an insert based on an array of Query objects, such as the records of a link table for a parent record.
+	 * The inserts are executed in a single transaction by executeBatch(Query[] queries).
+	 * @param queries
+	 * @return The update count of each query, or null if the transaction failed.
+	 */
+	public int[] executeInserts(Query[] queries)throws IllegalArgumentException
+	{
+		for(int i =0; i < queries.length; i++)
+		{
+			if(queries[i].getQueryType() != Query.Type.INSERT )
+			{
+				throw new IllegalArgumentException("You are trying to execute a query of type " + queries[i].getQueryType().toString() + " using method executeInserts.");
+			}
+		}
+		return executeBatch(queries);
+	}
+	
+	/**
+	 * Execute an array of INSERT, UPDATE and DELETE Query objects in a single transaction.
+	 * Consecutive queries that produce the same SQL, such as one DELETE per id, share a single PreparedStatement
+	 * and are sent to the database as a JDBC batch of up to getBatchSize() statements, rather than one round trip each.
+	 * The id assigned to the new record of an INSERT into a table that is not a link table can be obtained with Query.getNewRecordID().
+	 * Such INSERTs are batched too when the Dialect supports retrieving the ids generated by a batch, otherwise each is executed on its own.<br><br>
+	 * If any statement fails, the whole transaction is rolled back.
+	 * @param queries
+	 * @return The update count of each query, in the same order as the queries. A count may be Statement.SUCCESS_NO_INFO
+	 * if the driver doesn't report the number of rows affected by a batched statement. Returns null if the transaction failed.
+	 * @throws IllegalArgumentException
+	 */
+	public int[] executeBatch(Query[] queries)throws IllegalArgumentException
+	{
+		for(int i =0; i < queries.length; i++)
+		{
+			if(queries[i].getQueryType() == Query.Type.SELECT )
+			{
+				throw new IllegalArgumentException("You are trying to execute a query of type " + queries[i].getQueryType().toString() + " using method executeBatch.");
+			}
+			if(queries[i].getDatabase() == null)
+			{
+				queries[i].setDatabase(this);
+			}
+		}
+		if(queries.length == 0)
+		{
+			return new int[0];
+		}
 		
 		Connection connection = null;
 	    PreparedStatement statement = null;
+	    ResultSet resultSet = null;
 	    int i = 0;
+	    int[] counts = new int[queries.length];
+	    boolean success = false;
 	    	    	    
 	    try{
 	      connection = getConnection();	      
           if(connectionException == false)
           {
         	connection.setAutoCommit(false);
-        	for(; i < queries.length; i++)
-        	{          	  
-        	  //statement = connection.prepareStatement(queries[i].toString());
-        	  statement = queries[i].getPreparedStatement(connection);	
-              statement.executeUpdate();
+        	while(i < queries.length)
+        	{
+        	  statement = queries[i].getPreparedStatement(connection);
+        	  boolean newRecord = queries[i].getQueryType() == Query.Type.INSERT && queries[i].isLinkTable() == false;
+        	  if(queries[i].isReturning())
+        	  {
+        		//A statement returning the record written cannot be part of a batch
+        		counts[i] = executeReturning(statement, queries[i]);
+        		i++;
+        	  }
+        	  else if(newRecord && dialect.supportsBatchGeneratedKeys() == false)
+        	  {
+        		//Get the id assigned to the new record
+        		counts[i] = statement.executeUpdate();
+        		resultSet = statement.getGeneratedKeys();
+        		if(resultSet != null && resultSet.next())
+        		{
+        		  queries[i].setNewRecordID(resultSet.getInt(1));
+        		}
+        		if(resultSet != null)
+        		{
+        		  resultSet.close();
+        		  resultSet = null;
+        		}
+        		i++;
+        	  }
+        	  else
+        	  {
+        		//Add every following query with the same SQL to the batch, bound by the ParameterBinder of the first
+        		String sql = queries[i].toString();
+        		ParameterBinder binder = queries[i].getParameterBinder();
+        		int end = i + 1;
+        		statement.addBatch();
+        		while(end < queries.length && end - i < batchSize && queries[end].toString().equals(sql))
+        		{
+        		  binder.bind(statement, queries[end].getFields(), queries[end].getWhereConditions());
+        		  statement.addBatch();
+        		  end++;
+        		}
+        		int[] results = statement.executeBatch();
+        		for(int k = i; k < end; k++)
+        		{
+        		  counts[k] = (k - i < results.length ? results[k - i] : Statement.SUCCESS_NO_INFO);
+        		}
+        		if(newRecord)
+        		{
+        		  //Get the ids assigned to the new records, in the order they were added to the batch
+        		  resultSet = statement.getGeneratedKeys();
+        		  for(int k = i; resultSet != null && k < end && resultSet.next(); k++)
+        		  {
+        			queries[k].setNewRecordID(resultSet.getInt(1));
+        		  }
+        		  if(resultSet != null)
+        		  {
+        		    resultSet.close();
+        		    resultSet = null;
+        		  }
+        		}
+        		i = end;
+        	  }
+        	  statement.close();
+              statement = null;
         	}
         	connection.commit();
-            statement.close();
-            statement = null;              
+        	success = true;
+            for(int j = 0; j < queries.length; j++)
+            {
+              String table = queries[j].getTable();
+              if(queries[j].getQueryType() != Query.Type.UPDATE)
+              {
+            	if(counts[j] < 0)
+            	{
+            	  //The number of records added or removed isn't known
+            	  TotalCountCache.invalidate(name, table);
+            	}
+            	else
+            	{
+                  TotalCountCache.adjust(name, table, queries[j].getQueryType() == Query.Type.INSERT ? counts[j] : -counts[j]);
+            	}
+              }
+              KeysetBookmarks.invalidate(name, table);
+              ResultCache.invalidate(name, table);
+              LookupCache.invalidate(name, table);
+              if(unitOfWork != null)
+              {
+                unitOfWork.recordWrite(table);
+              }
+            }
+            if(unitOfWork == null)
+            {
+              //Within a unit of work, the window opens once the unit is committed
+              ReadReplicaRouter.recordWrite(name, getWriter());
+            }
           }
 	    }
 	    catch(SQLException sqle)
 	    {
-	      String extra = "Database.executeDeletes - query: " + queries[i].toString() + "\n";  
+	      Query failed = queries[Math.min(i, queries.length - 1)];
+	      String extra = "Database.executeBatch - query: " + failed.toString() + "\n";  
 		  extra += "SQL Problem: " + sqle.getMessage() + "\n";
 		  extra += "SQL State: " + sqle.getSQLState() + "\n";
-		  extra += "Vendor Error: " + sqle.getErrorCode() + "\n";	
+		  extra += "Vendor Error: " + sqle.getErrorCode() + "\n";
+		  //The statement that failed within a batch is reported by the driver
+		  if(sqle.getNextException() != null)
+		  {
+			extra += "Next Exception: " + sqle.getNextException().getMessage() + "\n";
+		  }
 	      if(Editor.isLoggingEnabled())
 		  {	 
 	    	try
@@ -1059,7 +1974,6 @@ public class Database
 			} catch(SQLException excep) {
 			  logger.error(Editor.getFullStackTrace(excep));
 			}
-			logger.error("Database.executeDeletes: query: " + queries[i].toString()); 
 			logger.error(extra + Editor.getFullStackTrace(sqle));
 		  }
 	      else
@@ -1070,15 +1984,15 @@ public class Database
 			  } catch(SQLException excep) {
 				  System.out.println(Editor.getFullStackTrace(excep));
 			  }
-			  System.out.println("Database.executeDeletes: query: " + queries[i].toString());
 	    	  System.out.println(extra + Editor.getFullStackTrace(sqle));
 	      }
 	    }
 	    catch(Exception e)
-	    {	    	
+	    {
+	    	Query failed = queries[Math.min(i, queries.length - 1)];
 	    	if(Editor.isLoggingEnabled())
 			{
-		      logger.error("Database.executeDeletes: query: " + queries[i].toString());  
+		      logger.error("Database.executeBatch: query: " + failed.toString());  
 		      logger.error(Editor.getFullStackTrace(e));
 		      try
 			  {
@@ -1095,14 +2009,19 @@ public class Database
 			  } catch(SQLException excep) {
 				  System.out.println(Editor.getFullStackTrace(excep));
 			  }	
-	    	  System.out.println("Database.executeDeletes: query: " + queries[i].toString());
+	    	  System.out.println("Database.executeBatch: query: " + failed.toString());
 		      System.out.println(Editor.getFullStackTrace(e));
 		    }
 	    }
 	    finally
 	    {
-	      // Always make sure statements are closed,
+	      // Always make sure result sets and statements are closed,
 	      // and the connection is returned to the pool
+	      if (resultSet != null)
+		  {
+		     try { resultSet.close(); } catch (SQLException e) { ; }
+		     resultSet = null;
+		  }
 	      if (statement != null)
 	      {
 	        try { statement.close(); } catch (SQLException e) { ; }
@@ -1113,7 +2032,8 @@ public class Database
 	        try { connection.close(); } catch (SQLException e) { ; }
 	        connection = null;
 	      }
-	    }	    
+	    }
+	    return (success ? counts : null);
 	}	
 	
 }
@@ -0,0 +1,113 @@
+package com.tacticalenterprisesltd;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A Dialect produces the parts of SQL, and makes the choices, that differ from one database management system to another,
+ * so that the Query and Database classes can use the fastest native constructs of each. A Dialect is chosen for each instance of
+ * Database from its RDBMS type, and a custom Dialect may be supplied by calling Database.setDialect(Dialect dialect). Extending
+ * AbstractDialect only requires overriding the parts that differ from standard SQL.<br><br>
+ * The Dialects supplied are:
+ * <ul>
+ * <li>MySQLDialect - MySQL v5.0 or higher</li>
+ * <li>OracleDialect - Oracle v12c or higher</li>
+ * <li>SQLServerDialect - SQL Server v2012 or higher</li>
+ * <li>PostgreSQLDialect - PostgreSQL v9.5 or higher</li>
+ * <li>H2Dialect - H2 v1.4.200 or higher, which is useful as an embedded database for testing and benchmarks</li>
+ * </ul>
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public interface Dialect
+{
+	/**
+	 * Get the JDBC URL used by Database.getConnection(RDBMS type,String classForName,String URL,String PORT,String UserName, String Password)
+	 * @param host
+	 * @param port
+	 * @param dbName
+	 * @return String
+	 */
+	public String getJdbcUrl(String host, String port, String dbName);
+	
+	/**
+	 * Get the clause appended to a SELECT to return a single page of records, with a parameter marker for the
+	 * number of records to skip and for the number of records to return, so the same SQL is used for every page.
+	 * @param offset true if records are skipped
+	 * @param limit true if the number of records returned is limited
+	 * @return String, which is empty when no paging is required
+	 */
+	public String getLimitClause(boolean offset, boolean limit);
+	
+	/**
+	 * Inquire if the parameter marker for the number of records to return precedes the one for the number
+	 * of records to skip in the clause returned by getLimitClause(boolean offset, boolean limit).
+	 * @return true or false
+	 */
+	public boolean isLimitBoundFirst();
+	
+	/**
+	 * Inquire if NULL values sort after every other value, so they come last in ascending order and first in descending
+	 * order, rather than before every other value. Keyset pagination uses this to include records with NULL sort values.
+	 * @return true or false
+	 */
+	public boolean isNullSortedHigh();
+	
+	/**
+	 * Get the value inserted into the primary key column of a new record, such as a sequence.
+	 * @param table
+	 * @return String, or null if the database generates the value itself and the column is left out of the INSERT
+	 */
+	public String getInsertIdValue(String table);
+	
+	/**
+	 * Prepare an INSERT of a new record, so that the value generated for its primary key can be retrieved
+	 * with PreparedStatement.getGeneratedKeys().
+	 * @param connection
+	 * @param sql
+	 * @param primaryKey
+	 * @return PreparedStatement
+	 * @throws SQLException
+	 */
+	public PreparedStatement prepareInsert(Connection connection, String sql, String primaryKey) throws SQLException;
+	
+	/**
+	 * Inquire if the values generated for the primary keys of a batch of INSERTs can be retrieved with
+	 * PreparedStatement.getGeneratedKeys() once the batch has been executed.
+	 * @return true or false
+	 */
+	public boolean supportsBatchGeneratedKeys();
+	
+	/**
+	 * Get an INSERT that returns the columns of the new record as a ResultSet, so the record need not be selected again.
+	 * @param table
+	 * @param columns The columns inserted, delimited by commas
+	 * @param values The values inserted, delimited by commas
+	 * @param returnColumns The columns to return
+	 * @return String, or null if the database cannot return the columns of an INSERT
+	 */
+	public String getReturningInsert(String table, String columns, String values, String[] returnColumns);
+	
+	/**
+	 * Get an UPDATE that returns the columns of the updated records as a ResultSet, so the records need not be selected again.
+	 * @param table
+	 * @param set The assignments, delimited by commas
+	 * @param where The WHERE clause, including the keyword WHERE, or an empty String
+	 * @param returnColumns The columns to return
+	 * @return String, or null if the database cannot return the columns of an UPDATE
+	 */
+	public String getReturningUpdate(String table, String set, String where, String[] returnColumns);
+	
+	/**
+	 * Get the maximum number of values in the list of an IN condition.
+	 * @return int
+	 */
+	public int getMaxInListSize();
+	
+	/**
+	 * Get the strategy used by default to obtain the counts for server side processing.
+	 * @return Database.CountStrategy
+	 */
+	public Database.CountStrategy getDefaultCountStrategy();
+}
@@ -0,0 +1,142 @@
+package com.tacticalenterprisesltd;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import org.apache.log4j.Logger;
+
+/**
+ * The DrawRegistry keeps track of the server side processing draw in progress for each user session and table,
+ * so that a draw superseded by a newer one is cancelled rather than left to run to completion. When the user
+ * types in the DataTables search box, a draw is requested for every key stroke, and the client side only
+ * displays the response to the newest draw. When a newer draw arrives, the statement of the draw in progress
+ * is cancelled with Statement.cancel(), and a draw arriving after a newer one has already started is not executed at all.<br><br>
+ * Draws are only registered when a session key has been set on the Editor with setSessionKey(String key).
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+class DrawRegistry
+{
+	private static HashMap<String,Ticket> inFlight = new HashMap<String,Ticket>();
+	private static Logger logger = Logger.getLogger(DrawRegistry.class);
+
+	/**
+	 * Register the start of a draw, cancelling any older draw in progress for the same key.
+	 * @param key Identifies the session and table
+	 * @param draw The draw counter sent by the client side
+	 * @return A Ticket, which is already cancelled if a newer draw is in progress
+	 */
+	static Ticket begin(String key, int draw)
+	{
+		Ticket ticket = new Ticket(key, draw);
+		Ticket superseded = null;
+		synchronized(DrawRegistry.class)
+		{
+			Ticket current = inFlight.get(key);
+			if(current != null && current.draw >= draw)
+			{
+				ticket.cancelled = true;
+				return ticket;
+			}
+			superseded = current;
+			inFlight.put(key, ticket);
+		}
+		if(superseded != null)
+		{
+			superseded.cancel();
+		}
+		return ticket;
+	}
+
+	/**
+	 * Register the end of a draw
+	 * @param ticket
+	 */
+	static synchronized void end(Ticket ticket)
+	{
+		if(inFlight.get(ticket.key) == ticket)
+		{
+			inFlight.remove(ticket.key);
+		}
+	}
+
+	/**
+	 * Get the number of draws in progress
+	 * @return int
+	 */
+	static synchronized int size()
+	{
+		return inFlight.size();
+	}
+
+	/**
+	 * A draw in progress, and the statement it is currently executing
+	 */
+	static class Ticket
+	{
+		private String key;
+		private int draw;
+		private boolean cancelled = false;
+		private Statement statement = null;
+
+		private Ticket(String k, int d)
+		{
+			key = k;
+			draw = d;
+		}
+
+		/**
+		 * Set the statement the draw is about to execute, so it can be cancelled.
+		 * @param stment
+		 * @throws SQLException if the draw has already been cancelled
+		 */
+		synchronized void setStatement(Statement stment) throws SQLException
+		{
+			if(cancelled)
+			{
+				throw new SQLException("Draw " + draw + " has been superseded by a newer draw.");
+			}
+			statement = stment;
+		}
+
+		/**
+		 * Clear the statement once it has been executed and closed.
+		 */
+		synchronized void clearStatement()
+		{
+			statement = null;
+		}
+
+		/**
+		 * Inquire if the draw has been cancelled because a newer draw arrived.
+		 * @return true or false
+		 */
+		synchronized boolean isCancelled()
+		{
+			return cancelled;
+		}
+
+		private void cancel()
+		{
+			Statement stment = null;
+			synchronized(this)
+			{
+				cancelled = true;
+				stment = statement;
+			}
+			if(stment != null)
+			{
+				try
+				{
+					stment.cancel();
+				}
+				catch(SQLException sqle)
+				{
+					//The statement may have completed in the meantime, or the driver may not support cancelling
+					if(Editor.isLoggingEnabled())
+						logger.debug("DrawRegistry - unable to cancel draw " + draw + ": " + sqle.getMessage());
+				}
+			}
+		}
+	}
+}
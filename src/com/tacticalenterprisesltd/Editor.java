@@ -3,6 +3,8 @@ package com.tacticalenterprisesltd;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import com.google.gson.*;
 import org.apache.log4j.Logger;
 
@@ -85,6 +87,17 @@ public class Editor
    * data - A 2D String[][] array containing all the data for every row in the query. 
    */
   private String[][] data = null;
+  /**
+   * columnar - The same data held column by column, when typed output is enabled.
+   */
+  private ColumnarResult columnar = null;
+  private boolean typedOutput = false;
+  private int queryTimeout = -1;
+  private String sessionKey = null;
+  /** The default number of independent queries, such as those of link table Joins, run at the same time for a request. */
+  public static final int DEFAULT_JOIN_PARALLELISM = 4;
+  private int joinParallelism = DEFAULT_JOIN_PARALLELISM;
+  private LinkedHashMap<String, LinkedHashMap<String, Object>> uploadFiles = null;
   protected boolean usingSSP = false;
   /**
    * For SSP (server side processing), including the DT_RowId is optional.
@@ -117,6 +130,7 @@ public class Editor
   private boolean disableUpdates = false;
   private boolean disableSelects = false;
   private boolean disableUploads = false;
+  private boolean keysetPagination = false;
   
   /**
    * Constructor for Editor
@@ -288,6 +302,114 @@ public class Editor
 		  return true;
 	  return false;
   }
+  /**
+   * For SSP (server side processing), set this to <i>true</i> to page through the records by seeking past
+   * the last record of the previous page (keyset pagination), rather than by having the database read and discard
+   * every record before the offset. This keeps deep pages on large tables fast when the user moves from one page
+   * to the next. The primary key is added as a final tiebreaker to the order of the records. Jumping to a page that
+   * hasn't been visited falls back to using the offset. The default is <i>false</i>.
+   * @param value
+   * @see KeysetBookmarks
+   */
+  public void setKeysetPagination(boolean value)
+  {
+	  keysetPagination = value;
+  }
+  /**
+   * Inquire if keyset pagination is used for SSP (server side processing).
+   * @return true or false
+   */
+  public boolean isKeysetPagination()
+  {
+	  return keysetPagination;
+  }
+  /**
+   * For SSP (server side processing), set this to <i>true</i> to have the page of records gathered in a ColumnarResult
+   * and the values of numeric columns sent to the client side as JSON numbers rather than strings. The values are read
+   * from the database in their own type and written to the JSON output without being converted to a String and back.
+   * Note that your client side code may need to allow for numbers where it previously received strings.
+   * The default is <i>false</i>.
+   * @param value
+   * @see ColumnarResult
+   */
+  public void setTypedOutput(boolean value)
+  {
+	  typedOutput = value;
+  }
+  /**
+   * Inquire if the values of numeric columns are sent to the client side as JSON numbers.
+   * @return true or false
+   */
+  public boolean isTypedOutput()
+  {
+	  return typedOutput;
+  }
+  /**
+   * Set the number of seconds the JDBC driver waits for each statement executed by this Editor
+   * before it is cancelled. A value of 0 means there is no limit. Unless it is set, the timeout
+   * set with Database.setQueryTimeout(int seconds) applies.
+   * @param seconds
+   */
+  public void setQueryTimeout(int seconds)
+  {
+	  if(seconds < 0)
+	  {
+		  throw new IllegalArgumentException("The query timeout must not be negative.");
+	  }
+	  queryTimeout = seconds;
+  }
+  /**
+   * Get the number of seconds set with setQueryTimeout(int seconds), or -1 if it hasn't been set.
+   * @return int
+   */
+  public int getQueryTimeout()
+  {
+	  return queryTimeout;
+  }
+  /**
+   * For SSP (server side processing), set a key identifying the user session, such as the id of the HttpSession.
+   * When a draw arrives while an older draw for the same session and table is still executing, as happens when
+   * the user types in the search box, the statement of the older draw is cancelled, since the client side would
+   * discard its response anyway. The response to a cancelled draw contains no records.
+   * By default no key is set and draws are never cancelled.
+   * @param key
+   */
+  public void setSessionKey(String key)
+  {
+	  sessionKey = key;
+  }
+  /**
+   * Get the key identifying the user session.
+   * @return String
+   */
+  public String getSessionKey()
+  {
+	  return sessionKey;
+  }
+  /**
+   * Set the maximum number of independent queries run at the same time when reading records: the query of each
+   * Join using a link table, and the query for the files of an Upload. Each runs on its own pooled connection, using
+   * the executor returned by Database.getAsyncExecutor(), so a request takes about as long as its slowest query
+   * rather than the sum of them. Use 1 to run them one after the other on the calling thread.
+   * The default is DEFAULT_JOIN_PARALLELISM.
+   * @param value
+   */
+  public void setJoinParallelism(int value)
+  {
+	  if(value < 1)
+	  {
+		  throw new IllegalArgumentException("The join parallelism must be at least 1.");
+	  }
+	  joinParallelism = value;
+  }
+  /**
+   * Get the maximum number of independent queries run at the same time when reading records.
+   * @return int
+   */
+  public int getJoinParallelism()
+  {
+	  return joinParallelism;
+  }
   /**
    * Set an alias for the Parent Table.
    * @param value
@@ -462,7 +584,7 @@ public class Editor
   }
   /**
    * Call this method to obtain a JSON string representation of any of the 
-   * output classes: CreateEditOutput, FieldErrorsOutput, NonSSPOutput, SSPOutput.
+   * output classes: CreateEditOutput, FieldErrorsOutput, ErrorOutput, NonSSPOutput, SSPOutput.
    * @return A JSON String
    */
   public String toJSONString()
@@ -674,6 +796,8 @@ public class Editor
    * //Include this data using Editors method IncludeOptionsForOutput(LinkedHashMap<String,Object> opts)	 
    * editor.IncludeOptionsForOutput(deptOut);
    * </code>
+   * The same options can be included with IncludeOptionsForOutput("employees.dept", tableNames[1], "id", "name"),
+   * which takes the option list from the LookupCache rather than building it on every request.
    * @param opts
    */
   public void IncludeOptionsForOutput(String key, ArrayList<LinkedHashMap<String,Object>> opts)
@@ -688,6 +812,17 @@ public class Editor
 	  }
 	 	 
   }
+  /**
+   * Include the list of options built from two fields in a table, as returned by getOptions(String tableName, String valueField, String labelField).
+   * @param key
+   * @param tableName
+   * @param valueField
+   * @param labelField
+   */
+  public void IncludeOptionsForOutput(String key, String tableName, String valueField, String labelField)
+  {
+	  IncludeOptionsForOutput(key, getOptions(tableName, valueField, labelField));
+  }
   
       
   /**
@@ -698,8 +833,23 @@ public class Editor
 	  if(loggingEnabled)
 		  logger.debug("Editor.Process - " + params.toString());
 	  
+	  UnitOfWork unit = null;
 	  try{
         String action = params.getAction();
+        //The timeout only applies to the statements of this request, not to other uses of the Database
+        if(queryTimeout > -1)
+        {
+          db.setRequestQueryTimeout(queryTimeout);
+        }
+        
+        //The queries of a create, edit, remove or upload, including those of the Joins and the Upload,
+        //share one Connection from the pool and are committed together once the action is complete.
+        //If a unit of work is already active on the Database, whoever began it commits it.
+        if((action.equals(Constants.CREATE) || action.equals(Constants.EDIT) || action.equals(Constants.REMOVE) || action.equals(Constants.UPLOAD))
+        		&& db.getUnitOfWork() == null)
+        {
+          unit = db.beginUnitOfWork();
+        }
       
         //Run a test on the fields for an upload instance
         //and set the flag appropriately.
@@ -798,12 +948,25 @@ public class Editor
     	  query.setPrimaryKey(getPrimaryKey());
           db.setQuery(query);
                     
-    	  insert();
+    	  if(insert() == false || isRollbackOnly())
+    	  {
+    		//Nothing was written, so the client side is sent an error rather than a record that doesn't exist
+    		setErrorOutput("The record could not be created.");
+    		return;
+    	  }
     	  
     	  if(loggingEnabled)
     		  logger.debug("Editor.Process - insert query: " + query.toString());
     	  
     	  //PREPARE THE OUTPUT
+    	  //When the INSERT returned the record written, the output holds the values as they were stored,
+    	  //including any the database supplied, rather than the values sent by the client side
+    	  String[] returned = query.getReturnedRow();
+    	  for(int n = 0; returned != null && n < fields.size(); n++)
+    	  {
+    		if(fields.get(n).getFieldType() == Field.Type.DATE)
+    		  fields.get(n).setValue(returned[n], Field.DIRECTION.FROM_DB);
+    	  }
     	  CreateEditDeleteOutput out = new CreateEditDeleteOutput();
     	  LinkedHashMap<String,Object> lhm = new LinkedHashMap<String,Object>();
     	  field = new Field("", Constants.DT_ROWID, Field.Type.STRING);
@@ -826,7 +989,7 @@ public class Editor
   		    	  lhmap.put(field.getName(), field.getClientDateValue()); 
 	       		}
   		    	else
-  		    	  lhmap.put(field.getName(), field.getValue());   	        	       	        	    
+  		    	  lhmap.put(field.getName(), returned != null ? returned[n] : field.getValue());   	        	       	        	    
 	       	  }
 	        }
 	        lhm.put(table,lhmap); 
@@ -840,13 +1003,14 @@ public class Editor
                      {
                        if (join.isUsingLinkTable())
                        {
+                    	   //Only the link table records of the new record are needed
                     	   if(this.haveUploadInstance)
                      	   {
-                    		  join.runJoinSelectQueryForUploads(db);
+                    		  join.runJoinSelectQueryForUploads(db, new int[]{Integer.parseInt(recordID)});
                      	   }
                      	   else
                      	   {
-                     		 join.runJoinSelectQueryForStringArrays(db);
+                     		 join.runJoinSelectQueryForStringArrays(db, new int[]{Integer.parseInt(recordID)});
                      	   }
                     	   
                            //using arrays - ONE TO MANY relationships
@@ -912,7 +1076,7 @@ public class Editor
 	       		  lhm.put(field.getName(), field.getClientDateValue()); 
 	       		}
 		    	else
-		    	  lhm.put(field.getName(), field.getValue().toString());
+		    	  lhm.put(field.getName(), returned != null ? returned[n] : field.getValue().toString());
 	       	  }
 	         }
 	         out.addDataRow(lhm);
@@ -929,7 +1093,11 @@ public class Editor
           if(disableDeletes) return;	
           query = new Query(Query.Type.DELETE,table);
           db.setQuery(query);          
-          remove();                  
+          if(remove() == false || isRollbackOnly())
+          {
+        	setErrorOutput("The records could not be deleted.");
+        	return;
+          }
           CreateEditDeleteOutput out = new CreateEditDeleteOutput();
           if(haveUploadInstance)
       	  {
@@ -956,7 +1124,7 @@ public class Editor
            data[row_34][employees][salary] = 110000
            */           
         
-        	//The edit process deals with multi-row edits
+        	//The edit process deals with multi-row edits. All the rows are validated before anything is written.
         	CreateEditDeleteOutput out = new CreateEditDeleteOutput();
         	int[] ids = params.getDistinctIdValues();
         	ArrayList<String> keys = params.getDataKeys();
@@ -982,6 +1150,19 @@ public class Editor
         	Field fld = null;
         	int id = -1;
         	int start = 0;
+        	Query[] updates = new Query[ids.length];
+        	Query[][][] joinQueries = new Query[ids.length][haveJoins() ? joins.size() : 0][];
+        	ArrayList<LinkedHashMap<String,Object>> objectValues = new ArrayList<LinkedHashMap<String,Object>>();
+        	//Find which rows already have a record in the Child Table of each Join that isn't using a link table,
+        	//to know whether to update or insert it
+        	HashMap<Join,HashSet<Integer>> childRecords = new HashMap<Join,HashSet<Integer>>();
+        	for(int i = 0; haveJoins() && i < joins.size(); i++)
+        	{
+        		if(joins.get(i).getCanWrite() && joins.get(i).isUsingLinkTable() == false)
+        		{
+        			childRecords.put(joins.get(i), joins.get(i).findChildRecords(db, ids));
+        		}
+        	}
         	for(int x = 0; x < ids.length; x++)
         	{
         	  id = ids[x];
@@ -1077,53 +1258,199 @@ public class Editor
     		    //Editor.toJSONString() to obtain a response.
     		    //The method call FieldsValid automatically
     		    //populates the FieldErrorsOutput object with the appropriate
-    		    //FieldError.
+    		    //FieldError. Nothing has been written to the database yet.
      		    return;
      	      }
-     	      query = new Query(Query.Type.UPDATE,table);
-     	      //Let the query object know what fields we are acting on.
-     		  query.setFields(flds);
-              db.setQuery(query);
-          
-              //Calling update here also performs updates on any Join
-     	      update(id);
-     	      if(loggingEnabled)
-     		     logger.debug("Editor.Process - update query: " + query.toString());
+     	      //The Query keeps copies of the fields, since they are about to be set with the values of the next row
+     	      for(int i = 0; i < flds.length; i++)
+     	      {
+     	    	flds[i] = flds[i].copy();
+     	      }
+     	      updates[x] = new Query(Query.Type.UPDATE,table);
+     	      updates[x].setFields(flds);
+     	      WhereCondition[] where = new WhereCondition[1];
+     	      where[0] = new WhereCondition(new Field("",pKey,Field.Type.INT), id, "=");
+     	      updates[x].setWhereConditions(where);
+     	      
+     	      //Create the updates on the Joins for this row, and keep the values of the
+     	      //ONE TO ONE relationships for the output
+     	      LinkedHashMap<String,Object> objects = new LinkedHashMap<String,Object>();
+     	      if(haveJoins())
+     	      {
+     	    	Join join = null;
+     	    	for(int i = 0; i < joins.size(); i++)
+     	    	{
+     	    	  join = joins.get(i);
+     	    	  if(join.getCanWrite())
+     	    	  {
+     	    		HashSet<Integer> found = childRecords.get(join);
+     	    		joinQueries[x][i] = join.createUpdateQueries(id, params, found == null || found.contains(id));
+     	    	  }
+     	    	  if(join.isUsingLinkTable() == false)
+     	    	  {
+     	    		objects.put(join.getTableAlias().equals("") ? join.getChildTableName() : join.getTableAlias(), getJoinObjectValues(join));
+     	    	  }
+     	    	}
+     	      }
+     	      objectValues.add(objects);
+        	}//End For Loop on ids array
+        	
+        	//Execute all the updates in a single transaction, in order by primary key, so that concurrent
+        	//edits lock the rows in the same order. The updates of the parent table come first, then those
+        	//of each Join, with its deletes and updates ahead of its inserts, so that consecutive queries share
+        	//the same SQL and are sent to the database as JDBC batches.
+        	Integer[] order = new Integer[ids.length];
+        	for(int x = 0; x < ids.length; x++)
+        	{
+        		order[x] = x;
+        	}
+        	final int[] rowIds = ids;
+        	Arrays.sort(order, new Comparator<Integer>(){
+        		public int compare(Integer a, Integer b)
+        		{
+        			return (rowIds[a] < rowIds[b] ? -1 : (rowIds[a] == rowIds[b] ? 0 : 1));
+        		}
+        	});
+        	ArrayList<Query> writes = new ArrayList<Query>();
+        	for(int x = 0; x < order.length; x++)
+        	{
+        		writes.add(updates[order[x]]);
+        	}
+        	for(int i = 0; haveJoins() && i < joins.size(); i++)
+        	{
+        		for(int pass = 0; pass < 2; pass++)
+        		{
+        			for(int x = 0; x < order.length; x++)
+        			{
+        				Query[] jqueries = joinQueries[order[x]][i];
+        				for(int k = 0; jqueries != null && k < jqueries.length; k++)
+        				{
+        					if((jqueries[k].getQueryType() == Query.Type.INSERT) == (pass == 1))
+        						writes.add(jqueries[k]);
+        				}
+        			}
+        		}
+        	}
+        	HashMap<String,String[]> records = new HashMap<String,String[]>();
+        	if(writes.size() > 0)
+        	{
+        		query = updates[order[0]];
+        		db.setQuery(query);
+        		boolean ok = true;
+        		//A single row is updated by a statement returning the record written, where the Dialect allows it,
+        		//so the record need not be selected again
+        		query.setReturnColumns(ids.length == 1 ? getReturnColumns() : null);
+        		if(query.isReturning())
+        		{
+        			writes.remove(0);
+        			ok = db.executeInsertUpdate();
+        			String[] returned = query.getReturnedRow();
+        			if(ok && returned != null)
+        			{
+        				String[] record = new String[returned.length + 1];
+        				record[0] = String.valueOf(ids[0]);
+        				System.arraycopy(returned, 0, record, 1, returned.length);
+        				records.put(record[0], record);
+        			}
+        		}
+        		if(loggingEnabled)
+        			logger.debug("Editor.Process - update query: " + query.toString() + " x " + ids.length + ", " + writes.size() + " queries in all");
+        		if(ok && writes.size() > 0)
+        			ok = (db.executeBatch(writes.toArray(new Query[writes.size()])) != null);
+        		if(ok == false || isRollbackOnly())
+        		{
+        			//The transaction was rolled back, so the client side is sent an error rather than the rows unchanged
+        			setErrorOutput("The records could not be updated.");
+        			return;
+        		}
+        	}
+        	
+        	if(setJoinFields && haveJoins())
+        	{
+        		for(int i = 0; i < joins.size(); i++)
+        		{
+        			setJoinFields(joins.get(i), params.getDataValue(parameterKey));
+        		}
+        	}
+        	
+        	//************* PREPARE THE OUTPUT FOR ALL THE ROWS ********************
+        	//Read the rows back with one query for each IN list the Dialect allows, rather than one query for each row
+        	String strquery = "";
+        	String[][] results = null;
+        	String pkColumn = table + "." + getPrimaryKey();
+        	String fds = pkColumn;
+        	for(int i = 0; i < fields.size(); i++)
+        	{
+        		fds += "," + fields.get(i).toString();
+        	}
+        	int[] sorted = new int[ids.length];
+        	int missing = 0;
+        	for(int x = 0; x < ids.length; x++)
+        	{
+        		if(records.containsKey(String.valueOf(ids[x])) == false)
+        			sorted[missing++] = ids[x];
+        	}
+        	sorted = Arrays.copyOf(sorted, missing);
+        	Arrays.sort(sorted);
+        	String[] inLists = db.getInLists(sorted);
+        	for(int l = 0; l < inLists.length; l++)
+        	{
+        	  strquery = "SELECT " + fds + " FROM " + table + " WHERE " + pkColumn + " IN (" + inLists[l] + ")";
+        	  if(Editor.isLoggingEnabled())
+        		 logger.debug("Editor - Edit Process - query: " + strquery);
+        	  results = db.executeSelect(strquery);
+        	  
+        	  //PRINT RESULTS
+        	  if(Editor.isLoggingEnabled() && results != null)
+        	  { 
+        		String line = "QUERY RESULTS:\n ";
+        		for(int i = 0; i < results.length; i++)
+        		{
+        		  for(int j = 0; j < results[0].length; j++)
+        		  {
+        			  line += results[i][j] + " | ";
+        		  }
+        		  line += "\n";
+        		}
+        		logger.debug(line);
+        	  }
+        	  for(int i = 0; results != null && i < results.length; i++)
+        	  {
+        		records.put(results[i][0], results[i]);
+        	  }
+        	}
+        	
+        	//The ONE TO MANY relationships of all the rows are read with one query for each Join
+        	if(haveJoins())
+        	{
+        	  Join join = null;
+        	  for(int i = 0; i < joins.size(); i++)
+        	  {
+        		join = joins.get(i);
+        		if(join.getExcludeOnOutput() == false && join.getCanRead() && join.isUsingLinkTable())
+        		{
+        		  if(this.haveUploadInstance)
+        		  {
+        			join.runJoinSelectQueryForUploads(db, ids);
+        		  }
+        		  else
+        		  {
+        			join.runJoinSelectQueryForStringArrays(db, ids);
+        		  }
+        		}
+        	  }
+        	}
         	
-        	  //************* PREPARE THE OUTPUT FOR THIS ONE ROW ********************     	    
-     	      String strquery = "";
-     	      String[][] results = null;
+        	for(int x = 0; x < ids.length; x++)
+        	{
+        	  id = ids[x];
+        	  String[] record = records.get(String.valueOf(id));
+        	  if(record == null)
+        	  {
+        		  continue;
+        	  }
      	      LinkedHashMap<String,Object> lhm = null;
      	      Field field = null;
-     	      String fds = "";
-   		      for(int i = 0; i < fields.size(); i++)
-   		      {
-   			     fds += fields.get(i).toString() + ",";
-   		      }
-   		      fds = fds.substring(0,fds.length() - 1);
-   		    
-   		    
-   		      strquery = "SELECT " + fds + " FROM " + table + " WHERE " + getPrimaryKey() + " = " + String.valueOf(ids[x]);
-   		      if(Editor.isLoggingEnabled())
-			     logger.debug("Editor - Edit Process - query: " + strquery);
-		      results = db.executeSelect(strquery);
-		      
-		      //PRINT RESULTS
-		      if(Editor.isLoggingEnabled())
-		      { 
-		    	String line = "QUERY RESULTS:\n ";
-		        for(int i = 0; i < results.length; i++)
-		        {
-		    	  for(int j = 0; j < results[0].length; j++)
-			      {
-			    	  line += results[i][j] + " | ";
-			      }
-		    	  line += "\n";
-		        }
-		        logger.debug(line);
-		      }
-		      
-		      
 		      field = new Field("", Constants.DT_ROWID,Field.Type.STRING);
 		      field.setValue(Constants.IDPREFIX + String.valueOf(id), Field.DIRECTION.FROM_DB);
    	          lhm = new LinkedHashMap<String,Object>();
@@ -1139,77 +1466,36 @@ public class Editor
    	        	  {
    	        		if(field.getFieldType() == Field.Type.DATE)
    	        		{
-   	        		  field.setValue(results[0][n], Field.DIRECTION.FROM_DB);
+   	        		  field.setValue(record[n + 1], Field.DIRECTION.FROM_DB);
       		    	  lhmap.put(field.getName(), field.getClientDateValue()); 
    	        		}   	        		
       		    	else
-      		    	  lhmap.put(field.getName(), results[0][n]);   	        	       	        	    
+      		    	  lhmap.put(field.getName(), record[n + 1]);   	        	       	        	    
    	        	  }
    	            }
    	        	lhm.put(table,lhmap); 
    	        	Join join = null;
+   	        	String key = "";
      	        for(int i = 0; i < joins.size(); i++)
      	        {
      	   	         join = joins.get(i);
-     	   	         if (join.getExcludeOnOutput() == false)
+     	   	         if (join.getExcludeOnOutput() == false && join.getCanRead())
                      {
-                         if (join.getCanRead())
+                         key = (join.getTableAlias().equals("") ? join.getChildTableName() : join.getTableAlias());
+                         if (join.isUsingLinkTable())
                          {
-                           if (join.isUsingLinkTable())
-                           {
-                        	   if(this.haveUploadInstance)
-                         	   {
-                         		  join.runJoinSelectQueryForUploads(db);
-                         	   }
-                         	   else
-                         	   {
-                                  join.runJoinSelectQueryForStringArrays(db);
-                         	   }
-                               //using arrays - ONE TO MANY relationships
-                               if (join.getTableAlias().equals(""))
-                               {
-                                    lhm.put(join.getChildTableName(), join.getArrayFieldValues(String.valueOf(id), join.getResultsOfJoinSelectQuery()));
-                               }
-                               else
-                               {
-                                   lhm.put(join.getTableAlias(), join.getArrayFieldValues(String.valueOf(id), join.getResultsOfJoinSelectQuery()));
-                               }
-                           }
-                           else
-                           {
-                               //using objects only - ONE TO ONE relationships
-                     	       Field[] fields = null;
-                               fields = join.getFields();
-                               Field field3 = null;
-                               LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>();
-                               for (int l = 0; l < fields.length; l++)
-                               {
-                                   field3 = fields[l];
-                                   if (field3.getExcludeOnOutput() == false)
-                                   {
-                                       if (field3.getFieldType() == Field.Type.DATE)
-                                       {
-                                           //field3.setValue(results[0][l], Field.DIRECTION.FROM_DB);
-                                           //j++;
-                                           map.put(field3.getName(), field3.getClientDateValue());
-                                       }
-                                       else
-                                       {
-                                           map.put(field3.getName(), field3.getValue());
-                                           //j++;
-                                       }
-
-                                   }
-                               }
-                               if (join.getTableAlias().equals(""))
-                               {
-                            	   lhm.put(join.getChildTableName(), map);
-                               }
-                               else
-                               {
-                                   lhm.put(join.getTableAlias(), map);
-                               }
-                           }                           
+                             //using arrays - ONE TO MANY relationships
+                             lhm.put(key, join.getArrayFieldValues(String.valueOf(id), join.getResultsOfJoinSelectQuery()));
+                         }
+                         else if (setJoinFields)
+                         {
+                             //using objects only - ONE TO ONE relationships, with the values set by setJoinFields
+                             lhm.put(key, getJoinObjectValues(join));
+                         }
+                         else
+                         {
+                             //using objects only - ONE TO ONE relationships, with the values of this row
+                             lhm.put(key, objectValues.get(x).get(key));
                          }
                      }
                 } //end for loop on joins
@@ -1225,18 +1511,15 @@ public class Editor
    	        	  {
    	        		if(field.getFieldType() == Field.Type.DATE)
    	        		{
-   	        	      //System.out.println("Editor.edit - results[0][n]: " + results[0][n]);
-   	        		  field.setValue(results[0][n], Field.DIRECTION.FROM_DB);	
+   	        		  field.setValue(record[n + 1], Field.DIRECTION.FROM_DB);	
     		    	  lhm.put(field.getName(), field.getClientDateValue()); 
    	        		}   	        		
     		    	else
-    		    	  lhm.put(field.getName(), results[0][n]);
+    		    	  lhm.put(field.getName(), record[n + 1]);
    	        	  }
    	            }
    	            out.addDataRow(lhm);
    	          }
-   	          
-  	        //}//End for on ids array
         	}//End For Loop on ids array  
         	if(haveUploadInstance)
         	{
@@ -1257,9 +1540,17 @@ public class Editor
     	
         select();
         
-        if(data == null)
+        if(usingSSP && data == null && columnar == null)
         	return;
         
+        if(usingSSP && db.isDrawCancelled())
+        {
+          //The client side discards the response to a superseded draw
+          sspout.draw = params.getDraw();
+          output = sspout;
+          return;
+        }
+        
         if(loggingEnabled)
         	logger.debug("Editor.Process - select query: " + query.toString());
         
@@ -1300,28 +1591,10 @@ public class Editor
   	      Field field3 = null;
   	      int j = 0;
   	      
-  	      if (haveJoins())
-          {
-            //Determine any of the joins are processing String Arrays
-            for (Join jn : joins)
-            {
-                if (jn.isUsingLinkTable())
-                {
-                    //Make each of these type joins retain its own result set from a select query.
-                    //This is to ensure there is only one trip to the database server.
-                	if(this.haveUploadInstance)
-              	    {
-              		  jn.runJoinSelectQueryForUploads(db);
-              	    }
-              	    else
-              	    {
-                      jn.runJoinSelectQueryForStringArrays(db);
-              	    }
-                }
-            }
-          }
+  	      //The link table queries only need the records on this page
+  	      runIndependentQueries(getPageIDs());
   	      //Iterate over the data
-  	      for(int i = 0; i < data.length; i++)
+  	      for(int i = 0; i < getRowCount(); i++)
   	      {
   	    	//load up on data from the parent table first
   		    row = new LinkedHashMap<String,Object>();
@@ -1329,19 +1602,19 @@ public class Editor
   		    {
   		      if(j == 0 && includeRowID && includeRowClass == false)
   		      {
-  		        row.put(fields.get(j).getName(),Constants.IDPREFIX + data[i][j]);
+  		        row.put(fields.get(j).getName(),Constants.IDPREFIX + getString(i, j));
   		      }
   		      else if(j == 0 && includeRowID && includeRowClass)
   		      {
-  		    	row.put(fields.get(j).getName(),Constants.IDPREFIX + data[i][j]);
+  		    	row.put(fields.get(j).getName(),Constants.IDPREFIX + getString(i, j));
   		      }
   		      else if(j == 1 && includeRowID && includeRowClass)
 		      {
-  		    	row.put(fields.get(j).getName(),rowclassPrefix + data[i][j]); 
+  		    	row.put(fields.get(j).getName(),rowclassPrefix + getString(i, j)); 
 		      }
   		      else if(j == 0 && includeRowID == false && includeRowClass)
   		      {
-  		    	row.put(fields.get(j).getName(),rowclassPrefix + data[i][j]);  
+  		    	row.put(fields.get(j).getName(),rowclassPrefix + getString(i, j));  
   		      }
   		      else
   		      {
@@ -1352,11 +1625,11 @@ public class Editor
 				{
   		    	  if(field.getFieldType() == Field.Type.DATE)
   		    	  {
-  		    	    field.setValue(data[i][j], Field.DIRECTION.FROM_DB);  		    		  
+  		    	    field.setValue(getString(i, j), Field.DIRECTION.FROM_DB);  		    		  
   		    	    row.put(columnData, field.getClientDateValue());  		    	  
   		    	  }  		    	  
   		    	  else
-  		    	    row.put(columnData ,data[i][j]);  		    	  
+  		    	    row.put(columnData ,getValue(i, j));  		    	  
 				}  		    	
   		    	index++;
   		    		    	
@@ -1382,11 +1655,11 @@ public class Editor
                               //using arrays - ONE TO MANY relationships
                               if (join.getTableAlias().equals(""))
                               {
-                                  row.put(join.getChildTableName(), join.getArrayFieldValues(data[i][0], join.getResultsOfJoinSelectQuery()));
+                                  row.put(join.getChildTableName(), join.getArrayFieldValues(getString(i, 0), join.getResultsOfJoinSelectQuery()));
                               }
                               else
                               {
-                                  row.put(join.getTableAlias(), join.getArrayFieldValues(data[i][0], join.getResultsOfJoinSelectQuery()));
+                                  row.put(join.getTableAlias(), join.getArrayFieldValues(getString(i, 0), join.getResultsOfJoinSelectQuery()));
                               }
                           }
                           else
@@ -1401,13 +1674,13 @@ public class Editor
                                   {
                                       if (field3.getFieldType() == Field.Type.DATE)
                                       {
-                                          field3.setValue(data[i][j], Field.DIRECTION.FROM_DB);
+                                          field3.setValue(getString(i, j), Field.DIRECTION.FROM_DB);
                                           j++;
                                           map.put(field3.getName(), field3.getClientDateValue());
                                       }                                      
                                       else
                                       {
-                                          map.put(field3.getName(), data[i][j]);
+                                          map.put(field3.getName(), getValue(i, j));
                                           j++;
                                       }
 
@@ -1434,165 +1707,39 @@ public class Editor
   	      {
   	    	Field fld = findFieldWithUpload();
   	    	Upload upload = fld.getUpload();
-  	    	sspout.files.put(upload.Table(), field.getUpload().getDBData(db));
+  	    	sspout.files.put(upload.Table(), uploadFiles);
   	      }
   	      output = sspout;
         }//end of usingSSP
         else
         {
-        	//PUT THE DATA INTO THE OUTPUT OBJECT FOR PROCESSING
-            LinkedHashMap<String,Object> row = null;
-            LinkedHashMap<String,Object> map = null;
-			LinkedHashMap<String,Object> lhmap = null;
-    	    int cols = fields.size();
-    	    Field field2 = null;
-    	    int j = 0;
-    	      
-    	    if(haveJoins())
-            {
-              //Determine any of the joins are processing String Arrays
-              for(Join jn : joins)
-              {
-                  if(jn.isUsingLinkTable())
-                  {
-                      //Make each of these type joins retain its own result set from a select query.
-                      //This is to ensure there is only one trip to the database server.
-                	  if(this.haveUploadInstance)
-                	  {
-                		  jn.runJoinSelectQueryForUploads(db);
-                	  }
-                	  else
-                	  {
-                        jn.runJoinSelectQueryForStringArrays(db);
-                	  }
-                  }
-              }
-			  
-			  for(int i = 0; i < data.length; i++)
-    	      {
-				row = new LinkedHashMap<String,Object>();
-				lhmap = new LinkedHashMap<String,Object>();
-				row.put(Constants.DT_ROWID, Constants.IDPREFIX + data[i][j]);
-    		    //Load up on data from parent table first
-    		    for(; j < cols; j++)
-    		    {    		      
-    		      field2 = fields.get(j);
-    		      if(field2.getExcludeOnOutput() == false)
-  	    	      {
-    		        if(field2.getFieldType() == Field.Type.DATE)
-  			        {
-    		    	  field2.setValue(data[i][j+1], Field.DIRECTION.FROM_DB);
-    		    	  lhmap.put(field2.getName(),field2.getClientDateValue());
-  			        }    		        
-    		        else
-    		        {
-    		          lhmap.put(fields.get(j).getName(),data[i][j+1]);
-    		        }
-  	    	      }
-    		    }//end of inner for loop
-    		    row.put(table,lhmap);
-    	    
-                //Now, load up on data from the joins, one row at a time
-                Join join = null;
-                Field[] fields = null;
-              
-                for(int k = 0; k < joins.size(); k++)
-                {
-                    join = joins.get(k);
-                    if (join.getExcludeOnOutput() == false)
-                    {
-                        if (join.getCanRead())
-                        {
-                            if (join.isUsingLinkTable())
-                            {
-                              //using arrays - ONE TO MANY relationships
-                              if (join.getTableAlias().equals(""))
-                              {
-                                  row.put(join.getChildTableName(), join.getArrayFieldValues(data[i][0], join.getResultsOfJoinSelectQuery()));
-                              }
-                              else
-                              {
-                                  row.put(join.getTableAlias(), join.getArrayFieldValues(data[i][0], join.getResultsOfJoinSelectQuery()));
-                              }
-                            }
-                            else
-                            {
-                                //using objects only - ONE TO ONE relationships
-                                fields = join.getFields();
-                                map = new LinkedHashMap<String, Object>();
-                                for (int l = 0; l < fields.length; l++)
-                                {
-                                    field2 = fields[l];
-                                    if (field2.getExcludeOnOutput() == false)
-                                    {
-                                      if (field2.getFieldType() == Field.Type.DATE)
-                                      {
-                                          field2.setValue(data[i][j+1], Field.DIRECTION.FROM_DB);
-                                          j++;
-                                          map.put(field2.getName(), field2.getClientDateValue());
-                                      }                                      
-                                      else
-                                      {
-                                          map.put(field2.getName(), data[i][j+1]);
-                                          j++;
-                                      }
-                                    }
-                                }
-                                if (join.getTableAlias().equals(""))
-                                {
-                                    row.put(join.getChildTableName(), map);
-                                }
-                                else
-                                {
-                                    row.put(join.getTableAlias(), map);
-                                }
-                            }//End else
-                        }//End if (join.getCanRead())
-                    }//End if (join.getExcludeOnOutput() == false)
-                }//end of for loop iterating over joins                
-                j = 0; //reset              
-                nsspout.addDataRow(row);
-              }//end of outer for iterating over data
-            }
-			else
+    	    //Every record is output, so the link table queries cover the whole table
+    	    runIndependentQueries(null);
+    	    if(haveJoins() == false)
 			{
 			    //NOT DEALING WITH JOINS
 				Field field = new Field("",Constants.DT_ROWID,Field.Type.INT);
 	  	        fields.add(0,field);
-			    for(int i = 0; i < data.length; i++)
-    	        {
-    		      row = new LinkedHashMap<String,Object>();
-    		      //Load up on data from parent table first
-    		      for(; j < fields.size(); j++)
-    		      {
-    		        field2 = fields.get(j);
-    		        if(field2.getExcludeOnOutput() == false)
-  	    	        {
-    		          if(field2.getFieldType() == Field.Type.DATE)
-  			          {
-    		    	    field2.setValue(data[i][j], Field.DIRECTION.FROM_DB);
-    		    	    row.put(field2.getName(),field2.getClientDateValue());
-  			          }    		          
-    		          else
-    		          {
-    		    	    if(j == 0)
-    		    		  row.put(fields.get(j).getName(),Constants.IDPREFIX + data[i][j]);
-    		    	    else
-    		              row.put(fields.get(j).getName(),data[i][j]);
-    		          }
-  	    	        }
-    		      }//end of inner for loop
-    		      j = 0; //reset
-    		      nsspout.addDataRow(row);
-				}
 			}
     	    
+    	    //PUT THE DATA INTO THE OUTPUT OBJECT FOR PROCESSING, ONE ROW AT A TIME AS IT IS READ
+    	    //FROM THE DATABASE, SO THAT THE WHOLE TABLE IS NEVER HELD IN A String[][] ARRAY.
+    	    db.executeSelect(new RowVisitor(){
+    	    	public void visitRow(String[] rowData)
+    	    	{
+    	    		if(haveJoins())
+    	    		  nsspout.addDataRow(createNonSSPJoinRow(rowData));
+    	    		else
+    	    		  nsspout.addDataRow(createNonSSPRow(rowData));
+    	    	}
+    	    });
+    	    
     	    //Add files if we have an Upload instance anywhere
     	    if(haveUploadInstance)
     	    {
     	    	Field field = findFieldWithUpload();
     	    	Upload upload = field.getUpload();
-    	    	nsspout.files.put(upload.Table(), field.getUpload().getDBData(db));
+    	    	nsspout.files.put(upload.Table(), uploadFiles);
     	    }
     	    
   	        output = nsspout;   
@@ -1602,11 +1749,143 @@ public class Editor
     }//End Try 
     catch(Exception e)
     {
+      //Whether this Editor or its caller began the unit of work, nothing it holds may be committed
+      if(db.getUnitOfWork() != null)
+    	db.getUnitOfWork().setRollbackOnly();
       if(loggingEnabled)
   	   logger.error("Log4J error: " +  getFullStackTrace(e));      
+      output = new ErrorOutput("An error occurred while processing the request.");
     }//End Catch    
+    finally
+    {
+      if(queryTimeout > -1)
+    	db.setRequestQueryTimeout(-1);
+      //Nothing was written if the unit of work was rolled back, so the client side is sent an error rather than the records
+      if(unit != null && unit.isActive() && unit.commit() == false && (output instanceof ErrorOutput) == false)
+    	output = new ErrorOutput("The changes could not be saved.");
+    }
   }//End Process method
   
+  //Helper method to build one row of NonSSPOutput when dealing with joins.
+  //The first element of rowData holds the primary key value.
+  private LinkedHashMap<String,Object> createNonSSPJoinRow(String[] rowData)
+  {
+	LinkedHashMap<String,Object> row = new LinkedHashMap<String,Object>();
+    LinkedHashMap<String,Object> map = null;
+	LinkedHashMap<String,Object> lhmap = new LinkedHashMap<String,Object>();
+    int cols = fields.size();
+    Field field2 = null;
+    int j = 0;
+	row.put(Constants.DT_ROWID, Constants.IDPREFIX + rowData[j]);
+    //Load up on data from parent table first
+    for(; j < cols; j++)
+    {    		      
+      field2 = fields.get(j);
+      if(field2.getExcludeOnOutput() == false)
+      {
+        if(field2.getFieldType() == Field.Type.DATE)
+        {
+    	  field2.setValue(rowData[j+1], Field.DIRECTION.FROM_DB);
+    	  lhmap.put(field2.getName(),field2.getClientDateValue());
+        }    		        
+        else
+        {
+          lhmap.put(fields.get(j).getName(),rowData[j+1]);
+        }
+      }
+    }//end of inner for loop
+    row.put(table,lhmap);
+
+    //Now, load up on data from the joins
+    Join join = null;
+    Field[] fields = null;
+  
+    for(int k = 0; k < joins.size(); k++)
+    {
+        join = joins.get(k);
+        if (join.getExcludeOnOutput() == false)
+        {
+            if (join.getCanRead())
+            {
+                if (join.isUsingLinkTable())
+                {
+                  //using arrays - ONE TO MANY relationships
+                  if (join.getTableAlias().equals(""))
+                  {
+                      row.put(join.getChildTableName(), join.getArrayFieldValues(rowData[0], join.getResultsOfJoinSelectQuery()));
+                  }
+                  else
+                  {
+                      row.put(join.getTableAlias(), join.getArrayFieldValues(rowData[0], join.getResultsOfJoinSelectQuery()));
+                  }
+                }
+                else
+                {
+                    //using objects only - ONE TO ONE relationships
+                    fields = join.getFields();
+                    map = new LinkedHashMap<String, Object>();
+                    for (int l = 0; l < fields.length; l++)
+                    {
+                        field2 = fields[l];
+                        if (field2.getExcludeOnOutput() == false)
+                        {
+                          if (field2.getFieldType() == Field.Type.DATE)
+                          {
+                              field2.setValue(rowData[j+1], Field.DIRECTION.FROM_DB);
+                              j++;
+                              map.put(field2.getName(), field2.getClientDateValue());
+                          }                                      
+                          else
+                          {
+                              map.put(field2.getName(), rowData[j+1]);
+                              j++;
+                          }
+                        }
+                    }
+                    if (join.getTableAlias().equals(""))
+                    {
+                        row.put(join.getChildTableName(), map);
+                    }
+                    else
+                    {
+                        row.put(join.getTableAlias(), map);
+                    }
+                }//End else
+            }//End if (join.getCanRead())
+        }//End if (join.getExcludeOnOutput() == false)
+    }//end of for loop iterating over joins                
+    return row;
+  }
+  
+  //Helper method to build one row of NonSSPOutput when there are no joins.
+  //The DT_RowId field is expected to have been inserted as the first field.
+  private LinkedHashMap<String,Object> createNonSSPRow(String[] rowData)
+  {
+	LinkedHashMap<String,Object> row = new LinkedHashMap<String,Object>();
+	Field field2 = null;
+    //Load up on data from parent table first
+    for(int j = 0; j < fields.size(); j++)
+    {
+      field2 = fields.get(j);
+      if(field2.getExcludeOnOutput() == false)
+      {
+        if(field2.getFieldType() == Field.Type.DATE)
+        {
+    	  field2.setValue(rowData[j], Field.DIRECTION.FROM_DB);
+    	  row.put(field2.getName(),field2.getClientDateValue());
+        }    		          
+        else
+        {
+    	  if(j == 0)
+    		row.put(fields.get(j).getName(),Constants.IDPREFIX + rowData[j]);
+    	  else
+            row.put(fields.get(j).getName(),rowData[j]);
+        }
+      }
+    }//end of inner for loop
+    return row;
+  }
+  
   private Field findFieldWithUpload()
   {
 	  Field fld = null;
@@ -1705,6 +1984,45 @@ public class Editor
 	  return field;
   }
   
+  //Get the names of the columns an INSERT or UPDATE of the parent table returns for the output, in the order of the fields,
+  //or null if the output requires a field that isn't a column of the parent table
+  private String[] getReturnColumns()
+  {
+	  String[] columns = new String[fields.size()];
+	  Field field = null;
+	  for(int i = 0; i < fields.size(); i++)
+	  {
+		  field = fields.get(i);
+		  if(field.getFieldType() == Field.Type.DBFUNCTION || field.getFieldType() == Field.Type.FILE ||
+			 (field.getTableName().equals("") == false && field.getTableName().equalsIgnoreCase(table) == false))
+		  {
+			  return null;
+		  }
+		  columns[i] = field.getDBFieldName();
+	  }
+	  return columns;
+  }
+  
+  //Get the values of the fields of a Join in a ONE TO ONE relationship, for the output
+  private LinkedHashMap<String,Object> getJoinObjectValues(Join join)
+  {
+	  Field[] fields = join.getFields();
+	  Field field = null;
+	  LinkedHashMap<String,Object> map = new LinkedHashMap<String,Object>();
+	  for(int i = 0; i < fields.length; i++)
+	  {
+		  field = fields[i];
+		  if(field.getExcludeOnOutput() == false)
+		  {
+			  if(field.getFieldType() == Field.Type.DATE)
+				  map.put(field.getName(), field.getClientDateValue());
+			  else
+				  map.put(field.getName(), field.getValue());
+		  }
+	  }
+	  return map;
+  }
+  
   private Field[] convertTo_FieldsArray(ArrayList<Field> fields)
   {
 	  Field[] flds = new Field[fields.size()];
@@ -1835,6 +2153,146 @@ public class Editor
   }
   
     
+  //Run the queries that don't depend on one another or on the records of the parent table: the query of each Join
+  //using a link table, which retains its own result set so there is only one trip to the database server for it,
+  //and the query for the files of an Upload. Up to joinParallelism of them run at the same time, each on its own connection.
+  //The link table queries are restricted to the parent records with the ids given, or cover the whole table if ids is null.
+  private void runIndependentQueries(final int[] ids) throws Exception
+  {
+	  ArrayList<Join> linkJoins = new ArrayList<Join>();
+	  if(haveJoins())
+	  {
+		  for(Join jn : joins)
+		  {
+			  if(jn.isUsingLinkTable())
+				  linkJoins.add(jn);
+		  }
+	  }
+	  uploadFiles = null;
+	  final Upload upload = (haveUploadInstance ? findFieldWithUpload().getUpload() : null);
+	  int count = linkJoins.size() + (upload != null ? 1 : 0);
+	  if(count == 0)
+		  return;
+	  //A Database executes one query at a time, so each query running concurrently gets its own copy.
+	  //A copy wouldn't see the records written within a unit of work, so the queries then run one after another.
+	  final boolean concurrent = (joinParallelism > 1 && count > 1 && db.getUnitOfWork() == null);
+	  ArrayList<Runnable> tasks = new ArrayList<Runnable>();
+	  for(final Join jn : linkJoins)
+	  {
+		  tasks.add(new Runnable(){
+			  public void run()
+			  {
+				  Database database = (concurrent ? db.copy() : db);
+				  if(haveUploadInstance)
+				  {
+					  if(ids != null)
+						  jn.runJoinSelectQueryForUploads(database, ids);
+					  else
+						  jn.runJoinSelectQueryForUploads(database);
+				  }
+				  else
+				  {
+					  if(ids != null)
+						  jn.runJoinSelectQueryForStringArrays(database, ids);
+					  else
+						  jn.runJoinSelectQueryForStringArrays(database);
+				  }
+			  }
+		  });
+	  }
+	  if(upload != null)
+	  {
+		  tasks.add(new Runnable(){
+			  public void run()
+			  {
+				  try
+				  {
+					  uploadFiles = upload.getDBData(concurrent ? db.copy() : db);
+				  }
+				  catch(InsufficientDataException ide)
+				  {
+					  throw new CompletionException(ide);
+				  }
+			  }
+		  });
+	  }
+	  if(concurrent == false)
+	  {
+		  for(Runnable task : tasks)
+		  {
+			  runTask(task);
+		  }
+		  return;
+	  }
+	  //Share the tasks among no more than joinParallelism lanes, one of which runs on the calling thread
+	  int lanes = Math.min(joinParallelism, tasks.size());
+	  CompletableFuture<?>[] futures = new CompletableFuture<?>[lanes - 1];
+	  for(int l = 1; l < lanes; l++)
+	  {
+		  final List<Runnable> lane = laneOf(tasks, l, lanes);
+		  futures[l - 1] = CompletableFuture.runAsync(new Runnable(){
+			  public void run()
+			  {
+				  for(Runnable task : lane)
+				  {
+					  task.run();
+				  }
+			  }
+		  }, Database.getAsyncExecutor());
+	  }
+	  Exception failure = null;
+	  try
+	  {
+		  for(Runnable task : laneOf(tasks, 0, lanes))
+		  {
+			  runTask(task);
+		  }
+	  }
+	  catch(Exception e)
+	  {
+		  failure = e;
+	  }
+	  //Wait for every lane, even if one has failed, so no query is left running for this request
+	  for(CompletableFuture<?> future : futures)
+	  {
+		  try
+		  {
+			  future.join();
+		  }
+		  catch(CompletionException ce)
+		  {
+			  if(failure == null)
+				  failure = (ce.getCause() instanceof Exception ? (Exception)ce.getCause() : ce);
+		  }
+	  }
+	  if(failure != null)
+		  throw failure;
+  }
+  
+  //Every lanes-th task, starting with the task at index lane
+  private static List<Runnable> laneOf(List<Runnable> tasks, int lane, int lanes)
+  {
+	  ArrayList<Runnable> list = new ArrayList<Runnable>();
+	  for(int i = lane; i < tasks.size(); i += lanes)
+	  {
+		  list.add(tasks.get(i));
+	  }
+	  return list;
+  }
+  
+  //Run a task on the calling thread, throwing the checked exception of a failed task as it is
+  private static void runTask(Runnable task) throws Exception
+  {
+	  try
+	  {
+		  task.run();
+	  }
+	  catch(CompletionException ce)
+	  {
+		  throw (ce.getCause() instanceof Exception ? (Exception)ce.getCause() : ce);
+	  }
+  }
+  
   private void select()
   {
 	  //SET ALL THE INFORMATION WITHIN THE QUERY OBJECT
@@ -1865,6 +2323,7 @@ public class Editor
 	  if(params.getDraw() > -1)
 	  {
 		usingSSP = true;
+		query.setKeysetPagination(keysetPagination);
 	    ssp_sort(query);
 	    ssp_filter(query);
 	    ssp_limit(query);
@@ -1916,19 +2375,72 @@ public class Editor
   	    query.setWhereConditions(wc);
   	  }
   	  
-	  data = db.executeSelect();	  
+	  //Server side processing returns a single page of records, which is gathered into memory.
+	  //Client side processing can return the entire table, so Process() streams those rows instead.
+	  if(usingSSP && sessionKey != null)
+	  {
+	    db.setDraw(sessionKey + "|" + query.getParentTable(), params.getDraw());
+	  }
+	  if(usingSSP && typedOutput)
+	  {
+	    columnar = db.executeSelectColumnar();
+	  }
+	  else if(usingSSP)
+	  {
+	    data = db.executeSelect();
+	  }
+  }
+  
+  //Helper methods to read the page of records gathered for SSP, whether typed output is enabled or not
+  
+  //The ids of the records on the page, held in the first column, or null if they aren't whole numbers
+  private int[] getPageIDs()
+  {
+	  int[] ids = new int[getRowCount()];
+	  try
+	  {
+		  for(int i = 0; i < ids.length; i++)
+		  {
+			  ids[i] = Integer.parseInt(getString(i, 0));
+		  }
+	  }
+	  catch(NumberFormatException nfe)
+	  {
+		  return null;
+	  }
+	  return ids;
+  }
+  
+  private int getRowCount()
+  {
+	  return (columnar != null ? columnar.getRowCount() : data.length);
+  }
+  
+  private String getString(int row, int column)
+  {
+	  return (columnar != null ? columnar.getString(row, column) : data[row][column]);
+  }
+  
+  private Object getValue(int row, int column)
+  {
+	  if(columnar == null)
+		  return data[row][column];
+	  Object value = columnar.getValue(row, column);
+	  return (value == null ? "" : value);
   }
 
   
-  private void insert()
+  //Insert the new record, returning false if it couldn't be written
+  private boolean insert()
   {
 	  query.setFields(convertTo_FieldsArray(fields));
+	  query.setReturnColumns(getReturnColumns());
 	  try{
 	    boolean success = db.executeInsertUpdate();
 	    //If the insert was unsuccessful, we should be
 	    //sending an error response back to the client side.
 	    if(success == false)
-		  return;
+		  return false;
 	  
 	    //Insert new record in the Joins as well.
  	    if(haveJoins())
@@ -1954,58 +2466,14 @@ public class Editor
 		  {	    	
 	    	logger.error(Editor.getFullStackTrace(e));
 		  }	  
+		  return false;
 	  }
-	  
-  }
-  //When we perform an update, it is only on one row of data!
-  private void update(int id)
-  {
-	try{
-	  //In addition, create a new Field object representing the PRIMARY KEY
-	  //field and set a Where object for the Query to act upon.
-	  WhereCondition[] where = new WhereCondition[1];
-	  Field pkfield = new Field("",pKey,Field.Type.INT);	  
-	  where[0] = new WhereCondition(pkfield, id, "=");
-	  query.setWhereConditions(where);
-	  
-	  boolean success = db.executeInsertUpdate();
-	  //If the update was unsuccessful, we should be
-	  //sending an error response back to the client side.
-	  if(success == false)
-		  return;
-	  
-	  
-	  //Update any changes in the Joins as well.
- 	  if(haveJoins())
-      {
-  	      Join join = null;
-  	      for(int i = 0; i < joins.size(); i++)
-  	      {
-  	    	  join = joins.get(i);
-  	    	  if(join.getCanWrite())
-  	    	  {
-  	    		  join.update(db,id, params);
-  	    	  }
-  	    	  if(setJoinFields)
-  	    	  {
-  	    		  setJoinFields(join, params.getDataValue(parameterKey));
-  	    	  }
-  	      }
-      }
-	}
-	catch(Exception e)
-	{
-	  if(isLoggingEnabled())	    	  
-	  {	    	
-	   	logger.error(Editor.getFullStackTrace(e));
-	  }	  
-	}
-	  
+	  return true;
   }
-  
-  //Delete one or more rows from the database
-  private void remove()
+  //Delete one or more rows from the database, returning false if they couldn't be deleted
+  private boolean remove()
   {
+	boolean success = true;
 	try{
 	  	  
 	  int[] ids = params.getDistinctIdValues();  
@@ -2026,7 +2494,7 @@ public class Editor
 	    query.setWhereConditions(where);
 	    if(loggingEnabled)
 	    	logger.debug("Editor.remove - delete query: " + query.toString());
-	    db.executeDeletes(queries);	  
+	    success = (db.executeDeletes(queries) != null);
 	  }
 	  else
 	  {
@@ -2051,9 +2519,9 @@ public class Editor
            if(loggingEnabled)
         	   logger.debug("Editor.remove - delete query: " + queries[i].toString());
 	    }
-	    db.executeDeletes(queries);
+	    success = (db.executeDeletes(queries) != null);
 	  }
-	  if(haveJoins())
+	  if(success && haveJoins())
       {
   	    Join join = null;
   	    for(int i = 0; i < joins.size(); i++)
@@ -2069,7 +2537,23 @@ public class Editor
 	{
 		if(loggingEnabled)
 	    	 logger.error("Log4J error: " +  getFullStackTrace(e)); 
+		return false;
 	}
+	return success;
+  }
+  
+  //Inquire if a failure has marked the unit of work in progress, whether this Editor or its caller began it
+  private boolean isRollbackOnly()
+  {
+	  return db.getUnitOfWork() != null && db.getUnitOfWork().isRollbackOnly();
+  }
+  
+  //Send the client side an error, making sure nothing written in the unit of work in progress is committed
+  private void setErrorOutput(String message)
+  {
+	  if(db.getUnitOfWork() != null)
+		  db.getUnitOfWork().setRollbackOnly();
+	  output = new ErrorOutput(message);
   }
   
   /**
@@ -2240,7 +2724,8 @@ public class Editor
   
   /**
    * This is just a convenience method to run a simple SELECT query
-   * on just two fields in a table.  
+   * on just two fields in a table. The rows are held in the LookupCache,
+   * so the query is not run again on every request.
    * @param tableName
    * @param field1
    * @param field2
@@ -2249,8 +2734,7 @@ public class Editor
   public String[][] runSelectQuery(String tableName, String field1, String field2)
   {
 	if(db == null)return new String[0][0];
-	String query = "SELECT " + field1 + "," + field2 + " FROM " + tableName;
-	return db.executeSelect(query);	 
+	return LookupCache.getRows(db, tableName, new String[]{field1, field2});
   }
   /**
    * This is just a convenience method to run a simple SELECT query
@@ -2264,8 +2748,7 @@ public class Editor
   public String[][] runSelectQuery(String tableName, String field1, String field2, String field3)
   {
     if(db == null)return new String[0][0];  
-	String query = "SELECT " + field1 + "," + field2 + "," + field3 + " FROM " + tableName;
-	return db.executeSelect(query);	 
+	return LookupCache.getRows(db, tableName, new String[]{field1, field2, field3});
   }
   /**
    * This is just a convenience method to run a simple SELECT query
@@ -2280,8 +2763,22 @@ public class Editor
   public String[][] runSelectQuery(String tableName, String field1, String field2, String field3, String field4)
   {
 	if(db == null)return new String[0][0];
-	String query = "SELECT " + field1 + "," + field2 + "," + field3 + "," + field4 + " FROM " + tableName;
-	return db.executeSelect(query);	 
+	return LookupCache.getRows(db, tableName, new String[]{field1, field2, field3, field4});
+  }
+  /**
+   * Get the list of options for a select dropdown combobox element, checkboxes or radio buttons,
+   * built from two fields in a table. Each option is a map holding a &quot;value&quot; and a &quot;label&quot;.
+   * The rows are held in the LookupCache, so the query isn't run on every request, and each call is given
+   * its own list, which may be modified, for example to add a blank option at the top.
+   * @param tableName
+   * @param valueField
+   * @param labelField
+   * @return An ArrayList of options
+   */
+  public ArrayList<LinkedHashMap<String,Object>> getOptions(String tableName, String valueField, String labelField)
+  {
+	if(db == null)return new ArrayList<LinkedHashMap<String,Object>>();
+	return LookupCache.getOptions(db, tableName, valueField, labelField);
   }
   
   private boolean isNumeric(String value)
@@ -0,0 +1,21 @@
+package com.tacticalenterprisesltd;
+
+/**
+ * This class contains the members required to return a response to the client
+ * side whenever a create, edit or delete operation fails while writing to the database,
+ * so that the Editor on the client side displays the error rather than the records.
+ * An instance of this class is passed to the constructor of an instance of GSon
+ * for processing as a JSON string.
+ * 
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public class ErrorOutput
+{
+	public String error = "";
+	
+	public ErrorOutput(String message)
+	{
+		error = message;
+	}
+}
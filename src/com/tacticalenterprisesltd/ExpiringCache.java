@@ -0,0 +1,213 @@
+package com.tacticalenterprisesltd;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small thread safe cache used internally by the JED library. Entries expire after their
+ * own time to live, and once the maximum number of entries has been reached the least
+ * recently used entry is discarded to make room for a new one. The number of hits and
+ * misses is recorded so the effectiveness of the cache can be reported.
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+class ExpiringCache<K,V>
+{
+	private int maxEntries;
+	private long hits = 0;
+	private long misses = 0;
+	private LinkedHashMap<K,Entry<V>> map;
+	
+	/**
+	 * Constructor
+	 * @param max The maximum number of entries held by the cache
+	 */
+	ExpiringCache(int max)
+	{
+		maxEntries = max;
+		//An access ordered map keeps the least recently used entry at the head
+		map = new LinkedHashMap<K,Entry<V>>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			protected boolean removeEldestEntry(Map.Entry<K,Entry<V>> eldest)
+			{
+				return size() > maxEntries;
+			}
+		};
+	}
+	
+	/**
+	 * Get the value held for the key, or null if there is none or it has expired.
+	 * @param key
+	 * @return V
+	 */
+	synchronized V get(K key)
+	{
+		Entry<V> entry = map.get(key);
+		if(entry != null && entry.expires < System.currentTimeMillis())
+		{
+			map.remove(key);
+			entry = null;
+		}
+		if(entry == null)
+		{
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.value;
+	}
+	
+	/**
+	 * Hold the value for the key for the number of milliseconds given.
+	 * A time to live of 0 or less means the value is not held at all.
+	 * @param key
+	 * @param value
+	 * @param timeToLive
+	 */
+	synchronized void put(K key, V value, long timeToLive)
+	{
+		if(timeToLive <= 0)
+		{
+			map.remove(key);
+			return;
+		}
+		map.put(key, new Entry<V>(value, System.currentTimeMillis() + timeToLive));
+	}
+	
+	/**
+	 * Replace the value held for the key, if there is one, without changing when it expires.
+	 * @param key
+	 * @param value
+	 * @return true if a value was replaced
+	 */
+	synchronized boolean replace(K key, V value)
+	{
+		Entry<V> entry = map.get(key);
+		if(entry == null)
+			return false;
+		entry.value = value;
+		return true;
+	}
+	
+	/**
+	 * Remove the value held for the key
+	 * @param key
+	 */
+	synchronized void remove(K key)
+	{
+		map.remove(key);
+	}
+	
+	/**
+	 * Remove every value whose key matches the filter
+	 * @param filter
+	 * @return The number of values removed
+	 */
+	synchronized int removeAll(KeyFilter<K> filter)
+	{
+		int count = 0;
+		Iterator<K> it = map.keySet().iterator();
+		while(it.hasNext())
+		{
+			if(filter.matches(it.next()))
+			{
+				it.remove();
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Remove every value matching the filter
+	 * @param filter
+	 * @return The number of values removed
+	 */
+	synchronized int removeAllValues(ValueFilter<V> filter)
+	{
+		int count = 0;
+		Iterator<Entry<V>> it = map.values().iterator();
+		while(it.hasNext())
+		{
+			if(filter.matches(it.next().value))
+			{
+				it.remove();
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Remove all values
+	 */
+	synchronized void clear()
+	{
+		map.clear();
+	}
+	
+	/**
+	 * Get a copy of the values currently held, including any that have expired but not yet been discarded.
+	 * @return ArrayList
+	 */
+	synchronized ArrayList<V> values()
+	{
+		ArrayList<V> list = new ArrayList<V>(map.size());
+		for(Entry<V> entry : map.values())
+		{
+			list.add(entry.value);
+		}
+		return list;
+	}
+	
+	synchronized int size()
+	{
+		return map.size();
+	}
+	
+	synchronized long getHits()
+	{
+		return hits;
+	}
+	
+	synchronized long getMisses()
+	{
+		return misses;
+	}
+	
+	synchronized void resetStatistics()
+	{
+		hits = 0;
+		misses = 0;
+	}
+	
+	/**
+	 * Used to select the keys to be removed by removeAll(KeyFilter filter)
+	 */
+	interface KeyFilter<K>
+	{
+		boolean matches(K key);
+	}
+	
+	/**
+	 * Used to select the values to be removed by removeAllValues(ValueFilter filter)
+	 */
+	interface ValueFilter<V>
+	{
+		boolean matches(V value);
+	}
+	
+	private static class Entry<V>
+	{
+		private V value;
+		private long expires;
+		
+		private Entry(V val, long exp)
+		{
+			value = val;
+			expires = exp;
+		}
+	}
+}
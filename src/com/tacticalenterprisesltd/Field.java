@@ -646,6 +646,38 @@ public class Field
   {
 	  displayFunctionForSelect = false;
   }
+  
+  //Create a Field with the same definition and value, so that a Query can keep the value
+  //while this Field is set with the value of another record.
+  Field copy()
+  {
+	  Field field = new Field(tableName, dbField, name, fieldType);
+	  field.parentTableAlias = parentTableAlias;
+	  field.stringValue = stringValue;
+	  field.intValue = intValue;
+	  field.floatValue = floatValue;
+	  field.doubleValue = doubleValue;
+	  field.longValue = longValue;
+	  field.boolValue = boolValue;
+	  field.dbDateValue = dbDateValue;
+	  field.clientDateValue = clientDateValue;
+	  field.bigdecimalValue = bigdecimalValue;
+	  field.functionValue = functionValue;
+	  field.write = write;
+	  field.read = read;
+	  field.validator = validator;
+	  field.dateformat = dateformat;
+	  field.chosenDatePattern = chosenDatePattern;
+	  field.excludeOnOutput = excludeOnOutput;
+	  field.hasSubstituteField = hasSubstituteField;
+	  field.substituteField = substituteField;
+	  field.displayFunctionForSelect = displayFunctionForSelect;
+	  field.upload = upload;
+	  field.hasUpload = hasUpload;
+	  field.fileSize = fileSize;
+	  field.stream = stream;
+	  return field;
+  }
   @Override
   public String toString()
   {
@@ -0,0 +1,42 @@
+package com.tacticalenterprisesltd;
+
+/**
+ * The Dialect for H2 v1.4.200 or higher, which can run embedded in the application for testing and benchmarks.
+ * Records are paged with OFFSET and FETCH, the primary key of a new record is generated by an identity column, the columns of
+ * inserted and updated records are returned by selecting from a FINAL TABLE.
+ * The counts for server side processing use window functions by default.
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public class H2Dialect extends AbstractDialect
+{
+	/**
+	 * Without a host, the URL of an in-memory database is returned.
+	 */
+	public String getJdbcUrl(String host, String port, String dbName)
+	{
+		if(host == null || host.equals(""))
+			return "jdbc:h2:mem:" + dbName;
+		return "jdbc:h2:tcp://" + host + ":" + port + "/" + dbName;
+	}
+	
+	public boolean supportsBatchGeneratedKeys()
+	{
+		return true;
+	}
+	
+	public String getReturningInsert(String table, String columns, String values, String[] returnColumns)
+	{
+		return "SELECT " + joinColumns("", returnColumns) + " FROM FINAL TABLE (INSERT INTO " + table + " (" + columns + ") VALUES (" + values + "))";
+	}
+	
+	public String getReturningUpdate(String table, String set, String where, String[] returnColumns)
+	{
+		return "SELECT " + joinColumns("", returnColumns) + " FROM FINAL TABLE (UPDATE " + table + " SET " + set + where + ")";
+	}
+	
+	public Database.CountStrategy getDefaultCountStrategy()
+	{
+		return Database.CountStrategy.WINDOW_FUNCTION;
+	}
+}
@@ -1,6 +1,8 @@
 package com.tacticalenterprisesltd;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import org.apache.log4j.Logger;
 
@@ -126,6 +128,7 @@ public class Join
   private boolean excludeOnSelect = false;
   private boolean excludeOnOutput = false;
   private String[][] results = null;
+  private JoinIndex index = null;
   private String strArrayQuery = "";
   private boolean uploadQuery = false;
   
@@ -408,16 +411,15 @@ public class Join
 	  String query = "SELECT " + flds + " FROM " + childTableName + " WHERE " + childTableName + "." + pKey + "=" + id;
 	  if(Editor.isLoggingEnabled())
 			 logger.debug("Join.setFieldvalues - query: " + query);
-	  String[][] result = db.executeSelect(query);
-	  
-	  for(int i = 0; i < result.length; i++)
-	  {		  
-		  for(int j = 0; j < result[0].length; j++)
+	  db.executeSelect(query, new RowVisitor(){
+		  public void visitRow(String[] row)
 		  {
-			  field = fields.get(j);
-			  field.setValue(result[i][j], Field.DIRECTION.FROM_DB);
+			  for(int j = 0; j < row.length; j++)
+			  {
+				  fields.get(j).setValue(row[j], Field.DIRECTION.FROM_DB);
+			  }
 		  }
-	  }
+	  });
   }
   
   /**
@@ -462,78 +464,74 @@ public class Join
       flds = flds.substring(0, flds.length() - 1);
       strArrayQuery = "SELECT " + parentTableName + "." + reference.getPrimaryKey() + "," + flds + " FROM " + parentTableName + " " + toString() + " ORDER BY " + parentTableName + "." + reference.getPrimaryKey();
       logger.debug("Join.runJoinSelectQueryForStringArrays - query: " + strArrayQuery);
-      results = db.executeSelect(strArrayQuery);            
+      setResults(db.executeSelect(strArrayQuery));
   }
   
   protected void runJoinSelectQueryForUploads(Database db)
   {
       strArrayQuery = "SELECT " + parentTableName + "." + reference.getPrimaryKey() + "," + childTableName + "." + pKey + " FROM " + parentTableName + " " + toString() + " ORDER BY " + parentTableName + "." + reference.getPrimaryKey();
       logger.debug("Join.runJoinSelectQueryForUploads - query: " + strArrayQuery);
-      results = db.executeSelect(strArrayQuery); 
+      setResults(db.executeSelect(strArrayQuery));
+      uploadQuery = true;
+  }
+  
+  //Same as runJoinSelectQueryForStringArrays(Database db), but only for the parent records with the ids given
+  protected void runJoinSelectQueryForStringArrays(Database db, int[] ids)
+  {
+      String flds = "";
+      for (int i = 0; i < fields.size(); i++)
+      {
+          flds += fields.get(i).toString() + ",";
+      }
+      flds = flds.substring(0, flds.length() - 1);
+      setResults(runScopedJoinSelectQuery(db, "SELECT " + parentTableName + "." + reference.getPrimaryKey() + "," + flds + " FROM " + parentTableName + " " + toString(), ids));
+  }
+  
+  //Same as runJoinSelectQueryForUploads(Database db), but only for the parent records with the ids given
+  protected void runJoinSelectQueryForUploads(Database db, int[] ids)
+  {
+      setResults(runScopedJoinSelectQuery(db, "SELECT " + parentTableName + "." + reference.getPrimaryKey() + "," + childTableName + "." + pKey + " FROM " + parentTableName + " " + toString(), ids));
       uploadQuery = true;
   }
   
+  //Run the join query with a WHERE condition on the ids of the parent records, one query for each IN list the Dialect allows.
+  //The ids are sorted, so the rows of all the queries together remain in order by the id of the parent record.
+  private String[][] runScopedJoinSelectQuery(Database db, String select, int[] ids)
+  {
+      String pk = parentTableName + "." + reference.getPrimaryKey();
+      int[] sorted = ids.clone();
+      Arrays.sort(sorted);
+      String[] lists = db.getInLists(sorted);
+      ArrayList<String[]> rows = new ArrayList<String[]>();
+      for (int i = 0; i < lists.length; i++)
+      {
+          strArrayQuery = select + "WHERE " + pk + " IN (" + lists[i] + ") ORDER BY " + pk;
+          logger.debug("Join.runScopedJoinSelectQuery - query: " + strArrayQuery);
+          String[][] chunk = db.executeSelect(strArrayQuery);
+          if (chunk == null)
+          {
+              return null;
+          }
+          rows.addAll(Arrays.asList(chunk));
+      }
+      return rows.toArray(new String[rows.size()][]);
+  }
+  
   
 
+  //Keep the rows of the query, grouped by the id of the parent record
+  private void setResults(String[][] rows)
+  {
+      results = rows;
+      index = (rows != null ? new JoinIndex(rows) : null);
+  }
+  
   protected String[][] getResultsOfJoinSelectQuery()
   {
       return results;
   }
   
   
-  //Editor sets the values of the fields in this Join class prior to calling this method, assuming
-  //that each field's write member is true. 
-  protected void update(Database db, int id, Parameters params)
-  {	
-	try{
-	  if(usingLinkTable)
-	  {
-		  /*since we are dealing with a link table, and
-		   there could potentially be multiple instances of the parents
-		   primary key value within the table, to perform an update we
-		   need to first perform a delete of all records having the parent
-		   tables primary key.
-		  */
-		  int[] ids = new int[1];
-		  ids[0] = id;
-	      delete(db,ids);
-	      //Then we insert the appropriate values using insert queries.
-	      insert(db, id, params);
-	  }
-	  else
-	  {
-		  //Determine first if there is a record with the id value in the Child Table.
-		  //If there isn't, then we need to do an INSERT not an UPDATE.
-		  String strQuery = "SELECT COUNT(*) FROM " + childTableName + " WHERE " + cField + "=" + String.valueOf(id);		  
-		  String[][] response = db.executeSelect(strQuery);
-		  int resp = Integer.parseInt(response[0][0]);
-		  if(resp == 0)
-		  {
-			 insert(db, id, params); 
-		  }
-		  else
-		  {
-		    Query query = new Query(Query.Type.UPDATE, childTableName);
-		    query.setFields(this.getFields());		  
-		    Field pkfield = new Field(childTableName,cField,Field.Type.INT);
-		    WhereCondition[] where = new WhereCondition[1];
-		    where[0] = new WhereCondition(pkfield, id, "=");
-		    query.setWhereConditions(where);
-		    if(Editor.isLoggingEnabled())
-				 logger.debug("Join.update - query: " + query.toString());
-		    db.setQuery(query);
-		    db.executeInsertUpdate();
-		  }
-	  }
-	}
-	catch(Exception e)
-	{
-		if(Editor.isLoggingEnabled())
-		{
-	      logger.error(Editor.getFullStackTrace(e));
-		}
-	}
-  }
   /*
   protected void appendInsertUpdateOutput(Database db, BasicOutput out, Parameters params)
   {
@@ -630,32 +628,83 @@ public class Join
   }
   */
   
+  //Find which of the parent records with the ids given already have a record in the Child Table.
+  //Only used when this Join isn't using a link table.
+  protected HashSet<Integer> findChildRecords(Database db, int[] ids)
+  {
+	  HashSet<Integer> found = new HashSet<Integer>();
+	  String[] lists = db.getInLists(ids);
+	  for(int i = 0; i < lists.length; i++)
+	  {
+		  String strQuery = "SELECT " + cField + " FROM " + childTableName + " WHERE " + cField + " IN (" + lists[i] + ")";
+		  if(Editor.isLoggingEnabled())
+				 logger.debug("Join.findChildRecords - query: " + strQuery);
+		  String[][] response = db.executeSelect(strQuery);
+		  for(int j = 0; response != null && j < response.length; j++)
+		  {
+			  found.add(Integer.valueOf(response[j][0]));
+		  }
+	  }
+	  return found;
+  }
+  
+  //Create the queries that update the records of this Join for one parent record, so that they can be executed
+  //in the same transaction as those of the other parent records. Editor sets the values of the fields in this
+  //Join class prior to calling this method, and the queries keep copies of the fields.
+  protected Query[] createUpdateQueries(int id, Parameters params, boolean childRecordExists)
+  {
+	  if(usingLinkTable)
+	  {
+		  //Delete all the records having the parent tables primary key, then insert the appropriate values
+		  Query[] inserts = createLinkTableInserts(id, params);
+		  Query[] queries = new Query[inserts.length + 1];
+		  queries[0] = createLinkTableDelete(id);
+		  System.arraycopy(inserts, 0, queries, 1, inserts.length);
+		  return queries;
+	  }
+	  Field[] flds = null;
+	  Query query = null;
+	  if(childRecordExists)
+	  {
+		  query = new Query(Query.Type.UPDATE, childTableName);
+		  flds = new Field[fields.size()];
+		  for(int i = 0; i < fields.size(); i++)
+		  {
+			 flds[i] = fields.get(i).copy();
+		  }
+		  Field pkfield = new Field(childTableName,cField,Field.Type.INT);
+		  WhereCondition[] where = new WhereCondition[1];
+		  where[0] = new WhereCondition(pkfield, id, "=");
+		  query.setWhereConditions(where);
+	  }
+	  else
+	  {
+		  query = new Query(Query.Type.INSERT, childTableName);
+		  Field foreignKeyField = new Field(childTableName, cField, Field.Type.INT);
+		  foreignKeyField.setValue(String.valueOf(id),Field.DIRECTION.FROM_CLIENT);
+		  flds = new Field[fields.size() + 1];
+		  flds[0] = foreignKeyField;
+		  for(int i = 0; i < fields.size(); i++)
+		  {
+			 flds[i + 1] = fields.get(i).copy();
+		  }
+	  }
+	  query.setFields(flds);
+	  return new Query[]{query};
+  }
+  
   protected void insert(Database db, int id, Parameters params)
   {
 	try{  
 	  if(usingLinkTable)
 	  {
-		  Query query = new Query(Query.Type.INSERT, link_tableName);
-		  query.setAsLinkTable(true);
-		  Field linkParentField = new Field(link_tableName, pFields[1],Field.Type.INT);
-		  Field linkChildField = new Field(link_tableName,cFields[1],Field.Type.INT);
-		  Field[] fields = new Field[2];
-		  fields[0] = linkParentField;
-		  fields[1] = linkChildField;		  
-		  String[] values = params.getDataValues(id, childTableName);
-		  if(values != null)
+		  //All the link table records for the parent are written in one batch
+		  Query[] queries = createLinkTableInserts(id, params);
+		  if(queries.length > 0)
 		  {
-		    for(int i = 0; i < values.length; i++)
-		    {
-			  //Set the values for each field
-			  linkParentField.setValue(String.valueOf(id), Field.DIRECTION.FROM_CLIENT);
-			  linkChildField.setValue(values[i], Field.DIRECTION.FROM_CLIENT);
-		      query.setFields(fields);
-		      db.setQuery(query);
-			  db.executeInsertUpdate();
+			  db.executeInserts(queries);
 			  if(Editor.isLoggingEnabled())
-				 logger.debug("Join.insert - query: " + query);
-		    }	
+				 logger.debug("Join.insert - query: " + queries[0] + " x " + queries.length);
 		  }
 	  }
 	  else
@@ -688,21 +737,54 @@ public class Join
 	}
   }
   
+  //Create an INSERT query for each child value selected for the parent record in a link table.
+  //Each query has its own Fields, since the values are bound when the batch is executed.
+  private Query[] createLinkTableInserts(int id, Parameters params)
+  {
+	  String[] values = params.getDataValues(id, childTableName);
+	  if(values == null)
+	  {
+		  return new Query[0];
+	  }
+	  Query[] queries = new Query[values.length];
+	  for(int i = 0; i < values.length; i++)
+	  {
+		  Query query = new Query(Query.Type.INSERT, link_tableName);
+		  query.setAsLinkTable(true);
+		  Field linkParentField = new Field(link_tableName, pFields[1],Field.Type.INT);
+		  Field linkChildField = new Field(link_tableName,cFields[1],Field.Type.INT);
+		  //Set the values for each field
+		  linkParentField.setValue(String.valueOf(id), Field.DIRECTION.FROM_CLIENT);
+		  linkChildField.setValue(values[i], Field.DIRECTION.FROM_CLIENT);
+		  Field[] fields = new Field[2];
+		  fields[0] = linkParentField;
+		  fields[1] = linkChildField;
+		  query.setFields(fields);
+		  queries[i] = query;
+	  }
+	  return queries;
+  }
+  
+  //Create a DELETE query for all the records of the parent record in a link table.
+  private Query createLinkTableDelete(int id)
+  {
+	  Field linkParentField = new Field(link_tableName, pFields[1],Field.Type.INT);
+	  Query query = new Query(Query.Type.DELETE,link_tableName);
+	  WhereCondition[] where = new WhereCondition[1];
+	  where[0] = new WhereCondition(linkParentField, id, "=");
+	  query.setWhereConditions(where);
+	  return query;
+  }
+  
   protected void delete(Database db,int[] ids)
   {
 	  try{
 	    if(usingLinkTable)
 	    {
 		  Query[] queries = new Query[ids.length];
-		  Query query = null;
-		  Field linkParentField = new Field(link_tableName, pFields[1],Field.Type.INT);
 		  for(int i = 0; i < ids.length; i++)
 		  {
-			query = new Query(Query.Type.DELETE,link_tableName);
-			WhereCondition[] where = new WhereCondition[1];
-			where[0] = new WhereCondition(linkParentField, ids[i], "=");
-			query.setWhereConditions(where);
-			queries[i] = query;
+			queries[i] = createLinkTableDelete(ids[i]);
 		  }
 		  db.executeDeletes(queries); 		  		  
 	    }
@@ -732,74 +814,8 @@ public class Join
   }
   
  
-  //Check out this article on binary search by Josh Block:
-  //http://googleresearch.blogspot.ca/2006/06/extra-extra-read-all-about-it-nearly.html
-  //A negative value will be return if the key is not found!
-  private int binarySearch(String[][] data, int key)
-  {
-	  int low = 0;
-	  try{  
-	  int high = data.length - 1;
-	  int mid = -1;
-	  int midVal = -1;
-	  
-	    while(low <= high)
-	    {
-		  //mid = low + ((high - low) / 2); //Another optional fix to the bug
-		  mid = (low + high) >>> 1;
-		  midVal = Integer.parseInt(data[mid][0]);
-		  if (midVal < key)
-		    low = mid + 1;
-		  else if (midVal > key)
-			high = mid - 1;
-		  else
-			return mid; // key found
-	    }	    
-	  }
-	  catch(Exception e)
-	  {
-		  if(Editor.isLoggingEnabled())
-		  {
-		      logger.error(Editor.getFullStackTrace(e));
-		  }
-	  }
-	  return -(low + 1);  // key not found.
-  }
-  //Check out this article on binary search by Josh Block:
-  //http://googleresearch.blogspot.ca/2006/06/extra-extra-read-all-about-it-nearly.html
-  //A negative value will be return if the key is not found!
-  private int binarySearch(String[][] data, int key, int lowerbound, int upperbound)
-  {
-	  int low = lowerbound;
-	  int high = upperbound;
-	  int mid = -1;
-	  int midVal = -1;
-	  try{
-	    while(low <= high)
-	    {
-		  //mid = low + ((high - low) / 2); //Another optional fix to the bug
-		  mid = (low + high) >>> 1;
-		  midVal = Integer.parseInt(data[mid][0]);
-		  if (midVal < key)
-		    low = mid + 1;
-		  else if (midVal > key)
-			high = mid - 1;
-		  else
-			return mid; // key found
-	    }	    
-	  }
-	  catch(NumberFormatException nfe)
-	  {
-		  if(Editor.isLoggingEnabled())
-		  {
-		      logger.error(Editor.getFullStackTrace(nfe));
-		  }
-	  }
-	  return -(low + 1);  // key not found.
-  }
-  
-  //The 2D array data should be in order by the first column of ids, therefore, we can 
-  //perform a binary search to find what we need that much faster.
+  //The rows of the data are grouped by the id of the parent record once, by the JoinIndex built when the query is run,
+  //so the child records of each parent record are found without searching the data.
   protected ArrayList<LinkedHashMap<String,Object>> getArrayFieldValues(String id, String[][] data)throws NullPointerException
   {	  
 	  if(data == null)
@@ -809,133 +825,44 @@ public class Join
                   "A query is generally processed prior to this method being called. If the query fails, it is generally due to a mispelling of a table or field.\n" +
                   "Following is the query that was attempted: \n\n" + strArrayQuery + "\n\n");
       }
-	  
-	  /*Print the data
-	  for(int i = 0; i < data.length; i++)
+	  if(data != results || index == null)
 	  {
-		  for(int j = 0; j < data[0].length; j++)
-		  {
-			  System.out.print("data[" + i + "][" + j + "]: " + data[i][j] + " | ");
-		  }
-		  System.out.println();
+		  index = new JoinIndex(data);
+		  results = data;
 	  }
-	  */
-	  ArrayList<LinkedHashMap<String,Object>> list = new ArrayList<LinkedHashMap<String,Object>>();
-	  
-	  if(uploadQuery)
+	  try
 	  {
-		  int index = 0;
-		  //int count = 0;
-		  LinkedHashMap<String,Object> temp = null; 
-		  index = binarySearch(data, Integer.parseInt(id));
-		          
-		  if(index > -1)
+		  return getArrayFieldValues(Integer.parseInt(id));
+	  }
+	  catch(NumberFormatException nfe)
+	  {
+		  if(Editor.isLoggingEnabled())
 		  {
-			//Get this particular one
-			temp = new LinkedHashMap<String,Object>();
-			for(int j = 1; j < data[0].length; j++)
-			{
-			  temp.put(pKey,data[index][j]);
-			  //count++;			    
-			}
-			//count = 0;//reset
-			list.add(temp);
-			  
-			// search left		  
-			for(int i = index -1; i >= 0; i--)
-			{
-			  if(data[i][0].equals(id))
-			  {
-				  temp = new LinkedHashMap<String,Object>();
-			      for(int j = 1; j < data[0].length; j++)
-				  {
-				     temp.put(pKey,data[i][j]);
-				     //count++;			    
-				  }
-				  //count = 0;//reset
-				  list.add(temp);
-			  }
-			  else
-				  break;
-			}
-			  		  
-		    // search right
-			for(int i = index + 1; i < data.length; i++)
-			{
-			  if(data[i][0].equals(id))
-			  {
-				  temp = new LinkedHashMap<String,Object>();
-			      for(int j = 1; j < data[0].length; j++)
-				  {
-				     temp.put(pKey,data[i][j]);
-				     //count++;			    
-				  }
-				  //count = 0;//reset
-				  list.add(temp);
-			  }
-			  else
-				  break;
-			}
-		  }  
+		      logger.error(Editor.getFullStackTrace(nfe));
+		  }
+		  return new ArrayList<LinkedHashMap<String,Object>>();
 	  }
-	  else
+  }
+  
+  //Same as getArrayFieldValues(String id, String[][] data), for the results of the query last run by this Join
+  protected ArrayList<LinkedHashMap<String,Object>> getArrayFieldValues(int id)
+  {
+	  ArrayList<LinkedHashMap<String,Object>> list = new ArrayList<LinkedHashMap<String,Object>>();
+	  int group = index.find(id);
+	  if(group < 0)
+		  return list;
+	  LinkedHashMap<String,Object> temp = null;
+	  String[] row = null;
+	  for(int i = index.getStart(group); i < index.getEnd(group); i++)
 	  {
-	    
-	    int index = 0;
-	    int count = 0;
-	    LinkedHashMap<String,Object> temp = null; 
-	    index = binarySearch(data, Integer.parseInt(id));
-	          
-	    if(index > -1)
-	    {
-		  //Get this particular one
+		  row = index.getRow(i);
 		  temp = new LinkedHashMap<String,Object>();
-		  for(int j = 1; j < data[0].length; j++)
+		  for(int j = 1; j < row.length; j++)
 		  {
-		    temp.put(fields.get(count).getName(),data[index][j]);
-		    count++;			    
+			  temp.put(uploadQuery ? pKey : fields.get(j - 1).getName(), row[j]);
 		  }
-		  count = 0;//reset
 		  list.add(temp);
-		  
-		  // search left		  
-		  for(int i = index -1; i >= 0; i--)
-		  {
-			  if(data[i][0].equals(id))
-			  {
-				  temp = new LinkedHashMap<String,Object>();
-		          for(int j = 1; j < data[0].length; j++)
-		   		  {
-		   		     temp.put(fields.get(count).getName(),data[i][j]);
-		   		     count++;			    
-		   		  }
-		   		  count = 0;//reset
-		   		  list.add(temp);
-			  }
-			  else
-				  break;
-		  }
-		  		  
-	      // search right
-		  for(int i = index + 1; i < data.length; i++)
-		  {
-			  if(data[i][0].equals(id))
-			  {
-				  temp = new LinkedHashMap<String,Object>();
-		          for(int j = 1; j < data[0].length; j++)
-		   		  {
-		   		     temp.put(fields.get(count).getName(),data[i][j]);
-		   		     count++;			    
-		   		  }
-		   		  count = 0;//reset
-		   		  list.add(temp);
-			  }
-			  else
-				  break;
-		  }
-	    }
 	  }
-	  
 	  return list;
   }
   /**
@@ -0,0 +1,131 @@
+package com.tacticalenterprisesltd;
+
+/**
+ * The JoinIndex groups the rows of a Join query using a link table by the id of the parent record, held in the first column,
+ * so that the child records of any parent record are found in constant time. The ids are parsed once, when the index is
+ * built, and are held in an open addressing hash table of int keys, mapping each id to a contiguous slice of the rows.
+ * Within a slice, the rows remain in the order in which they were obtained from the database.<br><br>
+ * A row whose first column isn't a whole number is left out of the index.
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+class JoinIndex
+{
+	private String[][] rows;
+	private int[] keys;
+	private int[] groups;
+	private int[] starts;
+	private int mask;
+
+	/**
+	 * Constructor
+	 * @param data The rows of the Join query, with the id of the parent record in the first column
+	 */
+	JoinIndex(String[][] data)
+	{
+		int[] ids = new int[data.length];
+		int[] groupOf = new int[data.length];
+		//Twice as many slots as rows, so probes stay short even if every row has its own id
+		int capacity = Integer.highestOneBit(Math.max(data.length, 1) * 2 - 1) << 1;
+		mask = capacity - 1;
+		keys = new int[capacity];
+		groups = new int[capacity];
+		int[] counts = new int[data.length + 1];
+		int groupCount = 0;
+		for(int i = 0; i < data.length; i++)
+		{
+			try
+			{
+				ids[i] = Integer.parseInt(data[i][0]);
+			}
+			catch(NumberFormatException nfe)
+			{
+				groupOf[i] = -1;
+				continue;
+			}
+			int slot = slotOf(ids[i]);
+			if(groups[slot] == 0)
+			{
+				//Groups are numbered from 1 in the table, so that 0 marks an empty slot
+				keys[slot] = ids[i];
+				groups[slot] = ++groupCount;
+			}
+			groupOf[i] = groups[slot] - 1;
+			counts[groupOf[i]]++;
+		}
+		//Lay the rows of each group out one after another
+		starts = new int[groupCount + 1];
+		for(int g = 0; g < groupCount; g++)
+		{
+			starts[g + 1] = starts[g] + counts[g];
+		}
+		rows = new String[starts[groupCount]][];
+		int[] next = new int[groupCount];
+		for(int i = 0; i < data.length; i++)
+		{
+			if(groupOf[i] > -1)
+			{
+				rows[starts[groupOf[i]] + next[groupOf[i]]++] = data[i];
+			}
+		}
+	}
+
+	/**
+	 * Find the group of rows of a parent record
+	 * @param id The id of the parent record
+	 * @return The number of the group, or -1 if there are no rows for the id
+	 */
+	int find(int id)
+	{
+		int slot = slotOf(id);
+		return groups[slot] - 1;
+	}
+
+	/**
+	 * Get the position of the first row of a group
+	 * @param group
+	 * @return int
+	 */
+	int getStart(int group)
+	{
+		return starts[group];
+	}
+
+	/**
+	 * Get the position following the last row of a group
+	 * @param group
+	 * @return int
+	 */
+	int getEnd(int group)
+	{
+		return starts[group + 1];
+	}
+
+	/**
+	 * Get a row
+	 * @param position The position of the row, from getStart(int group) up to getEnd(int group)
+	 * @return String[]
+	 */
+	String[] getRow(int position)
+	{
+		return rows[position];
+	}
+
+	//The slot holding the id, or the empty slot where it belongs, found by linear probing
+	private int slotOf(int id)
+	{
+		int slot = mix(id) & mask;
+		while(groups[slot] != 0 && keys[slot] != id)
+		{
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	//Spread the bits of ids that follow one another over the whole table
+	private static int mix(int id)
+	{
+		int h = id * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,108 @@
+package com.tacticalenterprisesltd;
+
+/**
+ * The KeysetBookmarks remember, for a Query using keyset pagination, the values of the ORDER BY columns and
+ * the primary key of the last record on each page that has been selected. When the following page is requested
+ * the Database class supplies those values to the Query, so the database can seek directly to the first
+ * record of that page instead of reading and discarding every record before the offset.<br><br>
+ * A bookmark is identified by the name of the database, the parent table, a fingerprint of the query (joins,
+ * WHERE conditions and their values, and order) and the offset of the page it leads to. Bookmarks for a table are
+ * discarded whenever records are inserted or deleted through the Database class, so that pages continue to line
+ * up with their offsets.
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public class KeysetBookmarks
+{
+	/** The default number of milliseconds a bookmark is held: 10 minutes */
+	public static final long DEFAULT_TIME_TO_LIVE = 600000;
+	
+	private static long timeToLive = DEFAULT_TIME_TO_LIVE;
+	private static ExpiringCache<String,Object[]> cache = new ExpiringCache<String,Object[]>(10000);
+	
+	private KeysetBookmarks()
+	{
+		
+	}
+	
+	/**
+	 * Set the number of milliseconds a bookmark is held. The default is DEFAULT_TIME_TO_LIVE.
+	 * @param milliseconds
+	 */
+	public static void setTimeToLive(long milliseconds)
+	{
+		timeToLive = milliseconds;
+	}
+	/**
+	 * Get the number of milliseconds a bookmark is held.
+	 * @return long
+	 */
+	public static long getTimeToLive()
+	{
+		return timeToLive;
+	}
+	
+	/**
+	 * Get the key values of the last record preceding the offset
+	 * @param dbName
+	 * @param query
+	 * @param offset
+	 * @return An Object[] array, or null if the page preceding the offset has not been selected.
+	 */
+	protected static Object[] get(String dbName, Query query, int offset)
+	{
+		return cache.get(key(dbName, query, offset));
+	}
+	
+	/**
+	 * Remember the key values of the last record preceding the offset. Nothing is remembered
+	 * if any of the values are null, since records cannot be sought past a null value.
+	 * @param dbName
+	 * @param query
+	 * @param offset
+	 * @param values
+	 */
+	protected static void put(String dbName, Query query, int offset, Object[] values)
+	{
+		for(int i = 0; i < values.length; i++)
+		{
+			if(values[i] == null)
+				return;
+		}
+		cache.put(key(dbName, query, offset), values, timeToLive);
+	}
+	
+	/**
+	 * Discard all bookmarks for the table.
+	 * @param dbName
+	 * @param table
+	 */
+	public static void invalidate(String dbName, String table)
+	{
+		final String prefix = prefix(dbName, table);
+		cache.removeAll(new ExpiringCache.KeyFilter<String>(){
+			public boolean matches(String key)
+			{
+				return key.startsWith(prefix);
+			}
+		});
+	}
+	
+	/**
+	 * Discard all bookmarks.
+	 */
+	public static void clear()
+	{
+		cache.clear();
+	}
+	
+	private static String prefix(String dbName, String table)
+	{
+		return (dbName + "." + table).toLowerCase() + "|";
+	}
+	
+	private static String key(String dbName, Query query, int offset)
+	{
+		return prefix(dbName, query.getParentTable()) + query.getKeysetFingerprint() + "|" + offset;
+	}
+}
@@ -0,0 +1,271 @@
+package com.tacticalenterprisesltd;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * The LookupCache holds the rows of the lookup queries run by Editor.runSelectQuery(...) and the option lists built from
+ * them by Editor.getOptions(...), the values used to fill select boxes, checkboxes and radio buttons on the client side.
+ * These queries read an entire table on every request, including every draw of server side processing, although the
+ * table rarely changes. The cache is shared by every instance of Editor within the application, and each lookup is identified
+ * by the name of the database, the table and the fields selected.<br><br>
+ * Each lookup is held for the time to live of its table, which is DEFAULT_TIME_TO_LIVE unless set otherwise by calling
+ * setTimeToLive(String dbName, String table, long milliseconds). Inserts, updates and deletes performed through the Database class,
+ * which includes those of the Editor, Join and Upload classes, discard the lookups of the table written to. Records written by
+ * some other application are only noticed once the lookup expires, or when invalidate(String dbName, String table) is called.<br><br>
+ * Every caller is given its own copy of the rows and option lists, which it may modify without affecting the cache.
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public class LookupCache
+{
+	/** The default number of milliseconds a lookup is held: 60 seconds */
+	public static final long DEFAULT_TIME_TO_LIVE = 60000;
+	/** The default maximum number of lookups held */
+	public static final int DEFAULT_MAX_ENTRIES = 200;
+	/** The default maximum number of rows a lookup may have to be held */
+	public static final int DEFAULT_MAX_ROWS = 10000;
+	
+	private static ExpiringCache<String,Lookup> cache = new ExpiringCache<String,Lookup>(DEFAULT_MAX_ENTRIES);
+	private static HashMap<String,Long> timesToLive = new HashMap<String,Long>();
+	private static long defaultTimeToLive = DEFAULT_TIME_TO_LIVE;
+	private static int maxEntries = DEFAULT_MAX_ENTRIES;
+	private static int maxRows = DEFAULT_MAX_ROWS;
+	
+	private LookupCache()
+	{
+		
+	}
+	
+	/**
+	 * Set the number of milliseconds a lookup is held for tables which have no time to live of their own.
+	 * Use 0 to run lookups on every request. The default is DEFAULT_TIME_TO_LIVE.
+	 * @param milliseconds
+	 */
+	public static synchronized void setDefaultTimeToLive(long milliseconds)
+	{
+		defaultTimeToLive = milliseconds;
+	}
+	/**
+	 * Get the number of milliseconds a lookup is held for tables which have no time to live of their own.
+	 * @return long
+	 */
+	public static synchronized long getDefaultTimeToLive()
+	{
+		return defaultTimeToLive;
+	}
+	/**
+	 * Set the number of milliseconds the lookups of a table are held. Use 0 to run the lookups of the table
+	 * on every request, or a negative value to use the default time to live again.
+	 * @param dbName
+	 * @param table
+	 * @param milliseconds
+	 */
+	public static void setTimeToLive(String dbName, String table, long milliseconds)
+	{
+		synchronized(LookupCache.class)
+		{
+			if(milliseconds < 0)
+				timesToLive.remove(tag(dbName, table));
+			else
+				timesToLive.put(tag(dbName, table), Long.valueOf(milliseconds));
+		}
+		invalidate(dbName, table);
+	}
+	/**
+	 * Get the number of milliseconds the lookups of a table are held.
+	 * @param dbName
+	 * @param table
+	 * @return long
+	 */
+	public static synchronized long getTimeToLive(String dbName, String table)
+	{
+		Long ttl = timesToLive.get(tag(dbName, table));
+		return (ttl != null ? ttl.longValue() : defaultTimeToLive);
+	}
+	/**
+	 * Set the maximum number of lookups held. Any lookups already held are discarded.
+	 * The default is DEFAULT_MAX_ENTRIES.
+	 * @param entries
+	 */
+	public static synchronized void setMaxEntries(int entries)
+	{
+		if(entries < 1)
+		{
+			throw new IllegalArgumentException("The maximum number of entries must be at least 1.");
+		}
+		maxEntries = entries;
+		cache = new ExpiringCache<String,Lookup>(entries);
+	}
+	/**
+	 * Get the maximum number of lookups held.
+	 * @return int
+	 */
+	public static synchronized int getMaxEntries()
+	{
+		return maxEntries;
+	}
+	/**
+	 * Set the maximum number of rows a lookup may have to be held. The default is DEFAULT_MAX_ROWS.
+	 * @param rows
+	 */
+	public static synchronized void setMaxRows(int rows)
+	{
+		maxRows = rows;
+	}
+	/**
+	 * Get the maximum number of rows a lookup may have to be held.
+	 * @return int
+	 */
+	public static synchronized int getMaxRows()
+	{
+		return maxRows;
+	}
+	
+	/**
+	 * Get the rows selected from the table, running the query only if they are not held.
+	 * @param db
+	 * @param table
+	 * @param fields
+	 * @return A 2D String[][] array, which is a copy the caller may modify
+	 */
+	static String[][] getRows(Database db, String table, String[] fields)
+	{
+		return copy(getLookup(db, table, fields).rows);
+	}
+	
+	/**
+	 * Get the option list built from the first two fields selected from the table, running the query only if it is not held.
+	 * @param db
+	 * @param table
+	 * @param valueField
+	 * @param labelField
+	 * @return An ArrayList of maps holding a &quot;value&quot; and a &quot;label&quot;, built for the caller, which may modify it
+	 */
+	static ArrayList<LinkedHashMap<String,Object>> getOptions(Database db, String table, String valueField, String labelField)
+	{
+		String[][] rows = getLookup(db, table, new String[]{valueField, labelField}).rows;
+		ArrayList<LinkedHashMap<String,Object>> list = new ArrayList<LinkedHashMap<String,Object>>(rows.length);
+		LinkedHashMap<String,Object> row = null;
+		for(int i = 0; i < rows.length; i++)
+		{
+			row = new LinkedHashMap<String,Object>();
+			row.put("value", rows[i][0]);
+			row.put("label", rows[i][1]);
+			list.add(row);
+		}
+		return list;
+	}
+	
+	/**
+	 * Discard every lookup of the table, so it is run again on the next request.
+	 * @param dbName
+	 * @param table
+	 */
+	public static void invalidate(String dbName, String table)
+	{
+		final String tag = tag(dbName, table);
+		getCache().removeAllValues(new ExpiringCache.ValueFilter<Lookup>(){
+			public boolean matches(Lookup lookup)
+			{
+				return lookup.tag.equals(tag);
+			}
+		});
+	}
+	
+	/**
+	 * Discard all lookups.
+	 */
+	public static void clear()
+	{
+		getCache().clear();
+	}
+	
+	/**
+	 * Get the number of lookups currently held.
+	 * @return int
+	 */
+	public static int size()
+	{
+		return getCache().size();
+	}
+	/**
+	 * Get the number of times a lookup was found in the cache.
+	 * @return long
+	 */
+	public static long getHits()
+	{
+		return getCache().getHits();
+	}
+	/**
+	 * Get the number of times a lookup was not found in the cache.
+	 * @return long
+	 */
+	public static long getMisses()
+	{
+		return getCache().getMisses();
+	}
+	
+	private static synchronized ExpiringCache<String,Lookup> getCache()
+	{
+		return cache;
+	}
+	
+	private static Lookup getLookup(Database db, String table, String[] fields)
+	{
+		String tag = tag(db.name, table);
+		String key = tag + "|" + join(fields);
+		//The records of a table written within the active unit of work have not been committed
+		boolean cacheable = (db.isUncommitted(new String[]{table}) == false);
+		Lookup lookup = (cacheable ? getCache().get(key) : null);
+		if(lookup != null)
+			return lookup;
+		String[][] rows = db.executeSelect("SELECT " + join(fields) + " FROM " + table);
+		lookup = new Lookup(tag, rows);
+		long ttl = getTimeToLive(db.name, table);
+		if(cacheable && ttl > 0 && rows.length <= getMaxRows() && db.isSelectCompleted())
+		{
+			getCache().put(key, lookup, ttl);
+		}
+		return lookup;
+	}
+	
+	private static String join(String[] fields)
+	{
+		String temp = "";
+		for(int i = 0; i < fields.length; i++)
+		{
+			temp += (i > 0 ? "," : "") + fields[i];
+		}
+		return temp;
+	}
+	
+	private static String tag(String dbName, String table)
+	{
+		return (dbName + "." + table).toLowerCase();
+	}
+	
+	private static String[][] copy(String[][] rows)
+	{
+		String[][] temp = new String[rows.length][];
+		for(int i = 0; i < rows.length; i++)
+		{
+			temp[i] = rows[i].clone();
+		}
+		return temp;
+	}
+	
+	//The rows of a lookup
+	private static class Lookup
+	{
+		private String tag;
+		private String[][] rows;
+		
+		private Lookup(String t, String[][] data)
+		{
+			tag = t;
+			rows = data;
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package com.tacticalenterprisesltd;
+
+/**
+ * The Dialect for MySQL v5.0 or higher. Records are paged with LIMIT, and the primary key of a new record is generated
+ * by an AUTO_INCREMENT column.
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public class MySQLDialect extends AbstractDialect
+{
+	public String getJdbcUrl(String host, String port, String dbName)
+	{
+		return "jdbc:mysql://" + host + ":" + port + "/" + dbName;
+	}
+	
+	public String getLimitClause(boolean offset, boolean limit)
+	{
+		if(limit == false)
+		{
+			//MySQL has no OFFSET without LIMIT, so the largest possible limit is used
+			return (offset ? " LIMIT ?, 18446744073709551615" : "");
+		}
+		if(offset == false)
+			return " LIMIT ?";
+		return " LIMIT ?, ?";
+	}
+	
+	/**
+	 * A value of 0 causes MySQL to generate the value of an AUTO_INCREMENT column.
+	 */
+	public String getInsertIdValue(String table)
+	{
+		return "0";
+	}
+	
+	/**
+	 * Connector/J returns the value generated for every record of a batch.
+	 */
+	public boolean supportsBatchGeneratedKeys()
+	{
+		return true;
+	}
+}
@@ -0,0 +1,68 @@
+package com.tacticalenterprisesltd;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * The Dialect for Oracle v12c or higher. Records are paged with OFFSET and FETCH, and the primary key of a new record
+ * is taken from a sequence named after its table, such as EMPLOYEES_SEQ, unless identity columns are used. The value
+ * generated is retrieved by naming the primary key column when the INSERT is prepared.
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public class OracleDialect extends AbstractDialect
+{
+	private boolean identityColumns = false;
+	
+	/**
+	 * Set to true when the primary keys are identity columns (GENERATED AS IDENTITY) rather than being taken from sequences.
+	 * The default is false.
+	 * @param value
+	 */
+	public void setUseIdentityColumns(boolean value)
+	{
+		identityColumns = value;
+	}
+	/**
+	 * Inquire if the primary keys are identity columns rather than being taken from sequences.
+	 * @return true or false
+	 */
+	public boolean isUsingIdentityColumns()
+	{
+		return identityColumns;
+	}
+	
+	public String getJdbcUrl(String host, String port, String dbName)
+	{
+		return "jdbc:oracle:thin:@" + host + ":" + port + ":" + dbName;
+	}
+	
+	public boolean isNullSortedHigh()
+	{
+		return true;
+	}
+	
+	public String getInsertIdValue(String table)
+	{
+		if(identityColumns)
+			return null;
+		return getSequenceName(table) + ".NEXTVAL";
+	}
+	
+	public PreparedStatement prepareInsert(Connection connection, String sql, String primaryKey) throws SQLException
+	{
+		return connection.prepareStatement(sql, new String[]{primaryKey});
+	}
+	
+	/**
+	 * Get the name of the sequence providing the primary keys of a table. Override this method
+	 * if the sequences are not named after their tables followed by _SEQ.
+	 * @param table
+	 * @return String
+	 */
+	protected String getSequenceName(String table)
+	{
+		return table.toUpperCase() + "_SEQ";
+	}
+}
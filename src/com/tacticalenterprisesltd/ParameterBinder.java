@@ -0,0 +1,353 @@
+package com.tacticalenterprisesltd;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import org.apache.log4j.Logger;
+
+/**
+ * The ParameterBinder binds the values of a Query to the parameter markers of its PreparedStatement. The type of each
+ * Field and WhereCondition is looked up once, when the ParameterBinder is created for the structure of the Query, and a
+ * setter is chosen for it, so binding the values only calls the setter of each parameter in turn. Queries producing the same
+ * SQL share the same structure, so the ParameterBinder of the first can bind the values of every Query in a batch.<br><br>
+ * The Fields of an INSERT or UPDATE are bound first, followed by the values of any WhereConditions with a parameter marker.
+ * Conditions without one, such as IS NULL, are skipped.
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+class ParameterBinder
+{
+	private static Logger logger = Logger.getLogger(ParameterBinder.class);
+	
+	private static final ValueSetter STRING = new ValueSetter(){
+		public void set(PreparedStatement statement, int index, Object value) throws SQLException
+		{
+			if(value == null)
+				statement.setNull(index, Types.NULL);
+			else
+				statement.setString(index, (String)value);
+		}
+	};
+	
+	private static final ValueSetter INT = new ValueSetter(){
+		public void set(PreparedStatement statement, int index, Object value) throws SQLException
+		{
+			if(value == null)
+				statement.setNull(index, Types.NULL);
+			else
+				statement.setInt(index, ((Integer)value).intValue());
+		}
+	};
+	
+	private static final ValueSetter FLOAT = new ValueSetter(){
+		public void set(PreparedStatement statement, int index, Object value) throws SQLException
+		{
+			if(value == null)
+				statement.setNull(index, Types.NULL);
+			else
+				statement.setFloat(index, ((Float)value).floatValue());
+		}
+	};
+	
+	private static final ValueSetter DOUBLE = new ValueSetter(){
+		public void set(PreparedStatement statement, int index, Object value) throws SQLException
+		{
+			if(value == null)
+				statement.setNull(index, Types.NULL);
+			else
+				statement.setDouble(index, ((Double)value).doubleValue());
+		}
+	};
+	
+	private static final ValueSetter LONG = new ValueSetter(){
+		public void set(PreparedStatement statement, int index, Object value) throws SQLException
+		{
+			if(value == null)
+				statement.setNull(index, Types.NULL);
+			else
+				statement.setLong(index, ((Long)value).longValue());
+		}
+	};
+	
+	private static final ValueSetter BIGDECIMAL = new ValueSetter(){
+		public void set(PreparedStatement statement, int index, Object value) throws SQLException
+		{
+			if(value == null)
+				statement.setNull(index, Types.NULL);
+			else
+				statement.setBigDecimal(index, (BigDecimal)value);
+		}
+	};
+	
+	private static final ValueSetter BOOLEAN = new ValueSetter(){
+		public void set(PreparedStatement statement, int index, Object value) throws SQLException
+		{
+			if(value == null)
+				statement.setNull(index, Types.NULL);
+			else
+				statement.setBoolean(index, ((Boolean)value).booleanValue());
+		}
+	};
+	
+	//The value of a DBFUNCTION condition may be of any type
+	private static final ValueSetter OBJECT = new ValueSetter(){
+		public void set(PreparedStatement statement, int index, Object value) throws SQLException
+		{
+			if(value == null)
+				statement.setNull(index, Types.NULL);
+			else if(value instanceof Integer)
+				statement.setInt(index, ((Integer)value).intValue());
+			else if(value instanceof Long)
+				statement.setLong(index, ((Long)value).longValue());
+			else if(value instanceof Double)
+				statement.setDouble(index, ((Double)value).doubleValue());
+			else if(value instanceof Float)
+				statement.setFloat(index, ((Float)value).floatValue());
+			else if(value instanceof BigDecimal)
+				statement.setBigDecimal(index, (BigDecimal)value);
+			else if(value instanceof Boolean)
+				statement.setBoolean(index, ((Boolean)value).booleanValue());
+			else if(value instanceof String)
+				statement.setString(index, (String)value);
+			else
+				statement.setObject(index, value);
+		}
+	};
+	
+	//We don't want to use the setDate(...) method as it expects
+	//a java.sql.Date returned which doesn't allow for any time stamp.
+	//Let the database perform the conversion from String to Date type.
+	private static final FieldSetter DATE_FIELD = new FieldSetter(){
+		public void set(PreparedStatement statement, int index, Field field) throws SQLException
+		{
+			Object value = field.getDBDateValue();
+			if(value instanceof Integer)
+			{
+				if(((Integer)value).intValue() == Types.NULL)
+					statement.setString(index, "null");
+			}
+			else
+			{
+				statement.setString(index, (String)value);
+			}
+		}
+		
+		public Object getValue(Field field)
+		{
+			return field.getDBDateValue();
+		}
+	};
+	
+	private static final FieldSetter FILE_FIELD = new FieldSetter(){
+		public void set(PreparedStatement statement, int index, Field field) throws SQLException
+		{
+			InputStream is = (field.hasInputStream() ? field.getFileInputStream() : null);
+			if(is != null)
+				statement.setBinaryStream(index, is, field.getFileSizeInBytes());
+			else
+				statement.setNull(index, Types.NULL);
+		}
+		
+		public Object getValue(Field field)
+		{
+			return Constants.BINARYDATA;
+		}
+	};
+	
+	private static final FieldSetter STRING_FIELD = new ValueFieldSetter(STRING);
+	private static final FieldSetter INT_FIELD = new ValueFieldSetter(INT);
+	private static final FieldSetter FLOAT_FIELD = new ValueFieldSetter(FLOAT);
+	private static final FieldSetter DOUBLE_FIELD = new ValueFieldSetter(DOUBLE);
+	private static final FieldSetter LONG_FIELD = new ValueFieldSetter(LONG);
+	private static final FieldSetter BIGDECIMAL_FIELD = new ValueFieldSetter(BIGDECIMAL);
+	private static final FieldSetter BOOLEAN_FIELD = new ValueFieldSetter(BOOLEAN);
+	
+	private FieldSetter[] fieldSetters;
+	private int[] conditions;
+	private ValueSetter[] conditionSetters;
+	
+	/**
+	 * Constructor
+	 * @param fields The Fields of an INSERT or UPDATE, or null
+	 * @param where The WhereConditions, or null
+	 */
+	ParameterBinder(Field[] fields, WhereCondition[] where)
+	{
+		int count = (fields != null ? fields.length : 0);
+		fieldSetters = new FieldSetter[count];
+		for(int i = 0; i < count; i++)
+		{
+			fieldSetters[i] = getFieldSetter(fields[i].getFieldType());
+		}
+		ArrayList<Integer> bound = new ArrayList<Integer>();
+		if(where != null)
+		{
+			for(int i = 0; i < where.length; i++)
+			{
+				if(where[i].toString().contains("?"))
+					bound.add(Integer.valueOf(i));
+			}
+		}
+		conditions = new int[bound.size()];
+		conditionSetters = new ValueSetter[bound.size()];
+		for(int i = 0; i < conditions.length; i++)
+		{
+			conditions[i] = bound.get(i).intValue();
+			conditionSetters[i] = getConditionSetter(where[conditions[i]].getKey().getFieldType());
+		}
+	}
+	
+	/**
+	 * Get the number of parameters bound by this ParameterBinder
+	 * @return int
+	 */
+	int getParameterCount()
+	{
+		return fieldSetters.length + conditions.length;
+	}
+	
+	/**
+	 * Bind the values of the Fields and WhereConditions of a Query having the structure this ParameterBinder was created for.
+	 * @param statement
+	 * @param fields
+	 * @param where
+	 * @return The index of the next parameter marker
+	 * @throws SQLException
+	 */
+	int bind(PreparedStatement statement, Field[] fields, WhereCondition[] where) throws SQLException
+	{
+		int index = 1;
+		Field fld = null;
+		try
+		{
+			for(int i = 0; i < fieldSetters.length; i++)
+			{
+				fld = fields[i];
+				fieldSetters[i].set(statement, index++, fld);
+			}
+			for(int i = 0; i < conditions.length; i++)
+			{
+				//Getting the actual field becomes important if we have a ClassCastException
+				fld = where[conditions[i]].getKey();
+				conditionSetters[i].set(statement, index++, where[conditions[i]].getValue());
+			}
+		}
+		catch(ClassCastException cce)
+		{
+			if(Editor.isLoggingEnabled())
+			{
+				if(fld != null)
+					logger.error("Field: " + fld.getName());
+				logger.error(Editor.getFullStackTrace(cce));
+			}
+			index = 1 + getParameterCount();
+		}
+		return index;
+	}
+	
+	/**
+	 * Describe the values of the Fields bound, for debug logging.
+	 * @param fields
+	 * @return String
+	 */
+	String describe(Field[] fields)
+	{
+		if(fieldSetters.length == 0)
+			return "";
+		StringBuilder temp = new StringBuilder("PreparedStatement SQL Parameters:\n");
+		for(int i = 0; i < fieldSetters.length; i++)
+		{
+			temp.append('\t').append(String.valueOf(fieldSetters[i].getValue(fields[i]))).append('\n');
+		}
+		return temp.toString();
+	}
+	
+	private static FieldSetter getFieldSetter(Field.Type type)
+	{
+		switch (type)
+		{
+		  case INT:
+			  return INT_FIELD;
+		  case FLOAT:
+			  return FLOAT_FIELD;
+		  case DOUBLE:
+			  return DOUBLE_FIELD;
+		  case LONG:
+			  return LONG_FIELD;
+		  case BIGDECIMAL:
+			  return BIGDECIMAL_FIELD;
+		  case BOOLEAN:
+			  return BOOLEAN_FIELD;
+		  case DATE:
+			  return DATE_FIELD;
+		  case FILE:
+			  return FILE_FIELD;
+		  default:
+			  //STRING and DBFUNCTION
+			  return STRING_FIELD;
+		}
+	}
+	
+	private static ValueSetter getConditionSetter(Field.Type type)
+	{
+		switch (type)
+		{
+		  case INT:
+			  return INT;
+		  case FLOAT:
+			  return FLOAT;
+		  case DOUBLE:
+			  return DOUBLE;
+		  case LONG:
+			  return LONG;
+		  case BIGDECIMAL:
+			  return BIGDECIMAL;
+		  case BOOLEAN:
+			  return BOOLEAN;
+		  case STRING:
+		  case DATE:
+			  return STRING;
+		  default:
+			  //DBFUNCTION and FILE
+			  return OBJECT;
+		}
+	}
+	
+	//Binds a value to one parameter marker
+	private static interface ValueSetter
+	{
+		public void set(PreparedStatement statement, int index, Object value) throws SQLException;
+	}
+	
+	//Binds the value of a Field to one parameter marker
+	private static interface FieldSetter
+	{
+		public void set(PreparedStatement statement, int index, Field field) throws SQLException;
+		
+		public Object getValue(Field field);
+	}
+	
+	//Binds the value held by a Field with a ValueSetter
+	private static class ValueFieldSetter implements FieldSetter
+	{
+		private ValueSetter setter;
+		
+		private ValueFieldSetter(ValueSetter s)
+		{
+			setter = s;
+		}
+		
+		public void set(PreparedStatement statement, int index, Field field) throws SQLException
+		{
+			setter.set(statement, index, field.getValue());
+		}
+		
+		public Object getValue(Field field)
+		{
+			return field.getValue();
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.tacticalenterprisesltd;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * The Dialect for PostgreSQL v9.5 or higher. Records are paged with LIMIT and OFFSET, the primary key of a new record is
+ * generated by a serial or identity column, and the RETURNING clause returns the columns of inserted and updated records.
+ * The counts for server side processing use window functions by default.
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public class PostgreSQLDialect extends AbstractDialect
+{
+	public String getJdbcUrl(String host, String port, String dbName)
+	{
+		return "jdbc:postgresql://" + host + ":" + port + "/" + dbName;
+	}
+	
+	public String getLimitClause(boolean offset, boolean limit)
+	{
+		String temp = "";
+		if(limit)
+			temp += " LIMIT ?";
+		if(offset)
+			temp += " OFFSET ?";
+		return temp;
+	}
+	
+	public boolean isLimitBoundFirst()
+	{
+		return true;
+	}
+	
+	public boolean isNullSortedHigh()
+	{
+		return true;
+	}
+	
+	/**
+	 * The primary key column is named, as asking for every generated key would return every column of the new record.
+	 */
+	public PreparedStatement prepareInsert(Connection connection, String sql, String primaryKey) throws SQLException
+	{
+		return connection.prepareStatement(sql, new String[]{primaryKey});
+	}
+	
+	public boolean supportsBatchGeneratedKeys()
+	{
+		return true;
+	}
+	
+	public String getReturningInsert(String table, String columns, String values, String[] returnColumns)
+	{
+		return "INSERT INTO " + table + " (" + columns + ") VALUES (" + values + ") RETURNING " + joinColumns("", returnColumns);
+	}
+	
+	public String getReturningUpdate(String table, String set, String where, String[] returnColumns)
+	{
+		return "UPDATE " + table + " SET " + set + where + " RETURNING " + joinColumns("", returnColumns);
+	}
+	
+	public Database.CountStrategy getDefaultCountStrategy()
+	{
+		return Database.CountStrategy.WINDOW_FUNCTION;
+	}
+}
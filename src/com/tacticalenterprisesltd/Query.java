@@ -1,14 +1,11 @@
 package com.tacticalenterprisesltd;
 
-import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Date;
 import org.apache.log4j.Logger;
-import com.tacticalenterprisesltd.Database.RDBMS;
 
 
 /**
@@ -62,6 +59,9 @@ public class Query
 	protected final static String WHERE = " WHERE ";
 	protected final static String LIMIT = " LIMIT ";
 	protected final static String ORDER = " ORDER BY ";
+	protected final static String FILTERED_COUNT = "JED_FILTERED_COUNT";
+	protected final static String TOTAL_COUNT = "JED_TOTAL_COUNT";
+	protected final static String KEYSET_COLUMN = "JED_KEY";
 	protected Type type = Type.SELECT; //Default
 	protected Database dbconn = null;
 	protected String table = null;
@@ -79,6 +79,16 @@ public class Query
 	private String parentTableAlias = "";
 	private boolean isLinkTable = false;
 	private Join[] joins = null;
+	private boolean windowCount = false;
+	private boolean windowCountTotal = true;
+	private boolean keysetPagination = false;
+	private Object[] keyset = null;
+	private int queryTimeout = -1;
+	private String sql = null;
+	private ParameterBinder binder = null;
+	private String[] returnColumns = null;
+	private boolean returning = false;
+	private String[] returnedRow = null;
 	private Logger logger;
 	
 	
@@ -111,6 +121,7 @@ public class Query
 	 */
 	public void setAsLinkTable(boolean value)
 	{
+		changed();
 		isLinkTable = value;
 	}
 	
@@ -120,6 +131,7 @@ public class Query
 	 */
 	public void setAliasParentTableName(String value)
 	{
+	  changed();
 	  parentTableAlias = value;
 	}
 	/**
@@ -136,6 +148,7 @@ public class Query
 	 */
 	public void setPrimaryKey(String value)
 	{
+		changed();
 		pKey = value;
 	}
 	/**
@@ -184,6 +197,7 @@ public class Query
 	 */
 	public void setJoins(Join[] joinarray)
     {
+		changed();
         joins = joinarray;
     }
     /**
@@ -213,12 +227,57 @@ public class Query
 	{
 		return NewRecordID;
 	}
+	/**
+	 * Set the columns an INSERT or UPDATE returns from the record written, so that the record need not be selected again.
+	 * This only has an effect when the Dialect of the Database can return the columns of the statement, which can be
+	 * inquired with isReturning(). An INSERT into a link table never returns any columns.
+	 * @param columns The names of the columns of the table, or null to return none
+	 */
+	public void setReturnColumns(String[] columns)
+	{
+		changed();
+		returnColumns = columns;
+	}
+	/**
+	 * Get the columns an INSERT or UPDATE returns from the record written.
+	 * @return String[] array, or null if none are returned
+	 */
+	public String[] getReturnColumns()
+	{
+		return returnColumns;
+	}
+	/**
+	 * Inquire if this INSERT or UPDATE returns the columns set by setReturnColumns(String[] columns),
+	 * because the Dialect of the Database can return them.
+	 * @return true or false
+	 */
+	public boolean isReturning()
+	{
+		toString();
+		return returning;
+	}
+	/**
+	 * Get the values of the columns returned by this INSERT or UPDATE once it has been executed, in the same
+	 * order as the columns set by setReturnColumns(String[] columns).
+	 * @return String[] array, or null if no record was returned
+	 */
+	public String[] getReturnedRow()
+	{
+		return returnedRow;
+	}
+	
+	//Set by the Database once the statement has been executed
+	void setReturnedRow(String[] row)
+	{
+		returnedRow = row;
+	}
 	/**
 	 * Set a reference to an instance of the Database class.
 	 * @param db
 	 */
 	public void setDatabase(Database db)
 	{
+		changed();
 		dbconn = db;
 	}
 	/**
@@ -235,6 +294,7 @@ public class Query
 	 */
 	public void setFields(Field[] flds)
 	{
+		changed();
 		fields = flds;
 	}
 	/**
@@ -306,6 +366,7 @@ public class Query
 	 */
 	public void setOrder(Order[] value)
 	{
+		changed();
 		order = value;
 	}
 	/**
@@ -319,6 +380,7 @@ public class Query
 	 */
 	public void setFilterLogicalOperator(FilterLogicalOperator operator)
 	{
+		changed();
 		if(flo != operator)
 		   flo = operator;  
 	}
@@ -336,6 +398,7 @@ public class Query
 	 */
 	public void setQueryType(Type t)
 	{
+		changed();
 		type = t;
 	}
 	/**
@@ -344,6 +407,7 @@ public class Query
 	 */
 	public void setTable(String tbl)
 	{
+		changed();
 		table = tbl;
 	}
 	/**
@@ -374,6 +438,7 @@ public class Query
 	 */
 	public void setWhereConditions(WhereCondition[] whereclauses)
 	{
+		changed();
 		where = whereclauses;
 	}
 	/**
@@ -382,6 +447,7 @@ public class Query
 	 */
 	public void setWhereConditionGroups(WhereConditionGroups groups)
 	{
+		changed();
 		whereGroups = groups;
 	}
 	/**
@@ -402,15 +468,237 @@ public class Query
 			return false;
 		return true;
 	}
+	/**
+	 * Set this property if a SELECT should also return the number of records matching the WHERE conditions
+	 * by way of the window function COUNT(*) OVER(), and the total number of records in the parent table
+	 * when there are WHERE conditions, as additional columns following the Fields. This is used by the
+	 * Database class to obtain the counts for server side processing in the same statement as the page of records.
+	 * @param value
+	 * @param includeTotal Set to false when the total is already known, so that the parent table is not counted.
+	 */
+	protected void setWindowCount(boolean value, boolean includeTotal)
+	{
+		if(windowCount != value || windowCountTotal != includeTotal)
+			changed();
+		windowCount = value;
+		windowCountTotal = includeTotal;
+	}
+	/**
+	 * Inquire if a SELECT returns the window count columns.
+	 * @return true or false
+	 */
+	protected boolean isWindowCount()
+	{
+		return windowCount;
+	}
+	/**
+	 * Inquire if a SELECT returns the total number of records in the parent table
+	 * as a separate window count column. When there are no WHERE conditions, the filtered count
+	 * is also the total, so the extra column is not required.
+	 * @return true or false
+	 */
+	protected boolean isWindowCountWithTotal()
+	{
+		return windowCount && windowCountTotal && (where != null || whereGroups != null);
+	}
+	/**
+	 * Set this property to page through the records of a SELECT by seeking past the last record of the previous
+	 * page (keyset pagination), rather than having the database read and discard every record before the offset.
+	 * The primary key is added to the ORDER BY clause as a final tiebreaker so that the order of the records
+	 * is deterministic, and the values needed to seek past the last record on each page are returned as additional
+	 * columns following the Fields. The Database class remembers those values in the KeysetBookmarks, and when a
+	 * following page is requested it supplies them to the Query by calling setKeyset(Object[] values).
+	 * Random jumps to pages that have not been visited continue to use the offset.
+	 * @param value
+	 */
+	public void setKeysetPagination(boolean value)
+	{
+		changed();
+		keysetPagination = value;
+	}
+	/**
+	 * Inquire if keyset pagination is being used.
+	 * @return true or false
+	 */
+	public boolean isKeysetPagination()
+	{
+		return keysetPagination;
+	}
+	/**
+	 * Set the number of seconds the JDBC driver waits for this Query to execute before it is cancelled
+	 * and an SQLException is thrown. A value of 0 means there is no limit. Unless it is set, the
+	 * timeout set with Database.setQueryTimeout(int seconds) applies.
+	 * @param seconds
+	 */
+	public void setQueryTimeout(int seconds)
+	{
+		if(seconds < 0)
+		{
+			throw new IllegalArgumentException("The query timeout must not be negative.");
+		}
+		queryTimeout = seconds;
+	}
+	/**
+	 * Get the number of seconds set with setQueryTimeout(int seconds), or -1 if it hasn't been set.
+	 * @return int
+	 */
+	public int getQueryTimeout()
+	{
+		return queryTimeout;
+	}
+	//The timeout of this Query if set, otherwise that of the Database, or of the Editor request it is processing
+	protected int getEffectiveQueryTimeout()
+	{
+		if(queryTimeout > -1)
+			return queryTimeout;
+		return (dbconn != null ? dbconn.getStatementTimeout() : 0);
+	}
+	/**
+	 * Set the values of the ORDER BY columns, followed by the primary key, of the last record on the
+	 * previous page. The next SELECT will then return the records following it, instead of using the offset.
+	 * Set to null to use the offset.
+	 * @param values
+	 */
+	protected void setKeyset(Object[] values)
+	{
+		if(keyset != values)
+			changed();
+		keyset = values;
+	}
+	/**
+	 * Inquire if the SELECT seeks past a known record rather than using the offset.
+	 * @return true or false
+	 */
+	protected boolean isKeysetSeek()
+	{
+		return keysetPagination && keyset != null;
+	}
+	/**
+	 * Get the columns used for keyset pagination: the ORDER BY columns followed by the primary key.
+	 * @return A String[] array
+	 */
+	protected String[] getKeysetColumns()
+	{
+		ArrayList<String> list = new ArrayList<String>();
+		String pkColumn = getPrimaryKeyColumn();
+		boolean havePrimaryKey = false;
+		if(order != null)
+		{
+			for(int i = 0; i < order.length; i++)
+			{
+				list.add(order[i].getField());
+				if(order[i].getField().equalsIgnoreCase(pKey) || order[i].getField().equalsIgnoreCase(pkColumn))
+					havePrimaryKey = true;
+			}
+		}
+		if(havePrimaryKey == false)
+		{
+			list.add(pkColumn);
+		}
+		String[] temp = new String[list.size()];
+		return list.toArray(temp);
+	}
+	
+	//The primary key column qualified by the name or alias of the parent table
+	private String getPrimaryKeyColumn()
+	{
+		if(parentTableAlias.trim().isEmpty())
+			return getParentTable() + "." + pKey;
+		return parentTableAlias.trim() + "." + pKey;
+	}
+	
+	//Inquire if the keyset column at the index is sorted in descending order.
+	private boolean isKeysetDescending(int index)
+	{
+		if(order == null || index >= order.length)
+			return false;
+		return order[index].getDirection().equalsIgnoreCase("desc");
+	}
+	
+	//Inquire if records holding NULL in the keyset column at the index follow every other record.
+	//The primary key is never NULL.
+	private boolean isKeysetNullFollowing(int index)
+	{
+		if(order == null || index >= order.length || dbconn == null)
+			return false;
+		return dbconn.getDialect().isNullSortedHigh() != isKeysetDescending(index);
+	}
+	
+	/**
+	 * Get a String that identifies the records this SELECT pages through: the tables, joins,
+	 * WHERE conditions with their values, and the order. It excludes the offset and limit.
+	 * @return A String
+	 */
+	protected String getKeysetFingerprint()
+	{
+		String temp = prepareTable() + parentTableAlias + prepareJoins(joins) + prepareWhere() + prepareOrder();
+		if(where != null)
+		{
+			for(int i = 0; i < where.length; i++)
+			{
+				temp += "|" + (where[i] == null ? "" : String.valueOf(where[i].getValue()));
+			}
+		}
+		return temp;
+	}
+	
+	/**
+	 * Get a String that identifies the result of this SELECT: the SQL produced by toString(),
+	 * followed by the values bound to it, including the offset and limit. Used as the key of the ResultCache.
+	 * @return A String
+	 */
+	protected String getResultCacheKey()
+	{
+		//toString() is called first, as it gathers the WHERE conditions of any WhereConditionGroups
+		String temp = toString();
+		if(where != null)
+		{
+			for(int i = 0; i < where.length; i++)
+			{
+				temp += "|" + (where[i] == null ? "" : String.valueOf(where[i].getValue()));
+			}
+		}
+		if(isKeysetSeek())
+		{
+			for(int i = 0; i < keyset.length; i++)
+			{
+				temp += "|" + String.valueOf(keyset[i]);
+			}
+		}
+		return temp + "|" + offset + "|" + limit;
+	}
+	
+	/**
+	 * Get the tables a SELECT reads from: the parent table, followed by the child and link tables of its Joins.
+	 * @return A String[] array
+	 */
+	protected String[] getTablesSelected()
+	{
+		ArrayList<String> list = new ArrayList<String>();
+		list.add(table);
+		if(joins != null)
+		{
+			for(int i = 0; i < joins.length; i++)
+			{
+				if(joins[i].getExcludeOnSelect())
+					continue;
+				list.add(joins[i].getChildTableName());
+				if(joins[i].isUsingLinkTable())
+					list.add(joins[i].getLinkTableName());
+			}
+		}
+		return list.toArray(new String[list.size()]);
+	}
+	
 	//This just delimits any elements in an array with commas
 	//such as the list of fields and tables
 	private String prepare(Object[] array)
 	{
 		if (array == null) return "";
-        String temp = "";
+        StringBuilder temp = new StringBuilder();
         for (int i = 0; i < array.length; i++)
         {
-            temp += array[i].toString() + ",";
+            temp.append(array[i].toString()).append(',');
         }
         if (joins != null)
         {
@@ -426,39 +714,39 @@ public class Query
                     for (int j = 0; j < fields.length; j++)
                     {
                         fld = fields[j];
-                        temp += fld.toString() + ",";
+                        temp.append(fld.toString()).append(',');
                     }
                 }
             }
         }
-        temp = temp.substring(0, temp.length() - 1);
-        return temp;
+        temp.setLength(temp.length() - 1);
+        return temp.toString();
 	}
 	
 	private String prepareFields(Object[] array)
 	{
 		if(array == null)return "";
-		String temp = "";		
+		StringBuilder temp = new StringBuilder();		
 		for(int i = 0; i < array.length; i++)
 		{
-			temp += array[i].toString() + ",";
+			temp.append(array[i].toString()).append(',');
 		}
-		temp = temp.substring(0, temp.length() - 1);
-		return temp;
+		temp.setLength(temp.length() - 1);
+		return temp.toString();
 	}
 	
 	private String prepareFieldsWithID(Object[] array)
 	{
 		if(array == null)return "";
-		String temp = "";
+		StringBuilder temp = new StringBuilder();
 		String idField = getParentTable() + "." + pKey;
-		temp = idField + ",";
+		temp.append(idField).append(',');
 		for(int i = 0; i < array.length; i++)
 		{
-			temp += array[i].toString() + ",";
+			temp.append(array[i].toString()).append(',');
 		}
-		temp = temp.substring(0, temp.length() - 1);
-		return temp;
+		temp.setLength(temp.length() - 1);
+		return temp.toString();
 	}
 	
 	protected String prepareTable()
@@ -472,16 +760,16 @@ public class Query
     {
         if (array == null) return "";
 
-        String temp = "";
+        StringBuilder temp = new StringBuilder();
         Join jn = null;
         for(int i = 0; i < array.length; i++)
         {
             jn = array[i];
             if(jn.getExcludeOnSelect() == false)
-               temp += jn.toString();
+               temp.append(jn.toString());
         }
 
-        return temp;
+        return temp.toString();
     }
 	
 		
@@ -496,10 +784,9 @@ public class Query
 		}
 		try
 		{
-		  if(dbconn.dbtype == Database.RDBMS.MYSQL)
-			     temp = "0,";		         
-		  else if(dbconn.dbtype == Database.RDBMS.ORACLE)
-			     temp = getParentTable().toUpperCase() + "_SEQ.NEXTVAL,";
+		  String idValue = dbconn.getDialect().getInsertIdValue(getParentTable());
+		  if(idValue != null)
+			     temp = idValue + ",";
 		  for(int i = 0; i < fields.length; i++)
 		  {
 			 temp += "?,"; 
@@ -537,11 +824,14 @@ public class Query
 		else
 		{
 		  //Process only the where array
+		  StringBuilder conditions = new StringBuilder();
 		  for(int i = 0; i < where.length; i++)
 		  {
-			temp += where[i].toString() + flo.toString();
+			if(i > 0)
+			  conditions.append(flo.toString());
+			conditions.append(where[i].toString());
 		  }
-		  temp = temp.substring(0, temp.length() - flo.toString().length());
+		  temp += conditions;
 		}
 		return temp;
 	}
@@ -559,46 +849,119 @@ public class Query
 		return temp;
 	}
 	
+	//This prepares the window count columns that follow the fields of a SELECT
+	protected String prepareWindowCount()
+	{
+		if(windowCount == false)return "";
+		String temp = ", COUNT(*) OVER() " + FILTERED_COUNT;
+		if(isWindowCountWithTotal())
+		{
+			temp += ", (SELECT COUNT(*) FROM " + getParentTable() + ") " + TOTAL_COUNT;
+		}
+		return temp;
+	}
+	
 	//This prepares the ORDER BY clause specifically.
 	protected String prepareOrder()
 	{
-		if(order == null)return "";
-		String temp = ORDER;		
-		for(int i = 0; i < order.length; i++)
+		if(order == null && keysetPagination == false)return "";
+		StringBuilder temp = new StringBuilder(ORDER);
+		if(order != null)
 		{
-			temp += order[i].toString() + ",";
+		  for(int i = 0; i < order.length; i++)
+		  {
+			temp.append(order[i].toString()).append(',');
+		  }
 		}
-		temp = temp.substring(0, temp.length() - 1);
+		if(keysetPagination)
+		{
+		  //Keyset pagination requires a deterministic order, so the primary key is the final tiebreaker.
+		  String[] columns = getKeysetColumns();
+		  if(order == null || columns.length > order.length)
+		  {
+			temp.append(columns[columns.length - 1]).append(',');
+		  }
+		}
+		temp.setLength(temp.length() - 1);
 		
-		return temp;	
+		return temp.toString();	
 	}
-	//This prepares the LIMIT clause specifically.
-	//This method only works with Oracle version 12c or higher
-	protected String prepareLimit(int start, int recordsToReturn)
+	
+	//This prepares the keyset columns that follow the fields of a SELECT, which hold
+	//the values needed to seek past the last record of a page.
+	protected String prepareKeysetColumns()
 	{
-		if(recordsToReturn == -1 && start == -1)return "";
+		if(keysetPagination == false || limit < 0)return "";
 		String temp = "";
-		if(dbconn.dbtype == Database.RDBMS.MYSQL)
+		String[] columns = getKeysetColumns();
+		for(int i = 0; i < columns.length; i++)
 		{
-		  if(start == 0 && recordsToReturn > -1)
-		     temp = LIMIT + recordsToReturn;
-		  else if(start > -1 && recordsToReturn > -1)
-			 temp = LIMIT + start + ", " + recordsToReturn;
+			temp += ", " + columns[i] + " " + KEYSET_COLUMN + i;
 		}
-		else if(dbconn.dbtype == Database.RDBMS.ORACLE)
+		return temp;
+	}
+	
+	//This prepares the condition that seeks past the last record of the previous page.
+	//For columns a, b and the primary key id it produces:
+	//(a > ? OR (a = ? AND b > ?) OR (a = ? AND b = ? AND id > ?))
+	//Where the Dialect sorts NULL values after the values sought past, the records holding NULL are included as well:
+	//((a > ? OR a IS NULL) OR ...). A record holding NULL is never bookmarked, so the value sought past is never NULL.
+	protected String prepareKeyset()
+	{
+		if(isKeysetSeek() == false)return "";
+		String[] columns = getKeysetColumns();
+		String temp = "(";
+		for(int i = 0; i < columns.length; i++)
 		{
-			if(start == 0 && recordsToReturn > -1)
-			     temp = " FETCH FIRST " + recordsToReturn + " ROWS ONLY";
-			  else if(start > 0 && recordsToReturn > -1)
-				 temp = " OFFSET " + start + " ROW FETCH NEXT " + recordsToReturn + " ROWS ONLY";	
+			if(i > 0)
+				temp += " OR ";
+			temp += "(";
+			for(int j = 0; j < i; j++)
+			{
+				temp += columns[j] + " = ? AND ";
+			}
+			if(isKeysetNullFollowing(i))
+				temp += "(" + columns[i] + (isKeysetDescending(i) ? " < ?" : " > ?") + " OR " + columns[i] + " IS NULL))";
+			else
+				temp += columns[i] + (isKeysetDescending(i) ? " < ?" : " > ?") + ")";
 		}
-		else if(dbconn.dbtype == Database.RDBMS.SQLSERVER)
-        {
-            temp = " OFFSET " + start + " ROW FETCH NEXT " + recordsToReturn + " ROWS ONLY";
-        }
+		temp += ")";
 		return temp;
 	}
 	
+	//This prepares the WHERE clause combined with any keyset condition
+	protected String prepareWhereWithKeyset()
+	{
+		String temp = prepareWhere();
+		String seek = prepareKeyset();
+		if(seek.equals(""))
+			return temp;
+		if(temp.equals(""))
+			return WHERE + seek;
+		return WHERE + "(" + temp.substring(WHERE.length()) + ") AND " + seek;
+	}
+	//This prepares the LIMIT clause specifically, in the form used by the Dialect of the database.
+	//The offset and limit are bound as parameters by bindLimit(...), so every page of a query shares the same SQL.
+	protected String prepareLimit(int start, int recordsToReturn)
+	{
+		if(recordsToReturn == -1 && start == -1)return "";
+		return dbconn.getDialect().getLimitClause(start > 0, recordsToReturn > -1);
+	}
+	
+	//Bind the offset and limit in the order of the parameter markers produced by prepareLimit(...)
+	private int bindLimit(PreparedStatement statement, int index, int start, int recordsToReturn) throws SQLException
+	{
+		if(recordsToReturn == -1 && start == -1)return index;
+		boolean limitFirst = dbconn.getDialect().isLimitBoundFirst();
+		if(limitFirst && recordsToReturn > -1)
+			statement.setInt(index++, recordsToReturn);
+		if(start > 0)
+			statement.setInt(index++, start);
+		if(limitFirst == false && recordsToReturn > -1)
+			statement.setInt(index++, recordsToReturn);
+		return index;
+	}
+	
 	
 	//The way this is supposed to work is that before calling this method,
 	//at some point the fields should have been iterated over and the field
@@ -658,7 +1021,7 @@ public class Query
             }
             
         }
-		return type.toString() + prepare(fields) + FROM + prepareTable() + parentTableAlias + prepareJoins(joins) + prepareWhere() + prepareOrder() + prepareLimit(offset,limit);
+		return type.toString() + prepare(fields) + prepareWindowCount() + prepareKeysetColumns() + FROM + prepareTable() + parentTableAlias + prepareJoins(joins) + prepareWhereWithKeyset() + prepareOrder() + prepareLimit(isKeysetSeek() ? 0 : offset,limit);
 	}
 	/**
 	 * Create the SQL query string to insert a new row
@@ -679,14 +1042,22 @@ public class Query
 		
 		if(isLinkTable == false)
 		{
-			if (dbconn.dbtype == Database.RDBMS.SQLSERVER)
-            {
-                query = type.toString() + "INTO " + prepareTable() + " (" + prepareFields(fields) + ") VALUES (" + prepareValues() + "); SELECT SCOPE_IDENTITY() AS ID;";
-            }
-            else
-            {              	
-                query = type.toString() + "INTO " + prepareTable() + " (" + prepareFieldsWithID(fields) + ") VALUES (" + prepareValues() + ")";                
-            }
+			//The id column is left out when the database generates its value
+			String columns = (dbconn.getDialect().getInsertIdValue(getParentTable()) == null ? prepareFields(fields) : prepareFieldsWithID(fields));
+			if(returnColumns != null)
+			{
+				//The primary key is returned ahead of the columns requested, as the id of the new record
+				String[] returned = new String[returnColumns.length + 1];
+				returned[0] = pKey;
+				System.arraycopy(returnColumns, 0, returned, 1, returnColumns.length);
+				String statement = dbconn.getDialect().getReturningInsert(prepareTable(), columns, prepareValues(), returned);
+				if(statement != null)
+				{
+					returning = true;
+					return statement;
+				}
+			}
+			query = type.toString() + "INTO " + prepareTable() + " (" + columns + ") VALUES (" + prepareValues() + ")";
         }
 		else
 			query = type.toString() + "INTO " + prepareTable() + " (" + prepareFields(fields) + ") VALUES (" + prepareLinkTableValues() + ")";
@@ -707,6 +1078,15 @@ public class Query
 		{
 			logger.error("You didn't set the array of Tables for the Query object.");
 		}
+		if(returnColumns != null && dbconn != null)
+		{
+			String statement = dbconn.getDialect().getReturningUpdate(prepareTable(), prepareSet(fields), prepareWhere(), returnColumns);
+			if(statement != null)
+			{
+				returning = true;
+				return statement;
+			}
+		}
 		return type.toString() + prepareTable() + " SET " + prepareSet(fields) + prepareWhere();
 	}
 	/**
@@ -729,6 +1109,7 @@ public class Query
 	 */
 	public void setOffset(int value)
 	{
+		changed();
 		offset = value;
 	}
 	/**
@@ -747,6 +1128,7 @@ public class Query
 	 */
 	public void setLimit(int value)
 	{
+		changed();
 		limit = value;
 	}
 	/**
@@ -765,46 +1147,24 @@ public class Query
 		Type qtype = getQueryType();
 		if(qtype == Query.Type.INSERT)
         {  
-    	  if(dbconn.dbtype == RDBMS.MYSQL)
-          {   
-    		if(isLinkTable() == false) 
-    		{
-    	      statement = connection.prepareStatement(toString(), PreparedStatement.RETURN_GENERATED_KEYS);
-    	      setPreparedStatementParams(statement);    	      
-    		}
-    		else
-    		{
-    		  statement = connection.prepareStatement(toString());
-    		  setPreparedStatementParams(statement);    		  
-    		}
-          }
-    	  else if(dbconn.dbtype == RDBMS.ORACLE)
-          {
-    		  if(isLinkTable() == false)
-    		  {
-    		     //statement = connection.prepareStatement(toString(), getFieldsAsStringArray());
-    			 statement = connection.prepareStatement(toString(), new String[]{this.getPrimaryKey()});
-    		     setPreparedStatementParams(statement);    		     
-    		  }
-    		  else
-    		  {
-    			 statement = connection.prepareStatement(toString(), getFieldsAsStringArrayWithoutID());
-    			 setPreparedStatementParams(statement);    			 
-    		  }
-          }
-    	  else if(dbconn.dbtype == RDBMS.SQLSERVER)
-          {
-    		  if(isLinkTable() == false)
-    		  {
-    			  statement = connection.prepareStatement(toString(), PreparedStatement.RETURN_GENERATED_KEYS);
-        	      setPreparedStatementParams(statement);        	      
-    		  }
-        	  else
-        	  {
-        		  statement = connection.prepareStatement(toString());
-        		  setPreparedStatementParams(statement);        		  
-        	  }
-          }    	  
+    	  if(isReturning())
+    	  {
+    		//The id of the new record is returned by the statement itself
+    		statement = connection.prepareStatement(toString());
+    		setPreparedStatementParams(statement);
+    	  }
+    	  else if(isLinkTable() == false)
+    	  {
+    		//The Dialect prepares the statement so the id generated for the new record can be retrieved
+    		statement = dbconn.getDialect().prepareInsert(connection, toString(), getPrimaryKey());
+    		setPreparedStatementParams(statement);
+    	  }
+    	  else
+    	  {
+    		//If we are dealing with a Link Table then we don't need to retrieve any generated ids.
+    		statement = connection.prepareStatement(toString());
+    		setPreparedStatementParams(statement);
+    	  }
         }
     	else if(qtype == Query.Type.UPDATE)
     	{
@@ -821,333 +1181,109 @@ public class Query
     	else if(qtype == Query.Type.SELECT)
     	{
     	  //This is just for SELECTS
-    	  statement = connection.prepareStatement(toString(), ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+    	  statement = connection.prepareStatement(toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
     	  setPreparedStatementParams(statement);    	  
     	}
 		
+		//Always set, since a cached statement may still have the timeout of a previous Query
+		statement.setQueryTimeout(getEffectiveQueryTimeout());
+		
 		if(Editor.isLoggingEnabled())
 			 logger.debug("\nQuery.getPreparedStatement: " + statement.toString() + "\n");
 		
 		return statement;
 	}
 	
-	private void setPreparedStatementParams(PreparedStatement statement)throws SQLException
+	//Bind the values of this Query to a statement, with the ParameterBinder compiled for its structure.
+	protected void setPreparedStatementParams(PreparedStatement statement)throws SQLException
 	{
-		
-		 int index = 1;
 		 Type qtype = getQueryType();
-		 String outValues = "";
-		 Field fld = null;
-		 if(qtype == Query.Type.INSERT || qtype == Query.Type.UPDATE)
+		 ParameterBinder binder = getParameterBinder();
+		 boolean bindFields = qtype == Query.Type.INSERT || qtype == Query.Type.UPDATE;
+		 int index = binder.bind(statement, bindFields ? fields : null, where);
+		 if(Editor.isLoggingEnabled() && logger.isDebugEnabled() && bindFields)
 		 {
-		   outValues += "PreparedStatement SQL Parameters:\n";
-		   if(fields.length > 0)
-		   {
-			 try
-			 {
-		       for(int i = 0; i < fields.length; i++)
-	           {
-	    	     //Field.Types: {STRING,INT,FLOAT,DOUBLE,LONG,BIGDECIMAL,BOOLEAN,DATE,DBFUNCTION,IMAGE}
-		    	 fld = fields[i];
-	    	     Field.Type value = fld.getFieldType();
-	    	     Object obj = fld.getValue();
-	    	     switch (value)
-	    	     {
-	    	        case STRING:
-	    	    	    if(obj == null)
-	    	    	    {
-	    	    		  statement.setNull(index, java.sql.Types.NULL);
-	    	    		  outValues += "\tnull\n";
-	    	    	    }
-	    	    	    else
-	    	    	    {
-	    	    	     statement.setString(index, ((String)obj));
-	    	    	     outValues += "\t" + String.valueOf(obj) + "\n";
-	    	    	     index++;
-	    	    	    }
-	    	    	    break;
-	    	        case INT:
-	    	    	    if(obj == null)
-	    	    	    {
-	    	    		  statement.setNull(index, java.sql.Types.NULL);
-	    	    		  outValues += "\tnull\n";
-	    	    	    }
-	    	    	    else
-	    	    	    {
-	    	    	      statement.setInt(index, ((Integer)obj));
-	    	    	      outValues += "\t" + String.valueOf(obj) + "\n";
-	    	    	      index++;
-	    	    	    }
-	    	    	    break;
-	    	        case FLOAT:
-	    	    	    if(obj == null)
-	    	    	    {
-	    	    		  statement.setNull(index, java.sql.Types.NULL);
-	    	    		  outValues += "\tnull\n";
-	    	    	    }
-	    	    	    else
-	    	    	    {
-	    	    	      statement.setFloat(index, ((Float)obj));
-	    	    	      outValues += "\t" + String.valueOf(obj) + "\n";
-	    	    	      index++;
-	    	    	    }
-	    	    	    break;
-	    	        case DOUBLE:
-	    	    	    if(obj == null)
-	    	    	    {
-	    	    		  statement.setNull(index, java.sql.Types.NULL);
-	    	    		  outValues += "\tnull\n";
-	    	    	    }
-	    	    	    else
-	    	    	    {
-	    	    	      statement.setDouble(index, ((Double)obj));
-	    	    	      outValues += "\t" + String.valueOf(obj) + "\n";
-	    	    	      index++;
-	    	    	    }
-	    	    	    break;
-	    	        case LONG:
-	    	    	    if(obj == null)
-	    	    	    {
-	    	    		  statement.setNull(index, java.sql.Types.NULL);
-	    	    		  outValues += "\tnull\n";
-	    	    	    }
-	    	    	    else
-	    	    	    {
-	    	    	      statement.setLong(index, ((Long)obj));
-	    	    	      outValues += "\t" + String.valueOf(obj) + "\n";
-	    	    	      index++;
-	    	    	    }
-	    	    	    break;
-	    	        case BIGDECIMAL:
-	    	    	    if(obj == null)
-	    	    	    {
-	    	    		  statement.setNull(index, java.sql.Types.NULL);
-	    	    		  outValues += "\tnull\n";
-	    	    	    }
-	    	    	    else
-	    	    	    {
-	    	    	      statement.setBigDecimal(index, ((BigDecimal)obj));
-	    	    	      outValues += "\t" + String.valueOf(obj) + "\n";
-	    	    	      index++;
-	    	    	    }
-	    	    	    break;
-	    	        case BOOLEAN:
-	    	    	    statement.setBoolean(index, ((Boolean)obj));
-	    	    	    outValues += "\t" + String.valueOf(obj) + "\n";
-	    	    	    index++;
-	    	    	    break;
-	    	        case DATE:
-	    	    	    //We don't want to use the setDate(...) method as it expects
-	    	    	    //a java.sql.Date returned which doesn't allow for any time stamp.
-	    	    	    //Let the database perform the conversion from String to Date type.
-	    	    	    if(fld.getDBDateValue() instanceof Integer)
-	 				    {
-	 				      Integer val = (Integer)fld.getDBDateValue();
-	 				      if(val == java.sql.Types.NULL)
-	 				      {
-	 					     statement.setString(index, "null");
-	 					     outValues += "\t" + "null\n";
-	 				      }
-	 				    }
-	 				    else
-	 				    {
-	 				   	   statement.setString(index, ((String)fld.getDBDateValue()));
-	 					   outValues += "\t" + String.valueOf(fld.getDBDateValue()) + "\n";
-	 				    }
-	    	    	    index++;
-	    	    	    break;
-	    	        case DBFUNCTION:
-	    	    	    statement.setString(index, ((String)obj));
-	    	    	    outValues += "\t" + String.valueOf(obj) + "\n";
-	    	    	    index++;
-	    	    	    break;	
-	    	        case FILE:
-	    	    	    if(fld.hasInputStream())
-	    	    	       statement.setBinaryStream(index, fld.getFileInputStream(),fld.getFileSizeInBytes());
-	    	    	    else
-	    	    		   statement.setNull(index, java.sql.Types.NULL);
-	    	    	    index++;
-	    	    	    break;
-	    	       }
-	            }
-			 }
-			 catch(ClassCastException cce)
-			 {
-				 if(Editor.isLoggingEnabled())
-				 {
-					 if(fld != null)
-						 logger.error("Field: " + fld.getName());
-		    		 logger.error(Editor.getFullStackTrace(cce));
-				 }
-			 }
-		   }
-		}
-		if(Editor.isLoggingEnabled())
-	  	{
-			if(!outValues.isEmpty())
-			   logger.debug(outValues);
-	  	} 
-	    if(haveWhereConditions())
-   	    {
-	      try
-	      {
-	        for(WhereCondition wc : where)
-   		    {
-	    	  if(wc.toString().contains("?") == false)
-	    		  break;
-	    	  //Getting the actual field becomes important is we have a ClassCastException
-	    	  fld = wc.getKey();
-	    	  Field.Type value = wc.getKey().getFieldType();
-	    	  Object obj = wc.getValue();
-	    	  switch (value)
-	    	  {
-	    	     case STRING:
-	    	    	 if(obj == null)
-	    	    	 {
-	    	    		 statement.setNull(index, java.sql.Types.NULL);	    	    		 
-	    	    	 }
-	    	    	 else
-	    	    	 {
-	    	    	   statement.setString(index, ((String)obj));
-	    	    	   index++;
-	    	    	 }
-	    	    	 break;
-	    	     case INT:
-	    	    	 if(obj == null)
-	    	    	 {
-	    	    		 statement.setNull(index, java.sql.Types.NULL);	    	    		 
-	    	    	 }
-	    	    	 else
-	    	    	 {
-	    	    	     statement.setInt(index, ((Integer)obj));
-	    	    	 }
-	    	    	 index++;
-	    	    	 break;
-	    	     case FLOAT:
-	    	    	 if(obj == null)
-	    	    	 {
-	    	    		 statement.setNull(index, java.sql.Types.NULL);	    	    		 
-	    	    	 }
-	    	    	 else
-	    	    	 {
-	    	    	   statement.setFloat(index, ((Float)obj));
-	    	    	 }
-	    	    	 index++;
-	    	    	 break;
-	    	     case DOUBLE:
-	    	    	 if(obj == null)
-	    	    	 {
-	    	    		 statement.setNull(index, java.sql.Types.NULL);	    	    		 
-	    	    	 }
-	    	    	 else
-	    	    	 {
-	    	    	     statement.setDouble(index, ((Double)obj));
-	    	    	 }
-	    	    	 index++;
-	    	    	 break;
-	    	     case LONG:
-	    	    	 if(obj == null)
-	    	    	 {
-	    	    		 statement.setNull(index, java.sql.Types.NULL);	    	    		 
-	    	    	 }
-	    	    	 else
-	    	    	 {
-	    	    	     statement.setLong(index, ((Long)obj));
-	    	    	 }
-	    	    	 index++;
-	    	    	 break;
-	    	     case BIGDECIMAL:
-	    	    	 statement.setBigDecimal(index, ((BigDecimal)obj));
-	    	    	 index++;
-	    	    	 break;
-	    	     case BOOLEAN:
-	    	    	 if(obj == null)
-	    	    	 {
-	    	    		 statement.setNull(index, java.sql.Types.NULL);	    	    		 
-	    	    	 }
-	    	    	 else
-	    	    	 {
-	    	    	     statement.setBoolean(index, ((Boolean)obj));
-	    	    	 }
-	    	    	 index++;
-	    	    	 break;
-	    	     case DATE:
-	    	    	 //We don't want to use the setDate(...) method as it expects
-	    	    	 //a java.sql.Date returned which doesn't allow for any time stamp.
-	    	    	 //Let the database perform the conversion from String to Date type.
-	    	    	 if(obj == null)
-	    	    	 {
-	    	    		 statement.setNull(index, java.sql.Types.NULL);	    	    		 
-	    	    	 }
-	    	    	 else
-	    	    	 {
-	    	    	     statement.setString(index, ((String)obj));
-	    	    	 }
-	    	    	 index++;
-	    	    	 break;
-	    	     case DBFUNCTION:
-	    	    	 if(obj == null)
-	    	    	     statement.setNull(index, java.sql.Types.NULL);	    	    		 
-	    	    	 else if(obj instanceof Integer)
-	    	    		 statement.setInt(index, ((Integer)obj));
-	    	    	 else if(obj instanceof Float)
-	    	    		 statement.setFloat(index, ((Float)obj));
-	    	    	 else if(obj instanceof Double)
-	    	    		 statement.setDouble(index, ((Double)obj));
-	    	    	 else if(obj instanceof Long)
-	    	    		 statement.setLong(index, ((Long)obj));
-	    	    	 else if(obj instanceof BigDecimal)
-	    	    		 statement.setBigDecimal(index, ((BigDecimal)obj));
-	    	    	 else if(obj instanceof Boolean)
-	    	    		 statement.setBoolean(index, ((Boolean)obj));
-	    	    	 else if(obj instanceof Date)
-	    	    	     statement.setString(index, ((String)obj));
-	    	    	 else if(obj instanceof String)
-	    	    		 statement.setString(index, ((String)obj));
-	    	    	 index++;
-	    	    	 break;
-	    	     
-	    	    }   			
-   		      }
-	      }
-	      catch(ClassCastException cce)
+			 logger.debug(binder.describe(fields));
+		 }
+	    if(isKeysetSeek())
+	    {
+	      //Bind the values in the same order as the conditions produced by prepareKeyset()
+	      for(int i = 0; i < keyset.length; i++)
 	      {
-	    	  if(Editor.isLoggingEnabled())
-			  {
-	    		  if(fld != null)
-					 logger.error("Field: " + fld.getName());	    		  
-				  logger.error(Editor.getFullStackTrace(cce));
-			  }
+	    	for(int j = 0; j <= i; j++)
+	    	{
+	    	  statement.setObject(index, keyset[j]);
+	    	  index++;
+	    	}
 	      }
-   	    }	  
+	    }
+	    if(qtype == Query.Type.SELECT)
+	    {
+	      index = bindLimit(statement, index, isKeysetSeek() ? 0 : offset, limit);
+	    }
 	}
 	
 	/**
 	 * Get the actual query produced by this class. It will produce either
-	 * an INSERT,UPDATE,DELETE, or SELECT query statement.
+	 * an INSERT,UPDATE,DELETE, or SELECT query statement. Values, including the offset
+	 * and limit of a SELECT, are bound as parameters, so the SQL only depends on the structure of the query:
+	 * it is assembled the first time this method is called and reused until a setter changes that structure.
+	 * Changing the Fields, Joins or WhereConditions supplied to a setter afterwards is not noticed.
 	 * @return An SQL String
 	 */
 	@Override
 	public String toString()
 	{
+		//The SQL is assembled once, and again only after one of the setters has changed the structure of the query
+		if(sql != null)
+		{
+			return sql;
+		}
 		String statement = "";
+		returning = false;
 		if(type == Type.SELECT)
 		{
-			return AssembleSelect();
+			statement = AssembleSelect();
 		}
 		else if(type == Type.INSERT)
 		{
-			return AssembleInsert();
+			statement = AssembleInsert();
 		}
 		else if(type == Type.UPDATE)
 		{
-			return AssembleUpdate();
+			statement = AssembleUpdate();
 		}
 		else if(type == Type.DELETE)
 		{
-			return AssembleDelete();
+			statement = AssembleDelete();
 		}
+		sql = statement;
 		return statement;
 	}
+	
+	//Discard the SQL assembled by toString() and its ParameterBinder, as the structure of the query has changed
+	private void changed()
+	{
+		sql = null;
+		binder = null;
+	}
+	
+	/**
+	 * Get the ParameterBinder for the structure of this Query, which is compiled the first time it is needed.
+	 * Database.executeBatch(Query[] queries) uses the ParameterBinder of the first Query sharing the same SQL
+	 * to bind the values of every one of them to a single batched statement.
+	 * @return ParameterBinder
+	 */
+	ParameterBinder getParameterBinder()
+	{
+		if(binder == null)
+		{
+			//toString() is called first, as it gathers the WHERE conditions of any WhereConditionGroups
+			toString();
+			Type qtype = getQueryType();
+			binder = new ParameterBinder(qtype == Query.Type.INSERT || qtype == Query.Type.UPDATE ? fields : null, where);
+		}
+		return binder;
+	}
 }
 
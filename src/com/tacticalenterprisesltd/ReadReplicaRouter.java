@@ -0,0 +1,342 @@
+package com.tacticalenterprisesltd;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import javax.sql.DataSource;
+import org.apache.log4j.Logger;
+
+/**
+ * The ReadReplicaRouter sends the SELECT queries of a database to one or more read replicas, while every write, and
+ * every read within the read-your-writes window that follows a write, goes to the primary DataSource obtained from the
+ * DataSourceRegistry. Routers are shared by the whole application, one for each database name.<br><br>
+ * The Database class routes the queries of executeSelect(...) and executeSelectColumnar(...), including the counts for
+ * server side processing and the queries of Joins and Uploads. A replica is chosen either in turn (ROUND_ROBIN) or as the
+ * one with the fewest connections in use (LEAST_BUSY). If a replica cannot provide a connection, it is not used again for
+ * the retry interval, and the query goes to another replica, or to the primary if none is available.<br><br>
+ * Replicas are usually a little behind the primary. For the read-your-writes window after a write, the reads of the same
+ * writer go to the primary, so that the record Editor reads back after a create or edit is the record that was written.
+ * The writer is the user session, when a session key has been set on the Editor with setSessionKey(String key), otherwise
+ * the Database that made the write. Other writers keep reading from the replicas. The window opens once the write is
+ * committed, which for a UnitOfWork is when it ends.<br><br>
+ * <b>Usage Example:</b><br><br>
+ * <code>
+ * ReadReplicaRouter router = ReadReplicaRouter.getRouter("fcs_db");<br>
+ * router.addReplica(replica1);<br>
+ * router.addReplica(replica2);<br>
+ * router.setBalancing(ReadReplicaRouter.Balancing.LEAST_BUSY);<br>
+ * </code>
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public class ReadReplicaRouter
+{
+	public static enum Balancing {ROUND_ROBIN,LEAST_BUSY};
+	/** The default number of milliseconds reads go to the primary after a write: 5 seconds */
+	public static final long DEFAULT_READ_YOUR_WRITES_WINDOW = 5000;
+	/** The default number of milliseconds a replica that failed to provide a connection is not used: 30 seconds */
+	public static final long DEFAULT_RETRY_INTERVAL = 30000;
+
+	private static HashMap<String,ReadReplicaRouter> routers = new HashMap<String,ReadReplicaRouter>();
+
+	private String name;
+	private ArrayList<Replica> replicas = new ArrayList<Replica>();
+	private Balancing balancing = Balancing.ROUND_ROBIN;
+	private long readYourWritesWindow = DEFAULT_READ_YOUR_WRITES_WINDOW;
+	private long retryInterval = DEFAULT_RETRY_INTERVAL;
+	private HashMap<Object,Long> lastWrites = new HashMap<Object,Long>();
+	private int next = 0;
+	private Logger logger;
+
+	private ReadReplicaRouter(String dbName)
+	{
+		name = dbName;
+		logger = Logger.getLogger(ReadReplicaRouter.class);
+	}
+
+	/**
+	 * Get the router for the name of a database, creating it the first time.
+	 * @param dbName
+	 * @return ReadReplicaRouter
+	 */
+	public static synchronized ReadReplicaRouter getRouter(String dbName)
+	{
+		ReadReplicaRouter router = routers.get(dbName);
+		if(router == null)
+		{
+			router = new ReadReplicaRouter(dbName);
+			routers.put(dbName, router);
+		}
+		return router;
+	}
+
+	/**
+	 * Remove the router for the name of a database, so that all its queries go to the primary.
+	 * @param dbName
+	 */
+	public static synchronized void removeRouter(String dbName)
+	{
+		routers.remove(dbName);
+	}
+
+	//Get the router for the name of a database, or null if it has no replicas
+	static synchronized ReadReplicaRouter findRouter(String dbName)
+	{
+		ReadReplicaRouter router = routers.get(dbName);
+		return (router != null && router.getReplicaCount() > 0 ? router : null);
+	}
+
+	//Called by the Database class after every write committed to the database, to open the read-your-writes window of the writer
+	static void recordWrite(String dbName, Object writer)
+	{
+		ReadReplicaRouter router = findRouter(dbName);
+		if(router != null)
+		{
+			synchronized(router)
+			{
+				long now = System.currentTimeMillis();
+				//Forget the writers whose window has closed, so the map only holds recent writers
+				Iterator<Long> it = router.lastWrites.values().iterator();
+				while(it.hasNext())
+				{
+					if(now - it.next().longValue() >= router.readYourWritesWindow)
+						it.remove();
+				}
+				router.lastWrites.put(writer, Long.valueOf(now));
+			}
+		}
+	}
+
+	/**
+	 * Get the name of the database this router is for.
+	 * @return String
+	 */
+	public String getName()
+	{
+		return name;
+	}
+	/**
+	 * Add a read replica
+	 * @param dataSource
+	 */
+	public synchronized void addReplica(DataSource dataSource)
+	{
+		replicas.add(new Replica(dataSource));
+	}
+	/**
+	 * Remove a read replica
+	 * @param dataSource
+	 * @return true if the replica was removed
+	 */
+	public synchronized boolean removeReplica(DataSource dataSource)
+	{
+		for(int i = 0; i < replicas.size(); i++)
+		{
+			if(replicas.get(i).dataSource == dataSource)
+			{
+				replicas.remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+	/**
+	 * Get the number of read replicas
+	 * @return int
+	 */
+	public synchronized int getReplicaCount()
+	{
+		return replicas.size();
+	}
+	/**
+	 * Set how a replica is chosen for each read. The default is ROUND_ROBIN.
+	 * @param value
+	 */
+	public synchronized void setBalancing(Balancing value)
+	{
+		balancing = value;
+	}
+	/**
+	 * Get how a replica is chosen for each read.
+	 * @return Balancing
+	 */
+	public synchronized Balancing getBalancing()
+	{
+		return balancing;
+	}
+	/**
+	 * Set the number of milliseconds reads go to the primary after a write. Use 0 to always read from
+	 * the replicas. The default is DEFAULT_READ_YOUR_WRITES_WINDOW.
+	 * @param milliseconds
+	 */
+	public synchronized void setReadYourWritesWindow(long milliseconds)
+	{
+		readYourWritesWindow = milliseconds;
+	}
+	/**
+	 * Get the number of milliseconds reads go to the primary after a write.
+	 * @return long
+	 */
+	public synchronized long getReadYourWritesWindow()
+	{
+		return readYourWritesWindow;
+	}
+	/**
+	 * Set the number of milliseconds a replica that failed to provide a connection is not used.
+	 * The default is DEFAULT_RETRY_INTERVAL.
+	 * @param milliseconds
+	 */
+	public synchronized void setRetryInterval(long milliseconds)
+	{
+		retryInterval = milliseconds;
+	}
+	/**
+	 * Get the number of milliseconds a replica that failed to provide a connection is not used.
+	 * @return long
+	 */
+	public synchronized long getRetryInterval()
+	{
+		return retryInterval;
+	}
+	/**
+	 * Inquire if the reads of a writer currently go to the primary because of a recent write.
+	 * @param writer The session key, or the Database, that made the write
+	 * @return true or false
+	 */
+	public synchronized boolean isReadYourWritesWindowOpen(Object writer)
+	{
+		Long lastWrite = (writer != null ? lastWrites.get(writer) : null);
+		return lastWrite != null && System.currentTimeMillis() - lastWrite.longValue() < readYourWritesWindow;
+	}
+	/**
+	 * Get a connection to a replica, chosen according to the balancing. A replica that fails to provide one
+	 * is skipped for the retry interval and another is tried.
+	 * @param writer The session key, or the Database, reading. Its reads go to the primary within the
+	 * read-your-writes window following its own writes.
+	 * @return Connection, or null if reads should go to the primary, either because of a recent write or
+	 * because no replica can provide a connection
+	 */
+	public Connection getConnection(Object writer)
+	{
+		if(isReadYourWritesWindowOpen(writer))
+		{
+			return null;
+		}
+		int attempts = getReplicaCount();
+		for(int a = 0; a < attempts; a++)
+		{
+			Replica replica = choose();
+			if(replica == null)
+			{
+				return null;
+			}
+			try
+			{
+				Connection conn = replica.dataSource.getConnection();
+				return replica.track(conn);
+			}
+			catch(SQLException sqle)
+			{
+				synchronized(this)
+				{
+					replica.inUse--;
+					replica.failedAt = System.currentTimeMillis();
+				}
+				if(Editor.isLoggingEnabled())
+				{
+					logger.error("ReadReplicaRouter - replica of " + name + " unavailable: " + sqle.getMessage());
+				}
+			}
+		}
+		return null;
+	}
+
+	//Choose a replica that hasn't failed within the retry interval, and count the connection about to be obtained
+	private synchronized Replica choose()
+	{
+		long now = System.currentTimeMillis();
+		Replica chosen = null;
+		int size = replicas.size();
+		for(int i = 0; i < size; i++)
+		{
+			Replica replica = replicas.get((next + i) % size);
+			if(replica.failedAt > 0 && now - replica.failedAt < retryInterval)
+			{
+				continue;
+			}
+			if(balancing == Balancing.ROUND_ROBIN)
+			{
+				chosen = replica;
+				next = (next + i + 1) % size;
+				break;
+			}
+			if(chosen == null || replica.inUse < chosen.inUse)
+			{
+				chosen = replica;
+			}
+		}
+		if(chosen != null)
+		{
+			chosen.inUse++;
+			if(balancing == Balancing.LEAST_BUSY)
+			{
+				//Start the search from the next replica, so replicas equally busy take turns
+				next = (replicas.indexOf(chosen) + 1) % size;
+			}
+		}
+		return chosen;
+	}
+
+	//A replica and the number of its connections in use
+	private class Replica
+	{
+		private DataSource dataSource;
+		private int inUse = 0;
+		private long failedAt = 0;
+
+		private Replica(DataSource ds)
+		{
+			dataSource = ds;
+		}
+
+		//Hand out the connection through a proxy, so that closing it is counted
+		private Connection track(final Connection physical)
+		{
+			synchronized(ReadReplicaRouter.this)
+			{
+				failedAt = 0;
+			}
+			return (Connection)Proxy.newProxyInstance(ReadReplicaRouter.class.getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler(){
+				private boolean closed = false;
+				public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+				{
+					if(method.getName().equals("close"))
+					{
+						synchronized(ReadReplicaRouter.this)
+						{
+							if(closed == false)
+							{
+								closed = true;
+								inUse--;
+							}
+						}
+					}
+					try
+					{
+						return method.invoke(physical, args);
+					}
+					catch(InvocationTargetException ite)
+					{
+						throw ite.getCause();
+					}
+				}
+			});
+		}
+	}
+}
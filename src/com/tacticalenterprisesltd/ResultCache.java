@@ -0,0 +1,266 @@
+package com.tacticalenterprisesltd;
+
+/**
+ * The ResultCache holds the rows returned by Database.executeSelect() for a SELECT Query, so that a page of
+ * records requested again with the same ordering, filtering and paging is answered from memory instead of the database.
+ * The cache is shared by every instance of Database within the application. Each result is identified by the name of the
+ * database, the SQL of the Query and the values bound to it, and is tagged with the parent table and the tables of its Joins.<br><br>
+ * Results are only held when a time to live has been set by calling Database.setResultCacheTTL(long milliseconds).
+ * Inserts, updates and deletes performed through the Database class, which includes those of the Editor, Join and Upload
+ * classes, discard every result tagged with the table written to. Records written by some other application are only noticed
+ * once the cached result expires, so choose the time to live with this in mind. Once the maximum number of results has been
+ * reached, the least recently used result is discarded to make room for a new one.
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public class ResultCache
+{
+	/** The default maximum number of results held */
+	public static final int DEFAULT_MAX_ENTRIES = 500;
+	/** The default maximum number of rows a result may have to be held */
+	public static final int DEFAULT_MAX_ROWS = 1000;
+	
+	private static ExpiringCache<String,Result> cache = new ExpiringCache<String,Result>(DEFAULT_MAX_ENTRIES);
+	private static int maxEntries = DEFAULT_MAX_ENTRIES;
+	private static int maxRows = DEFAULT_MAX_ROWS;
+	
+	private ResultCache()
+	{
+		
+	}
+	
+	/**
+	 * Set the maximum number of results held. Any results already held are discarded.
+	 * The default is DEFAULT_MAX_ENTRIES.
+	 * @param entries
+	 */
+	public static synchronized void setMaxEntries(int entries)
+	{
+		if(entries < 1)
+		{
+			throw new IllegalArgumentException("The maximum number of entries must be at least 1.");
+		}
+		maxEntries = entries;
+		cache = new ExpiringCache<String,Result>(entries);
+	}
+	/**
+	 * Get the maximum number of results held.
+	 * @return int
+	 */
+	public static synchronized int getMaxEntries()
+	{
+		return maxEntries;
+	}
+	/**
+	 * Set the maximum number of rows a result may have to be held, so that a large result, such as
+	 * an entire table selected for client side processing, does not take up the memory of many pages.
+	 * The default is DEFAULT_MAX_ROWS.
+	 * @param rows
+	 */
+	public static synchronized void setMaxRows(int rows)
+	{
+		maxRows = rows;
+	}
+	/**
+	 * Get the maximum number of rows a result may have to be held.
+	 * @return int
+	 */
+	public static synchronized int getMaxRows()
+	{
+		return maxRows;
+	}
+	
+	/**
+	 * Get the result held for the key
+	 * @param dbName
+	 * @param key Identifies the SQL and the values bound to it
+	 * @return Result, or null if there is none held or it has expired.
+	 */
+	static Result get(String dbName, String key)
+	{
+		return getCache().get(dbName + "|" + key);
+	}
+	
+	/**
+	 * Hold a result.
+	 * @param dbName
+	 * @param key Identifies the SQL and the values bound to it
+	 * @param tables The tables the result was selected from, which discard it when written to
+	 * @param rows
+	 * @param filtered The number of records matching the WHERE conditions for server side processing, or -1
+	 * @param total The number of records in the parent table for server side processing, or -1
+	 * @param timeToLive The number of milliseconds to hold the result. Using 0 means the result is not held.
+	 */
+	static void put(String dbName, String key, String[] tables, String[][] rows, int filtered, int total, long timeToLive)
+	{
+		if(rows.length > getMaxRows())
+			return;
+		getCache().put(dbName + "|" + key, new Result(dbName, tables, copy(rows), filtered, total), timeToLive);
+	}
+	
+	/**
+	 * Discard every result selected from the table, whether as the parent table or by way of a Join.
+	 * @param dbName
+	 * @param table
+	 */
+	public static void invalidate(final String dbName, String table)
+	{
+		final String tag = table.toLowerCase();
+		getCache().removeAllValues(new ExpiringCache.ValueFilter<Result>(){
+			public boolean matches(Result result)
+			{
+				return result.isTagged(dbName, tag);
+			}
+		});
+	}
+	
+	/**
+	 * Discard all results.
+	 */
+	public static void clear()
+	{
+		getCache().clear();
+	}
+	
+	/**
+	 * Get the number of results currently held.
+	 * @return int
+	 */
+	public static int size()
+	{
+		return getCache().size();
+	}
+	/**
+	 * Get the number of times a result was found in the cache.
+	 * @return long
+	 */
+	public static long getHits()
+	{
+		return getCache().getHits();
+	}
+	/**
+	 * Get the number of times a result was not found in the cache.
+	 * @return long
+	 */
+	public static long getMisses()
+	{
+		return getCache().getMisses();
+	}
+	/**
+	 * Get the fraction of lookups for which a result was found in the cache.
+	 * @return A value from 0.0 to 1.0
+	 */
+	public static double getHitRatio()
+	{
+		ExpiringCache<String,Result> c = getCache();
+		long hits = c.getHits();
+		long lookups = hits + c.getMisses();
+		return (lookups == 0 ? 0.0 : (double)hits / lookups);
+	}
+	/**
+	 * Get an estimate of the number of bytes of memory taken up by the results currently held.
+	 * @return long
+	 */
+	public static long getMemoryFootprint()
+	{
+		long bytes = 0;
+		for(Result result : getCache().values())
+		{
+			bytes += result.bytes;
+		}
+		return bytes;
+	}
+	/**
+	 * Reset the number of hits and misses to 0.
+	 */
+	public static void resetStatistics()
+	{
+		getCache().resetStatistics();
+	}
+	
+	private static synchronized ExpiringCache<String,Result> getCache()
+	{
+		return cache;
+	}
+	
+	//The rows are copied both in and out of the cache, so a caller changing a value does not change the cached result
+	private static String[][] copy(String[][] rows)
+	{
+		String[][] temp = new String[rows.length][];
+		for(int i = 0; i < rows.length; i++)
+		{
+			temp[i] = rows[i].clone();
+		}
+		return temp;
+	}
+	
+	/**
+	 * A result held in the cache, along with the counts for server side processing.
+	 */
+	static class Result
+	{
+		private String dbName;
+		private String[] tables;
+		private String[][] rows;
+		private int filtered;
+		private int total;
+		private long bytes;
+		
+		private Result(String db, String[] tbls, String[][] data, int filteredCount, int totalCount)
+		{
+			dbName = db;
+			tables = new String[tbls.length];
+			for(int i = 0; i < tbls.length; i++)
+			{
+				tables[i] = tbls[i].toLowerCase();
+			}
+			rows = data;
+			filtered = filteredCount;
+			total = totalCount;
+			bytes = estimateBytes(data);
+		}
+		
+		String[][] getRows()
+		{
+			return copy(rows);
+		}
+		
+		int getFilteredTotal()
+		{
+			return filtered;
+		}
+		
+		int getTotal()
+		{
+			return total;
+		}
+		
+		private boolean isTagged(String db, String table)
+		{
+			if(dbName.equals(db) == false)
+				return false;
+			for(int i = 0; i < tables.length; i++)
+			{
+				if(tables[i].equals(table))
+					return true;
+			}
+			return false;
+		}
+		
+		//An estimate based on the usual object header and reference sizes, and two bytes per character
+		private static long estimateBytes(String[][] data)
+		{
+			long bytes = 16 + 8L * data.length;
+			for(int i = 0; i < data.length; i++)
+			{
+				bytes += 16 + 8L * data[i].length;
+				for(int j = 0; j < data[i].length; j++)
+				{
+					if(data[i][j] != null)
+						bytes += 40 + 2L * data[i][j].length();
+				}
+			}
+			return bytes;
+		}
+	}
+}
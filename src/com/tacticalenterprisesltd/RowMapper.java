@@ -0,0 +1,116 @@
+package com.tacticalenterprisesltd;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * The RowMapper reads the rows of a ResultSet as String[] arrays for the Database class.
+ * The type of each column is looked up once, when the RowMapper is created from the ResultSetMetaData,
+ * and a CellDecoder is chosen for it, so reading a row only calls the decoder of each column in turn.
+ * The decoders hold no state and format DATE and TIMESTAMP values with immutable java.time formatters,
+ * so they are shared by every RowMapper and every thread.<br><br>
+ * Every value is obtained as a String: a null value becomes an empty String, DATE values are formatted as yyyy-MM-dd
+ * and TIMESTAMP values as yyyy-MM-dd HH:mm:ss, and the value of a field holding binary data such as a BLOB, CLOB,
+ * NCLOB, LONGVARBINARY, etc. is always &quot;***Binary Data Field***&quot;.
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+class RowMapper
+{
+	//Adheres to DATE_ISO_8601 + TIME
+	private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	private static final CellDecoder STRING_DECODER = new CellDecoder(){
+		public String decode(ResultSet resultSet, int index) throws SQLException
+		{
+			String value = resultSet.getString(index);
+			return (value == null ? "" : value);
+		}
+	};
+
+	private static final CellDecoder DATE_DECODER = new CellDecoder(){
+		public String decode(ResultSet resultSet, int index) throws SQLException
+		{
+			java.sql.Date dte = resultSet.getDate(index);
+			//LocalDate.toString() adheres to DATE_ISO_8601
+			return (dte == null ? "" : dte.toLocalDate().toString());
+		}
+	};
+
+	private static final CellDecoder TIMESTAMP_DECODER = new CellDecoder(){
+		public String decode(ResultSet resultSet, int index) throws SQLException
+		{
+			java.sql.Timestamp tstamp = resultSet.getTimestamp(index);
+			return (tstamp == null ? "" : TIMESTAMP_FORMAT.format(tstamp.toLocalDateTime()));
+		}
+	};
+
+	private static final CellDecoder BINARY_DECODER = new CellDecoder(){
+		public String decode(ResultSet resultSet, int index)
+		{
+			return Constants.BINARYDATA;
+		}
+	};
+
+	private CellDecoder[] decoders;
+
+	/**
+	 * Constructor
+	 * @param rsmd
+	 * @param columns The number of columns to read, starting with the first
+	 * @throws SQLException
+	 */
+	RowMapper(ResultSetMetaData rsmd, int columns) throws SQLException
+	{
+		decoders = new CellDecoder[columns];
+		for(int j = 0; j < columns; j++)
+		{
+			decoders[j] = getDecoder(rsmd.getColumnType(j + 1));
+		}
+	}
+
+	/**
+	 * Read the current row of the ResultSet
+	 * @param resultSet
+	 * @return A new String[] array holding the value of each column
+	 * @throws SQLException
+	 */
+	String[] readRow(ResultSet resultSet) throws SQLException
+	{
+		String[] row = new String[decoders.length];
+		for(int j = 0; j < decoders.length; j++)
+		{
+			row[j] = decoders[j].decode(resultSet, j + 1);
+		}
+		return row;
+	}
+
+	private static CellDecoder getDecoder(int type)
+	{
+		switch (type)
+		{
+		  case Types.DATE:
+			  return DATE_DECODER;
+		  case Types.TIMESTAMP:
+			  return TIMESTAMP_DECODER;
+		  case Types.BINARY:
+		  case Types.VARBINARY:
+		  case Types.LONGVARBINARY:
+		  case Types.BLOB:
+		  case Types.CLOB:
+		  case Types.NCLOB:
+			  return BINARY_DECODER;
+		  default:
+			  return STRING_DECODER;
+		}
+	}
+
+	//Reads the value of one column of the current row
+	private static interface CellDecoder
+	{
+		public String decode(ResultSet resultSet, int index) throws SQLException;
+	}
+}
@@ -0,0 +1,29 @@
+package com.tacticalenterprisesltd;
+
+/**
+ * Implement this interface when you want to process the rows of a SELECT query one at a time,
+ * as they are read from the database, rather than have the whole result copied into a 2D String[][] array first.
+ * Pass an instance of your implementation to either Database.executeSelect(RowVisitor visitor) or
+ * Database.executeSelect(String strQuery, RowVisitor visitor).<br><br>
+ * <b>Usage Example:</b><br><br>
+ * <code>
+ * db.executeSelect("SELECT ID,LASTNAME FROM employees", new RowVisitor(){<br>
+ * &nbsp;&nbsp;public void visitRow(String[] row)<br>
+ * &nbsp;&nbsp;{<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;System.out.println(row[0] + " " + row[1]);<br>
+ * &nbsp;&nbsp;}<br>
+ * });<br>
+ * </code>
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public interface RowVisitor
+{
+	/**
+	 * Called once for each row of the result, in the order the rows are returned by the database.
+	 * Each value is obtained as a String following the same rules as Database.executeSelect().
+	 * A new array is supplied for every row, so it is safe to keep a reference to it.
+	 * @param row
+	 */
+	public void visitRow(String[] row);
+}
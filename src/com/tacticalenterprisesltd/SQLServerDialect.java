@@ -0,0 +1,38 @@
+package com.tacticalenterprisesltd;
+
+/**
+ * The Dialect for SQL Server v2012 or higher. Records are paged with OFFSET and FETCH, the primary key of a new record is
+ * generated by an IDENTITY column and retrieved by the driver, and the OUTPUT clause returns the columns of inserted and updated records.
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public class SQLServerDialect extends AbstractDialect
+{
+	public String getJdbcUrl(String host, String port, String dbName)
+	{
+		return "jdbc:sqlserver://" + host + ":" + port + ";databaseName=" + dbName;
+	}
+	
+	/**
+	 * SQL Server requires OFFSET whenever FETCH is used.
+	 */
+	public String getLimitClause(boolean offset, boolean limit)
+	{
+		if(offset == false && limit == false)
+			return "";
+		String temp = (offset ? " OFFSET ? ROWS" : " OFFSET 0 ROWS");
+		if(limit)
+			temp += " FETCH NEXT ? ROWS ONLY";
+		return temp;
+	}
+	
+	public String getReturningInsert(String table, String columns, String values, String[] returnColumns)
+	{
+		return "INSERT INTO " + table + " (" + columns + ") OUTPUT " + joinColumns("INSERTED.", returnColumns) + " VALUES (" + values + ")";
+	}
+	
+	public String getReturningUpdate(String table, String set, String where, String[] returnColumns)
+	{
+		return "UPDATE " + table + " SET " + set + " OUTPUT " + joinColumns("INSERTED.", returnColumns) + where;
+	}
+}
@@ -0,0 +1,277 @@
+package com.tacticalenterprisesltd;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The StatementCache keeps the PreparedStatements of one physical connection open after they are closed,
+ * so that executing the same SQL again does not require the database to parse it again or the driver to allocate
+ * a new statement. Statements are identified by the SQL text together with the remaining arguments given to
+ * Connection.prepareStatement(...), such as the result set type and concurrency, or the generated keys requested.
+ * Once the maximum number of statements is reached, the least recently used statement is closed.<br><br>
+ * The cache is used by the ConnectionPool for each of its connections. A statement that is still in use when the
+ * same SQL is prepared again is not shared; a new statement is prepared instead and closed as usual.
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+class StatementCache
+{
+	private Connection connection;
+	private ConnectionPool pool;
+	private int maxSize;
+	private boolean closed = false;
+	private LinkedHashMap<String,CachedStatement> statements;
+	
+	/**
+	 * Constructor
+	 * @param physical The physical connection the statements are prepared on
+	 * @param owner The pool recording the hits and misses, or null
+	 * @param max The maximum number of statements kept open
+	 */
+	StatementCache(Connection physical, ConnectionPool owner, int max)
+	{
+		connection = physical;
+		pool = owner;
+		maxSize = max;
+		//An access ordered map keeps the least recently used statement at the head
+		statements = new LinkedHashMap<String,CachedStatement>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			protected boolean removeEldestEntry(Map.Entry<String,CachedStatement> eldest)
+			{
+				if(size() <= maxSize)
+					return false;
+				CachedStatement cs = eldest.getValue();
+				cs.evicted = true;
+				if(cs.inUse == false)
+					closeQuietly(cs.statement);
+				return true;
+			}
+		};
+	}
+	
+	/**
+	 * Prepare a statement by invoking one of the Connection.prepareStatement(...) methods,
+	 * or hand out the cached statement for the same arguments.
+	 * @param method One of the Connection.prepareStatement(...) methods
+	 * @param args The arguments for the method, the first being the SQL text
+	 * @return PreparedStatement
+	 * @throws Throwable any exception thrown by the driver
+	 */
+	synchronized PreparedStatement prepare(Method method, Object[] args) throws Throwable
+	{
+		String key = key(args);
+		CachedStatement cs = statements.get(key);
+		if(cs != null && cs.inUse == false)
+		{
+			cs.inUse = true;
+			record(true);
+			return cs.handle;
+		}
+		record(false);
+		PreparedStatement ps = null;
+		try
+		{
+			ps = (PreparedStatement)method.invoke(connection, args);
+		}
+		catch(InvocationTargetException ite)
+		{
+			throw ite.getCause();
+		}
+		if(cs != null || closed || maxSize <= 0)
+		{
+			//The cached statement for this SQL is still in use
+			return ps;
+		}
+		try
+		{
+			cs = new CachedStatement(ps);
+		}
+		catch(SQLException sqle)
+		{
+			//The settings of the statement can't be restored once it is returned, so it isn't cached
+			return ps;
+		}
+		cs.inUse = true;
+		statements.put(key, cs);
+		return cs.handle;
+	}
+	
+	/**
+	 * Close every statement kept by the cache. This is done before the physical connection is closed.
+	 */
+	void closeAll()
+	{
+		ArrayList<CachedStatement> list = null;
+		synchronized(this)
+		{
+			closed = true;
+			list = new ArrayList<CachedStatement>(statements.values());
+			statements.clear();
+		}
+		for(CachedStatement cs : list)
+		{
+			closeQuietly(cs.statement);
+		}
+	}
+	
+	/**
+	 * Return any statement still handed out to the cache. This is done when the connection is returned to the pool,
+	 * since a statement that was not closed by the caller could otherwise never be used again.
+	 */
+	void reclaim()
+	{
+		ArrayList<CachedStatement> list = new ArrayList<CachedStatement>();
+		synchronized(this)
+		{
+			for(CachedStatement cs : statements.values())
+			{
+				if(cs.inUse)
+					list.add(cs);
+			}
+		}
+		for(CachedStatement cs : list)
+		{
+			returned(cs);
+		}
+	}
+	
+	/**
+	 * Get the number of statements kept open
+	 * @return int
+	 */
+	synchronized int size()
+	{
+		return statements.size();
+	}
+	
+	//A statement handed out by the cache has been closed by the caller
+	private void returned(CachedStatement cs)
+	{
+		boolean close = false;
+		synchronized(this)
+		{
+			cs.inUse = false;
+			close = cs.evicted || closed;
+		}
+		if(close == false)
+		{
+			try
+			{
+				//Nothing set by the last user may carry over to the next: a batch left pending by a failure
+				//would be executed again, and a streaming fetch size or timeout would apply to other queries
+				cs.statement.clearParameters();
+				cs.statement.clearBatch();
+				cs.statement.clearWarnings();
+				if(cs.statement.getFetchSize() != cs.fetchSize)
+					cs.statement.setFetchSize(cs.fetchSize);
+				if(cs.statement.getMaxRows() != cs.maxRows)
+					cs.statement.setMaxRows(cs.maxRows);
+				if(cs.statement.getQueryTimeout() != cs.queryTimeout)
+					cs.statement.setQueryTimeout(cs.queryTimeout);
+			}
+			catch(SQLException sqle)
+			{
+				close = true;
+				synchronized(this)
+				{
+					cs.evicted = true;
+					statements.values().remove(cs);
+				}
+			}
+		}
+		if(close)
+		{
+			closeQuietly(cs.statement);
+		}
+	}
+	
+	private void record(boolean hit)
+	{
+		if(pool != null)
+			pool.recordStatementCache(hit);
+	}
+	
+	private static String key(Object[] args)
+	{
+		StringBuilder sb = new StringBuilder((String)args[0]);
+		for(int i = 1; i < args.length; i++)
+		{
+			sb.append('\u0000');
+			if(args[i] instanceof int[])
+				sb.append(Arrays.toString((int[])args[i]));
+			else if(args[i] instanceof String[])
+				sb.append(Arrays.toString((String[])args[i]));
+			else
+				sb.append(args[i]);
+		}
+		return sb.toString();
+	}
+	
+	private static void closeQuietly(PreparedStatement ps)
+	{
+		try { ps.close(); } catch (SQLException e) { ; }
+	}
+	
+	private class CachedStatement
+	{
+		private PreparedStatement statement;
+		private PreparedStatement handle;
+		private boolean inUse = false;
+		private boolean evicted = false;
+		//The settings of the statement when it was prepared, restored each time it is returned
+		private int fetchSize;
+		private int maxRows;
+		private int queryTimeout;
+		
+		private CachedStatement(PreparedStatement ps) throws SQLException
+		{
+			statement = ps;
+			fetchSize = ps.getFetchSize();
+			maxRows = ps.getMaxRows();
+			queryTimeout = ps.getQueryTimeout();
+			final CachedStatement self = this;
+			//Closing the handle returns the statement to the cache rather than closing it
+			handle = (PreparedStatement)Proxy.newProxyInstance(StatementCache.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, new InvocationHandler(){
+				public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+				{
+					String methodName = method.getName();
+					if(methodName.equals("close"))
+					{
+						if(self.inUse)
+							returned(self);
+						return null;
+					}
+					if(methodName.equals("isClosed"))
+					{
+						return Boolean.valueOf(self.inUse == false || statement.isClosed());
+					}
+					if(methodName.equals("equals"))
+					{
+						return Boolean.valueOf(proxy == args[0]);
+					}
+					if(methodName.equals("hashCode"))
+					{
+						return Integer.valueOf(System.identityHashCode(proxy));
+					}
+					try
+					{
+						return method.invoke(statement, args);
+					}
+					catch(InvocationTargetException ite)
+					{
+						throw ite.getCause();
+					}
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package com.tacticalenterprisesltd;
+
+/**
+ * The TotalCountCache holds the total number of records in a table, the recordsTotal value
+ * sent back to DataTables during server side processing, so that the database does not have to
+ * count every record in the table on each draw. The cache is shared by every instance of Database
+ * within the application, and each entry is identified by the name of the database and the table.<br><br>
+ * Inserts and deletes performed through the Database class, which includes those of the Editor, Join
+ * and Upload classes, adjust the cached totals. Records written by some other application are only noticed
+ * once the cached total expires, so choose the time to live with this in mind by calling
+ * Database.setTotalCountCacheTTL(long milliseconds).
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public class TotalCountCache
+{
+	/** The default number of milliseconds a total is held: 60 seconds */
+	public static final long DEFAULT_TIME_TO_LIVE = 60000;
+	
+	private static ExpiringCache<String,Integer> cache = new ExpiringCache<String,Integer>(1000);
+	
+	private TotalCountCache()
+	{
+		
+	}
+	
+	/**
+	 * Get the total number of records held for the table
+	 * @param dbName
+	 * @param table
+	 * @return The total, or -1 if there is none held or it has expired.
+	 */
+	public static int get(String dbName, String table)
+	{
+		Integer total = cache.get(key(dbName, table));
+		if(total == null)
+			return -1;
+		return total.intValue();
+	}
+	
+	/**
+	 * Hold the total number of records for the table.
+	 * @param dbName
+	 * @param table
+	 * @param total
+	 * @param timeToLive The number of milliseconds to hold the total. Using 0 means the total is not held.
+	 */
+	public static void put(String dbName, String table, int total, long timeToLive)
+	{
+		cache.put(key(dbName, table), Integer.valueOf(total), timeToLive);
+	}
+	
+	/**
+	 * Adjust the total held for the table, if there is one, by the number of records inserted (positive)
+	 * or deleted (negative).
+	 * @param dbName
+	 * @param table
+	 * @param records
+	 */
+	public static synchronized void adjust(String dbName, String table, int records)
+	{
+		String key = key(dbName, table);
+		int total = get(dbName, table);
+		if(total > -1)
+		{
+			cache.replace(key, Integer.valueOf(Math.max(0, total + records)));
+		}
+	}
+	
+	/**
+	 * Discard the total held for the table, so that it is counted again on the next draw.
+	 * @param dbName
+	 * @param table
+	 */
+	public static void invalidate(String dbName, String table)
+	{
+		cache.remove(key(dbName, table));
+	}
+	
+	/**
+	 * Discard all totals held.
+	 */
+	public static void clear()
+	{
+		cache.clear();
+	}
+	
+	private static String key(String dbName, String table)
+	{
+		return (dbName + "." + table).toLowerCase();
+	}
+}
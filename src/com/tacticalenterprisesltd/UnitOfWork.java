@@ -0,0 +1,211 @@
+package com.tacticalenterprisesltd;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import org.apache.log4j.Logger;
+
+/**
+ * A UnitOfWork shares one Connection and one transaction among all the queries a Database executes until it is committed
+ * or rolled back, including the queries of the Joins and the Upload of an Editor using that Database. The Connection is
+ * obtained from the pool once, when the unit of work begins, and returned to it when the unit of work ends.<br><br>
+ * While a unit of work is active, the methods of the Database leave the transaction open rather than committing it, and a
+ * statement that fails marks the unit of work to be rolled back rather than committed. SELECT queries go to the primary rather
+ * than a read replica, so they see the records written so far, and the records of the tables written are neither read from nor
+ * held in the ResultCache, LookupCache and TotalCountCache until the unit of work ends.<br><br>
+ * Editor.Process() begins a unit of work for the create, edit, remove and upload actions, unless one is already active on its
+ * Database, and commits it once the action is complete. The copies of the Database used by the asynchronous methods obtain
+ * connections of their own, outside the unit of work.<br><br>
+ * <b>Usage Example:</b><br><br>
+ * <code>
+ * UnitOfWork unit = db.beginUnitOfWork();<br>
+ * editor1.Process();<br>
+ * editor2.Process();<br>
+ * boolean committed = unit.commit();<br>
+ * </code>
+ * @author Alan Shiers
+ * @version 1.5.0
+ */
+public class UnitOfWork
+{
+	private Database db;
+	private Connection physical;
+	private Connection shared;
+	private boolean active = true;
+	private boolean rollbackOnly = false;
+	private LinkedHashSet<String> tables = new LinkedHashSet<String>();
+	private Logger logger;
+
+	//Created by Database.beginUnitOfWork() with a Connection from the pool
+	UnitOfWork(Database database, Connection connection) throws SQLException
+	{
+		db = database;
+		physical = connection;
+		logger = Logger.getLogger(UnitOfWork.class);
+		physical.setAutoCommit(false);
+		//The methods of the Database commit and close every Connection they obtain, so they are handed a proxy
+		//on which doing so has no effect, and on which a rollback marks the unit of work to be rolled back
+		shared = (Connection)Proxy.newProxyInstance(UnitOfWork.class.getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler(){
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+			{
+				String name = method.getName();
+				if(name.equals("close") || name.equals("commit") || name.equals("setAutoCommit"))
+				{
+					return null;
+				}
+				if(name.equals("rollback") && (args == null || args.length == 0))
+				{
+					rollbackOnly = true;
+					return null;
+				}
+				try
+				{
+					return method.invoke(physical, args);
+				}
+				catch(InvocationTargetException ite)
+				{
+					throw ite.getCause();
+				}
+			}
+		});
+	}
+
+	//The Connection the Database uses for every query while the unit of work is active
+	Connection getConnection()
+	{
+		return shared;
+	}
+
+	//Called by the Database after every write to a table
+	void recordWrite(String table)
+	{
+		tables.add(table.toLowerCase());
+	}
+
+	//Inquire if a table has been written within this unit of work
+	boolean hasWritten(String table)
+	{
+		return table != null && tables.contains(table.toLowerCase());
+	}
+
+	/**
+	 * Inquire if the unit of work has neither been committed nor rolled back yet.
+	 * @return true or false
+	 */
+	public boolean isActive()
+	{
+		return active;
+	}
+	/**
+	 * Inquire if the unit of work will be rolled back rather than committed, because a statement failed or
+	 * setRollbackOnly() was called.
+	 * @return true or false
+	 */
+	public boolean isRollbackOnly()
+	{
+		return rollbackOnly;
+	}
+	/**
+	 * Mark the unit of work to be rolled back rather than committed.
+	 */
+	public void setRollbackOnly()
+	{
+		rollbackOnly = true;
+	}
+	/**
+	 * Commit everything written within the unit of work, or roll it back if it has been marked to be rolled back,
+	 * and return the Connection to the pool.
+	 * @return true if the transaction was committed
+	 * @throws IllegalStateException if the unit of work has already ended
+	 */
+	public boolean commit() throws IllegalStateException
+	{
+		checkActive();
+		boolean committed = false;
+		if(rollbackOnly == false)
+		{
+			try
+			{
+				physical.commit();
+				committed = true;
+			}
+			catch(SQLException sqle)
+			{
+				String extra = "UnitOfWork.commit - database: " + db.name + "\n";
+				extra += "SQL Problem: " + sqle.getMessage() + "\n";
+				extra += "SQL State: " + sqle.getSQLState() + "\n";
+				extra += "Vendor Error: " + sqle.getErrorCode() + "\n";
+				if(Editor.isLoggingEnabled())
+					logger.error(extra + Editor.getFullStackTrace(sqle));
+				else
+					System.out.println(extra + Editor.getFullStackTrace(sqle));
+			}
+		}
+		if(committed == false)
+		{
+			rollbackPhysical();
+		}
+		end(committed);
+		return committed;
+	}
+	/**
+	 * Roll back everything written within the unit of work, and return the Connection to the pool.
+	 * @throws IllegalStateException if the unit of work has already ended
+	 */
+	public void rollback() throws IllegalStateException
+	{
+		checkActive();
+		rollbackPhysical();
+		end(false);
+	}
+
+	private void checkActive() throws IllegalStateException
+	{
+		if(active == false)
+		{
+			throw new IllegalStateException("The unit of work on the database " + db.name + " has already ended.");
+		}
+	}
+
+	private void rollbackPhysical()
+	{
+		try
+		{
+			physical.rollback();
+		}
+		catch(SQLException sqle)
+		{
+			if(Editor.isLoggingEnabled())
+				logger.error("UnitOfWork.rollback: " + Editor.getFullStackTrace(sqle));
+			else
+				System.out.println(Editor.getFullStackTrace(sqle));
+		}
+	}
+
+	//Return the Connection to the pool and bring the caches up to date with the tables written
+	private void end(boolean committed)
+	{
+		active = false;
+		db.endUnitOfWork(this);
+		try { physical.close(); } catch (SQLException e) { ; }
+		for(String table : tables)
+		{
+			if(committed == false)
+			{
+				//The counts were adjusted for records that were never written
+				TotalCountCache.invalidate(db.name, table);
+			}
+			KeysetBookmarks.invalidate(db.name, table);
+			ResultCache.invalidate(db.name, table);
+			LookupCache.invalidate(db.name, table);
+		}
+		if(committed && tables.size() > 0)
+		{
+			ReadReplicaRouter.recordWrite(db.name, db.getWriter());
+		}
+	}
+}
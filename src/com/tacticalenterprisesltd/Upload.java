@@ -1086,11 +1086,17 @@ public class Upload
     private void update(Database db, FileItem item)throws Exception
     {
     	Query query = new Query(Query.Type.UPDATE, dbTable);
-    	LinkedHashMap<String,DbType> pathFields = new LinkedHashMap<String, DbType>();
     	ArrayList<Field> fields = new ArrayList<Field>();
     	Field field = null;
-    	boolean usingPaths = false;
     	boolean usingFileType = false;
+    	//The id of the record is already known, so the paths are written by the same statement as the other values
+    	String sysPathWFileName = "";	
+        String webPathWFileName = "";
+        if(getPlatform().equals("Windows"))
+    	  sysPathWFileName = sysPath + File.separator + File.separator + String.valueOf(rowID) + "." + FilenameUtils.getExtension(item.getName());
+        else
+          sysPathWFileName = sysPath + File.separator + String.valueOf(rowID) + "." + FilenameUtils.getExtension(item.getName());  
+        webPathWFileName = "/" + STORAGEDIR + "/" + String.valueOf(rowID) + "." + FilenameUtils.getExtension(item.getName());
     	for (String key : dbFields.keySet())
     	{
     	   Upload.DbType value = (DbType)dbFields.get(key);
@@ -1120,16 +1126,12 @@ public class Upload
        	         field.setValue(String.valueOf(item.getSize())); 
        	         break;
     	     case SystemPath:
-    	    	 pathFields.put(key, DbType.SystemPath);
     	    	 field = new Field(dbTable, key, Field.Type.STRING);
-       	         field.setValue("-");
-       	         usingPaths = true;
+       	         field.setValue(sysPathWFileName);
        	         break;
     	     case WebPath:
-    	    	 pathFields.put(key, DbType.WebPath);
     	    	 field = new Field(dbTable, key, Field.Type.STRING);
-       	         field.setValue("-");
-       	         usingPaths = true;
+       	         field.setValue(webPathWFileName);
        	         break;
     	     case Modified:
     	    	 Date thisMinute = new Date();
@@ -1162,59 +1164,8 @@ public class Upload
     	//CLOSE THE INPUTSTREAM!!!
     	if(usingFileType)
            item.getInputStream().close();
-            		
-        // Update the record with the path information replacing the dashes (-) if required. We have to
-        // use a second statement here as we don't know in advance what the
-        // database schema is and don't want to prescribe that certain triggers
-        // etc be created. It makes it a bit less efficient but much more
-        // compatible.
-    	if(usingPaths)
-    	{
-          if(pathFields.size() > 0)
-          {
-            String sysPathWFileName = "";	
-            String webPathWFileName = "";
-            String platform = getPlatform();
-            if(platform.equals("Windows"))
-    	      sysPathWFileName = sysPath + File.separator + File.separator + String.valueOf(rowID) + "." + FilenameUtils.getExtension(item.getName());
-            else
-        	  sysPathWFileName = sysPath + File.separator + String.valueOf(rowID) + "." + FilenameUtils.getExtension(item.getName());  
-            webPathWFileName = "/" + STORAGEDIR + "/" + String.valueOf(rowID) + "." + FilenameUtils.getExtension(item.getName());
-    	    fields.clear();
-    	    query = new Query(Query.Type.UPDATE, dbTable);
-    	    for(String key : pathFields.keySet())
-    	    {
-    		  field = new Field(dbTable, key, Field.Type.STRING);
-    		  DbType type = pathFields.get(key);
-    		  if(type == DbType.WebPath)
-    		  {
-    			 field.setValue(webPathWFileName);
-    		  }
-    		  else if(type == DbType.SystemPath)
-    		  {
-    			 field.setValue(sysPathWFileName);
-    		  }
-    		  fields.add(field);
-    	    }
-    	    //Convert to an array of type Field
-    	    Field[] fds = new Field[fields.size()];
-    	    for(int i = 0; i < fields.size(); i++)
-      	    {
-      		  fds[i] = fields.get(i);
-      	    }
-    	    query.setFields(fds);
-    	    Field idf = new Field(dbTable, this.dbPKey, Field.Type.INT);
-    	    WhereCondition wc = new WhereCondition(idf, rowID, "=");
-    	    WhereCondition[] conditions = new WhereCondition[1];
-    	    conditions[0] = wc;
-    	    query.setWhereConditions(conditions);
-      	    db.setQuery(query);
-            db.executeInsertUpdate();
-          }
-    	}
     }
-    
-            
+
     protected static String getPlatform()
     {
       String platform = System.getProperty("os.name").toLowerCase();